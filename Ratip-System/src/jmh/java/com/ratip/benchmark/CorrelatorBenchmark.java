@@ -0,0 +1,58 @@
+package com.ratip.benchmark;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.service.EventCorrelator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch {@link EventCorrelator#correlateEvents} over 15 minutes of telemetry, with the alarm count
+ * given as alarms per 1000 telemetry points. Low ratios measure indexing the telemetry; high ratios
+ * are dominated by building correlations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CorrelatorBenchmark {
+    
+    @Param({"10000", "100000"})
+    public int telemetryCount;
+    
+    @Param({"1", "10", "100"})
+    public int alarmsPerThousand;
+    
+    private final EventCorrelator correlator = new EventCorrelator();
+    private List<TelemetryEvent> telemetry;
+    private List<AlarmEvent> alarms;
+    
+    @Setup
+    public void generate() {
+        SyntheticData data = new SyntheticData();
+        telemetry = data.telemetry(telemetryCount, Instant.now(), Duration.ofMinutes(15).dividedBy(telemetryCount));
+        alarms = data.alarms(Math.max(1, telemetryCount / 1000 * alarmsPerThousand), telemetry);
+    }
+    
+    @Benchmark
+    public List<CorrelatedEvent> correlateEvents() {
+        return correlator.correlateEvents(telemetry, alarms);
+    }
+}
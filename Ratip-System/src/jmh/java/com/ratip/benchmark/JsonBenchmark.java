@@ -0,0 +1,135 @@
+package com.ratip.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ratip.config.SmileFormat;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the three event models with the mapper settings the application uses:
+ * JSON with ISO timestamps, and Smile with epoch-millisecond timestamps as configured by
+ * {@link SmileFormat}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    
+    private ObjectWriter writer;
+    private ObjectReader telemetryReader;
+    private ObjectReader alarmReader;
+    private ObjectReader correlationReader;
+    private ObjectWriter smileWriter;
+    private ObjectReader smileTelemetryReader;
+    private ObjectReader smileCorrelationReader;
+    
+    private TelemetryEvent telemetry;
+    private AlarmEvent alarm;
+    private CorrelatedEvent correlation;
+    private byte[] telemetryJson;
+    private byte[] alarmJson;
+    private byte[] correlationJson;
+    private byte[] telemetrySmile;
+    private byte[] correlationSmile;
+    
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        writer = mapper.writer();
+        telemetryReader = mapper.readerFor(TelemetryEvent.class);
+        alarmReader = mapper.readerFor(AlarmEvent.class);
+        correlationReader = mapper.readerFor(CorrelatedEvent.class);
+        ObjectMapper smileMapper = SmileFormat.configure(new ObjectMapper(SmileFormat.newFactory())
+                .registerModule(new JavaTimeModule()));
+        smileWriter = smileMapper.writer();
+        smileTelemetryReader = smileMapper.readerFor(TelemetryEvent.class);
+        smileCorrelationReader = smileMapper.readerFor(CorrelatedEvent.class);
+        
+        SyntheticData data = new SyntheticData();
+        List<TelemetryEvent> series = data.telemetry(64, Instant.now(), Duration.ofSeconds(1));
+        telemetry = series.get(0);
+        alarm = data.alarms(1, series).get(0);
+        correlation = data.correlation(0, alarm, telemetry);
+        telemetryJson = writer.writeValueAsBytes(telemetry);
+        alarmJson = writer.writeValueAsBytes(alarm);
+        correlationJson = writer.writeValueAsBytes(correlation);
+        telemetrySmile = smileWriter.writeValueAsBytes(telemetry);
+        correlationSmile = smileWriter.writeValueAsBytes(correlation);
+    }
+    
+    @Benchmark
+    public byte[] writeTelemetry() throws IOException {
+        return writer.writeValueAsBytes(telemetry);
+    }
+    
+    @Benchmark
+    public TelemetryEvent readTelemetry() throws IOException {
+        return telemetryReader.readValue(telemetryJson);
+    }
+    
+    @Benchmark
+    public byte[] writeAlarm() throws IOException {
+        return writer.writeValueAsBytes(alarm);
+    }
+    
+    @Benchmark
+    public AlarmEvent readAlarm() throws IOException {
+        return alarmReader.readValue(alarmJson);
+    }
+    
+    @Benchmark
+    public byte[] writeCorrelation() throws IOException {
+        return writer.writeValueAsBytes(correlation);
+    }
+    
+    @Benchmark
+    public CorrelatedEvent readCorrelation() throws IOException {
+        return correlationReader.readValue(correlationJson);
+    }
+    
+    @Benchmark
+    public byte[] writeTelemetrySmile() throws IOException {
+        return smileWriter.writeValueAsBytes(telemetry);
+    }
+    
+    @Benchmark
+    public TelemetryEvent readTelemetrySmile() throws IOException {
+        return smileTelemetryReader.readValue(telemetrySmile);
+    }
+    
+    @Benchmark
+    public byte[] writeCorrelationSmile() throws IOException {
+        return smileWriter.writeValueAsBytes(correlation);
+    }
+    
+    @Benchmark
+    public CorrelatedEvent readCorrelationSmile() throws IOException {
+        return smileCorrelationReader.readValue(correlationSmile);
+    }
+}
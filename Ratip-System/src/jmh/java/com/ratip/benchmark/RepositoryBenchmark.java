@@ -0,0 +1,108 @@
+package com.ratip.benchmark;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.MockDataRepository;
+import com.ratip.repository.StringDictionary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Telemetry writes and range reads against a {@link MockDataRepository} that already holds
+ * {@code size} events spread over the last week. Writes append: each saved event is restamped
+ * 1 ms after the previous one, and the repository is rebuilt for every iteration so its size only
+ * drifts by what one iteration appends. Store timers are enabled, as they are by default in the
+ * application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+    
+    private static final Duration HISTORY = Duration.ofDays(7);
+    private static final int BATCH = 500;
+    private static final int RANGES = 1024;
+    
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+    
+    private MockDataRepository repository;
+    private List<TelemetryEvent> batch;
+    private String[] rangeServices;
+    private String[] rangeMetrics;
+    private Instant[] rangeStarts;
+    private long clockMillis;
+    private int next;
+    
+    @Setup(Level.Iteration)
+    public void fill() {
+        Instant end = Instant.now();
+        SyntheticData data = new SyntheticData();
+        repository = newRepository();
+        List<TelemetryEvent> history = data.telemetry(size, end, HISTORY.dividedBy(size));
+        for (int i = 0; i < size; i += 10_000) {
+            repository.saveTelemetryBatch(history.subList(i, Math.min(size, i + 10_000)));
+        }
+        batch = data.telemetry(BATCH, end, Duration.ofMillis(1));
+        clockMillis = end.toEpochMilli();
+        
+        rangeServices = new String[RANGES];
+        rangeMetrics = new String[RANGES];
+        rangeStarts = new Instant[RANGES];
+        for (int i = 0; i < RANGES; i++) {
+            TelemetryEvent anchor = history.get((int) ((long) i * size / RANGES));
+            rangeServices[i] = anchor.getServiceName();
+            rangeMetrics[i] = anchor.getMetricType();
+            rangeStarts[i] = anchor.getTimestamp();
+        }
+    }
+    
+    @Benchmark
+    public void saveTelemetry() {
+        TelemetryEvent event = batch.get(next++ % BATCH);
+        event.setTimestamp(Instant.ofEpochMilli(++clockMillis));
+        repository.saveTelemetry(event);
+    }
+    
+    @Benchmark
+    public void saveTelemetryBatch() {
+        for (TelemetryEvent event : batch) {
+            event.setTimestamp(Instant.ofEpochMilli(++clockMillis));
+        }
+        repository.saveTelemetryBatch(batch);
+    }
+    
+    /**
+     * A 15-minute range of one series, the shape of the correlator and dashboard reads.
+     */
+    @Benchmark
+    public List<TelemetryEvent> rangeQuery() {
+        int i = next++ & (RANGES - 1);
+        return repository.getTelemetryByServiceAndTime(rangeServices[i], rangeMetrics[i],
+                rangeStarts[i], rangeStarts[i].plus(Duration.ofMinutes(15)));
+    }
+    
+    private static MockDataRepository newRepository() {
+        return new MockDataRepository(new StringDictionary(), new RatipMetrics(new SimpleMeterRegistry(), true),
+                Duration.ofHours(1), Duration.ofDays(30), Duration.ofDays(30));
+    }
+}
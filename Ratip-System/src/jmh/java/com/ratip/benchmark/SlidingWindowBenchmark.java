@@ -0,0 +1,98 @@
+package com.ratip.benchmark;
+
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.StringDictionary;
+import com.ratip.service.SlidingWindowAggregator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SlidingWindowAggregator#addEvent} throughput with 1 to 32 producer threads sharing one
+ * aggregator. Each producer cycles through its own pre-generated events inside the current window,
+ * so the numbers cover contention on the service rings and metric windows rather than event
+ * construction.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlidingWindowBenchmark {
+    
+    private static final int EVENTS_PER_PRODUCER = 1 << 14;
+    
+    @State(Scope.Benchmark)
+    public static class Shared {
+        
+        final AtomicInteger producers = new AtomicInteger();
+        SlidingWindowAggregator aggregator;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            aggregator = new SlidingWindowAggregator(new StringDictionary());
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Producer {
+        
+        List<TelemetryEvent> events;
+        int next;
+        
+        @Setup(Level.Iteration)
+        public void setUp(Shared shared) {
+            SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED + shared.producers.incrementAndGet());
+            events = data.telemetry(EVENTS_PER_PRODUCER, Instant.now(), Duration.ofMillis(20));
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void addEvent01(Shared shared, Producer producer) {
+        add(shared, producer);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void addEvent04(Shared shared, Producer producer) {
+        add(shared, producer);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public void addEvent08(Shared shared, Producer producer) {
+        add(shared, producer);
+    }
+    
+    @Benchmark
+    @Threads(16)
+    public void addEvent16(Shared shared, Producer producer) {
+        add(shared, producer);
+    }
+    
+    @Benchmark
+    @Threads(32)
+    public void addEvent32(Shared shared, Producer producer) {
+        add(shared, producer);
+    }
+    
+    private static void add(Shared shared, Producer producer) {
+        shared.aggregator.addEvent(producer.events.get(producer.next++ & (EVENTS_PER_PRODUCER - 1)));
+    }
+}
@@ -0,0 +1,117 @@
+package com.ratip.benchmark;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible event generator for the benchmarks. The same seed always yields the same events,
+ * so runs on different machines or before and after a change measure identical workloads.
+ * <p>
+ * Telemetry is spread round-robin over {@code services x metrics} series at a fixed spacing
+ * ending at {@code end}; values follow a per-metric baseline with noise and occasional spikes,
+ * and alarms are raised on random series shortly after a telemetry point, as a real emitter
+ * would.
+ */
+public final class SyntheticData {
+    
+    public static final long DEFAULT_SEED = 20240601L;
+    
+    static final String[] SERVICES = {
+        "api-gateway", "auth-service", "payments", "orders", "inventory", "search", "notifications", "billing"
+    };
+    static final String[] METRICS = {"API_Latency", "CPU_Utilization", "Error_Rate", "Memory_Usage"};
+    private static final double[] BASELINES = {120, 45, 0.5, 60};
+    private static final String[] REGIONS = {"us-east-1", "us-west-2", "eu-west-1"};
+    
+    private final SplittableRandom random;
+    
+    public SyntheticData() {
+        this(DEFAULT_SEED);
+    }
+    
+    public SyntheticData(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+    
+    /**
+     * @param count   number of events
+     * @param end     timestamp of the newest event
+     * @param spacing time between consecutive events across all series
+     */
+    public List<TelemetryEvent> telemetry(int count, Instant end, Duration spacing) {
+        List<TelemetryEvent> events = new ArrayList<>(count);
+        long spacingNanos = spacing.toNanos();
+        Instant start = end.minusNanos(spacingNanos * (count - 1L));
+        for (int i = 0; i < count; i++) {
+            events.add(telemetry(i, start.plusNanos(spacingNanos * i)));
+        }
+        return events;
+    }
+    
+    public TelemetryEvent telemetry(int sequence, Instant timestamp) {
+        int metric = (sequence / SERVICES.length) % METRICS.length;
+        double value = BASELINES[metric] * (0.8 + 0.4 * random.nextDouble());
+        if (random.nextInt(100) == 0) {
+            value *= 3;
+        }
+        return TelemetryEvent.builder()
+                .id("t-" + sequence)
+                .serviceName(SERVICES[sequence % SERVICES.length])
+                .metricType(METRICS[metric])
+                .value(Math.round(value * 100) / 100.0)
+                .timestamp(timestamp)
+                .region(REGIONS[sequence % REGIONS.length])
+                .environment("production")
+                .build();
+    }
+    
+    /**
+     * Alarms on the series of randomly chosen telemetry points, 0 to 4 minutes after them.
+     */
+    public List<AlarmEvent> alarms(int count, List<TelemetryEvent> telemetry) {
+        List<AlarmEvent> alarms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TelemetryEvent source = telemetry.get(random.nextInt(telemetry.size()));
+            alarms.add(alarm(i, source, source.getTimestamp().plusSeconds(random.nextInt(240))));
+        }
+        return alarms;
+    }
+    
+    public AlarmEvent alarm(int sequence, TelemetryEvent source, Instant timestamp) {
+        boolean critical = random.nextInt(4) == 0;
+        return AlarmEvent.builder()
+                .id("a-" + sequence)
+                .alarmName(source.getMetricType() + " threshold breached")
+                .serviceName(source.getServiceName())
+                .metricType(source.getMetricType())
+                .severity(critical ? "CRITICAL" : "WARNING")
+                .state("ALARM")
+                .threshold(source.getValue() * 0.9)
+                .value(source.getValue())
+                .timestamp(timestamp)
+                .description(source.getMetricType() + " above threshold on " + source.getServiceName())
+                .region(source.getRegion())
+                .build();
+    }
+    
+    public CorrelatedEvent correlation(int sequence, AlarmEvent alarm, TelemetryEvent telemetry) {
+        return CorrelatedEvent.builder()
+                .id("c-" + sequence)
+                .correlationType("Metric-Alarm Correlation")
+                .confidenceScore(0.5 + random.nextDouble() / 2)
+                .description(alarm.getDescription())
+                .correlationTimestamp(alarm.getTimestamp())
+                .alarm(alarm)
+                .telemetry(telemetry)
+                .rootCause("Service experiencing increased load")
+                .recommendedAction("Scale up service capacity")
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.ratip.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache for LLM answers, keyed on the model, the normalized question and a fingerprint of the
+ * context sent with it. Entries expire after {@code ratip.ai.cache.ttl} and the least recently
+ * used are dropped beyond {@code ratip.ai.cache.max-entries}.
+ * <p>
+ * Lookups are single-flight: while a key is being loaded, identical requests wait on the same
+ * future instead of calling the upstream again. Failed loads are not cached, so every waiter sees
+ * the failure and the next request retries.
+ */
+@Component
+public class AiResponseCache {
+    
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    
+    public AiResponseCache(MeterRegistry meterRegistry,
+                           @Value("${ratip.ai.cache.ttl:PT5M}") Duration ttl,
+                           @Value("${ratip.ai.cache.max-entries:1000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > AiResponseCache.this.maxEntries;
+            }
+        };
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.coalesced = requestCounter(meterRegistry, "coalesced");
+        Gauge.builder("ratip.ai.cache.size", this, AiResponseCache::size)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Builds a cache key. {@code context} is everything besides the question that shapes the
+     * answer (the rendered events), reduced to a SHA-256 fingerprint.
+     */
+    public static String key(String model, String query, String context) {
+        return model + '\n' + normalize(query) + '\n' + fingerprint(context);
+    }
+    
+    static String normalize(String query) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        int end = normalized.length();
+        while (end > 0 && "?.!".indexOf(normalized.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return normalized.substring(0, end).trim();
+    }
+    
+    /**
+     * Returns the cached answer for {@code key}, joins a load already in flight, or starts one
+     * with {@code loader}.
+     */
+    public CompletableFuture<String> get(String key, Supplier<CompletableFuture<String>> loader) {
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        String raced = lookup(key);
+        if (raced != null) {
+            inFlight.remove(key, load);
+            hits.increment();
+            load.complete(raced);
+            return load;
+        }
+        misses.increment();
+        
+        CompletableFuture<String> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            if (error == null) {
+                store(key, value);
+            }
+            inFlight.remove(key, load);
+            if (error == null) {
+                load.complete(value);
+            } else {
+                load.completeExceptionally(error);
+            }
+        });
+        return load;
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.storedAtNanos >= ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+    
+    private void store(String key, String value) {
+        synchronized (entries) {
+            entries.put(key, new Entry(value, System.nanoTime()));
+        }
+    }
+    
+    private static String fingerprint(String context) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(context.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ratip.ai.cache.requests")
+                .description("AI query cache lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private record Entry(String value, long storedAtNanos) {
+    }
+}
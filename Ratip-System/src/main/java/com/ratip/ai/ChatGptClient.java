@@ -2,26 +2,58 @@ package com.ratip.ai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratip.config.RatipMetrics;
 import com.ratip.model.CorrelatedEvent;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+/**
+ * Non-blocking client for the chat completions API. Calls go out with {@code sendAsync} under
+ * connect and request timeouts, a token bucket sized to the account quota and a circuit breaker;
+ * anything refused or failed falls back to {@link #generateMockResponse}, so callers always get
+ * an answer. {@code ratip.openai.base-url} can point the client at a local stub.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class ChatGptClient {
     
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final AiResponseCache responseCache;
+    private final PromptContextBuilder contextBuilder;
+    private final HttpClient httpClient;
+    private final URI completionsUri;
+    private final Duration requestTimeout;
+    private final long streamIdleTimeoutNanos;
+    private final TokenBucket rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RatipMetrics metrics;
+    private final Map<String, Counter> requestCounters = new HashMap<>();
+    private final Map<String, Timer> roundTripTimers = new HashMap<>();
     
     @Value("${ratip.openai.api-key}")
     private String apiKey;
@@ -29,63 +61,232 @@ public class ChatGptClient {
     @Value("${ratip.openai.model:gpt-4o-mini}")
     private String model;
     
-    private static final String OPENAI_API_URL = "https://api.openai.com/v1/chat/completions";
+    public ChatGptClient(ObjectMapper objectMapper,
+                         AiResponseCache responseCache,
+                         PromptContextBuilder contextBuilder,
+                         RatipMetrics metrics,
+                         @Value("${ratip.openai.base-url:https://api.openai.com/v1}") String baseUrl,
+                         @Value("${ratip.openai.connect-timeout:PT5S}") Duration connectTimeout,
+                         @Value("${ratip.openai.request-timeout:PT30S}") Duration requestTimeout,
+                         @Value("${ratip.openai.stream-idle-timeout:PT15S}") Duration streamIdleTimeout,
+                         @Value("${ratip.openai.rate-limit.requests-per-minute:60}") int requestsPerMinute,
+                         @Value("${ratip.openai.rate-limit.burst:10}") int burst,
+                         @Value("${ratip.openai.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                         @Value("${ratip.openai.circuit-breaker.open-duration:PT30S}") Duration openDuration) {
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.contextBuilder = contextBuilder;
+        this.metrics = metrics;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        this.completionsUri = URI.create(baseUrl.replaceAll("/+$", "") + "/chat/completions");
+        this.requestTimeout = requestTimeout;
+        this.streamIdleTimeoutNanos = streamIdleTimeout.toNanos();
+        this.rateLimiter = new TokenBucket(requestsPerMinute, burst);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+        Gauge.builder("ratip.ai.circuit.open", circuitBreaker, breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the LLM circuit breaker is open or half-open")
+                .register(metrics.registry());
+        for (String outcome : List.of("success", "timeout", "error", "rate_limited", "short_circuited")) {
+            requestCounters.put(outcome, metrics.counter("ratip.ai.upstream.requests",
+                    "Chat completion requests by outcome", "outcome", outcome));
+        }
+        // Request sent to response body fully received; for streamed answers that is the last chunk.
+        for (String outcome : List.of("success", "timeout", "error")) {
+            roundTripTimers.put(outcome, metrics.timer("ratip.ai.upstream.latency",
+                    "Round trip of chat completion requests", "outcome", outcome));
+        }
+    }
     
-    public String summarizeEvents(List<CorrelatedEvent> events, String userQuery) {
+    /**
+     * @param aggregates pre-aggregated statistics for the question's range, sent ahead of the
+     *                   correlations
+     */
+    public CompletableFuture<String> summarizeEvents(String aggregates, List<CorrelatedEvent> events, String userQuery) {
+        if (apiKey == null || apiKey.equals("your-api-key-here") || apiKey.isEmpty()) {
+            log.warn("OpenAI API key not configured, returning mock response");
+            return CompletableFuture.completedFuture(generateMockResponse(aggregates, events, userQuery));
+        }
+        
         try {
-            if (apiKey == null || apiKey.equals("your-api-key-here") || apiKey.isEmpty()) {
-                log.warn("OpenAI API key not configured, returning mock response");
-                return generateMockResponse(events, userQuery);
-            }
-            
-            String context = buildEventContext(events);
+            String context = contextBuilder.build(aggregates, events);
             String prompt = buildPrompt(context, userQuery);
             
-            Map<String, Object> requestBody = Map.of(
-                "model", model,
-                "messages", List.of(
-                    Map.of("role", "system", "content", 
-                        "You are an expert DevOps assistant analyzing telemetry and alarm data. " +
-                        "Provide concise, actionable insights."),
-                    Map.of("role", "user", "content", prompt)
-                ),
-                "max_tokens", 500,
-                "temperature", 0.7
-            );
-            
-            String requestBodyJson = objectMapper.writeValueAsString(requestBody);
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(OPENAI_API_URL))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                JsonNode jsonResponse = objectMapper.readTree(response.body());
-                String content = jsonResponse.path("choices").get(0)
-                        .path("message").path("content").asText();
-                
-                log.info("ChatGPT response generated for query: {}", userQuery);
-                return content;
-            } else {
-                log.error("ChatGPT API error: {} - {}", response.statusCode(), response.body());
-                return generateMockResponse(events, userQuery);
-            }
+            return responseCache.get(AiResponseCache.key(model, userQuery, context), () -> complete(prompt, userQuery))
+                    .exceptionally(e -> {
+                        log.warn("ChatGPT unavailable, returning mock response: {}", rootCause(e).toString());
+                        return generateMockResponse(aggregates, events, userQuery);
+                    });
             
         } catch (Exception e) {
             log.error("Error calling ChatGPT API", e);
-            return generateMockResponse(events, userQuery);
+            return CompletableFuture.completedFuture(generateMockResponse(aggregates, events, userQuery));
+        }
+    }
+    
+    /**
+     * Streaming variant of {@link #summarizeEvents}: text is handed to {@code onDelta} chunk by
+     * chunk as the upstream generates it, and the returned future completes with the whole answer.
+     * Streams share the cache's single flight, so only the first caller for a key streams; a cached
+     * answer, the answer of a stream another caller is leading, or the mock answer when the
+     * upstream is unavailable before the first chunk arrives as a single chunk. A failure after the
+     * first chunk fails the future.
+     */
+    public CompletableFuture<String> streamSummary(String aggregates, List<CorrelatedEvent> events, String userQuery,
+                                                   Consumer<String> onDelta) {
+        if (apiKey == null || apiKey.equals("your-api-key-here") || apiKey.isEmpty()) {
+            log.warn("OpenAI API key not configured, returning mock response");
+            return deliverWhole(generateMockResponse(aggregates, events, userQuery), onDelta);
+        }
+        
+        String context = contextBuilder.build(aggregates, events);
+        String prompt = buildPrompt(context, userQuery);
+        AtomicBoolean leading = new AtomicBoolean();
+        AtomicBoolean started = new AtomicBoolean();
+        Consumer<String> relay = delta -> {
+            started.set(true);
+            onDelta.accept(delta);
+        };
+        return responseCache.get(AiResponseCache.key(model, userQuery, context), () -> {
+                    leading.set(true);
+                    return stream(prompt, userQuery, relay);
+                })
+                .thenApply(text -> {
+                    if (!leading.get()) {
+                        onDelta.accept(text);
+                    }
+                    return text;
+                })
+                .exceptionallyCompose(e -> {
+                    if (started.get()) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    log.warn("ChatGPT unavailable, returning mock response: {}", rootCause(e).toString());
+                    return deliverWhole(generateMockResponse(aggregates, events, userQuery), onDelta);
+                });
+    }
+    
+    private CompletableFuture<String> complete(String prompt, String userQuery) {
+        return send(prompt, userQuery, false, info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), this::messageContent)
+                : failure(info));
+    }
+    
+    /**
+     * The request timeout only covers the response headers, so the body is read under an idle
+     * timeout of its own.
+     */
+    private CompletableFuture<String> stream(String prompt, String userQuery, Consumer<String> onDelta) {
+        return send(prompt, userQuery, true, info -> info.statusCode() == 200
+                ? new CompletionChunkSubscriber(onDelta)
+                : failure(info));
+    }
+    
+    /**
+     * Sends one completion request through the circuit breaker and rate limiter, recording the
+     * outcome. Non-200 responses must be failed by {@code handler}.
+     */
+    private <T> CompletableFuture<T> send(String prompt, String userQuery, boolean stream, HttpResponse.BodyHandler<T> handler) {
+        if (!circuitBreaker.tryAcquire()) {
+            record("short_circuited");
+            return CompletableFuture.failedFuture(new IllegalStateException("ChatGPT circuit breaker is open"));
+        }
+        if (!rateLimiter.tryAcquire()) {
+            circuitBreaker.release();
+            record("rate_limited");
+            return CompletableFuture.failedFuture(new IllegalStateException("ChatGPT rate limit reached"));
+        }
+        
+        HttpRequest request;
+        try {
+            request = buildRequest(prompt, stream);
+        } catch (IOException e) {
+            circuitBreaker.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        long started = metrics.start();
+        return httpClient.sendAsync(request, handler)
+                .thenApply(HttpResponse::body)
+                .whenComplete((body, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                        record("success");
+                        metrics.stop(roundTripTimers.get("success"), started);
+                        log.info("ChatGPT response generated for query: {}", userQuery);
+                    } else {
+                        circuitBreaker.onFailure();
+                        String outcome = rootCause(error) instanceof HttpTimeoutException ? "timeout" : "error";
+                        record(outcome);
+                        metrics.stop(roundTripTimers.get(outcome), started);
+                        log.error("ChatGPT API call failed: {}", rootCause(error).toString());
+                    }
+                });
+    }
+    
+    private String messageContent(String body) {
+        try {
+            JsonNode jsonResponse = objectMapper.readTree(body);
+            return jsonResponse.path("choices").get(0)
+                    .path("message").path("content").asText();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
     
-    private String generateMockResponse(List<CorrelatedEvent> events, String userQuery) {
+    private static <T> HttpResponse.BodySubscriber<T> failure(HttpResponse.ResponseInfo info) {
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), body -> {
+            throw new IllegalStateException("ChatGPT API error: " + info.statusCode() + " - " + body);
+        });
+    }
+    
+    private static CompletableFuture<String> deliverWhole(String text, Consumer<String> onDelta) {
+        onDelta.accept(text);
+        return CompletableFuture.completedFuture(text);
+    }
+    
+    private HttpRequest buildRequest(String prompt, boolean stream) throws IOException {
+        Map<String, Object> requestBody = Map.of(
+            "model", model,
+            "messages", List.of(
+                Map.of("role", "system", "content", 
+                    "You are an expert DevOps assistant analyzing telemetry and alarm data. " +
+                    "Provide concise, actionable insights."),
+                Map.of("role", "user", "content", prompt)
+            ),
+            "max_tokens", 500,
+            "temperature", 0.7,
+            "stream", stream
+        );
+        
+        String requestBodyJson = objectMapper.writeValueAsString(requestBody);
+        
+        return HttpRequest.newBuilder()
+                .uri(completionsUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
+                .build();
+    }
+    
+    private void record(String outcome) {
+        requestCounters.get(outcome).increment();
+    }
+    
+    private static Throwable rootCause(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+    
+    private String generateMockResponse(String aggregates, List<CorrelatedEvent> events, String userQuery) {
         StringBuilder response = new StringBuilder();
         response.append("AI Analysis (Mock Mode - Set OPENAI_API_KEY for real AI responses)\n\n");
         response.append("Query: ").append(userQuery).append("\n\n");
+        response.append(aggregates).append("\n");
         response.append("Analysis Summary:\n");
         response.append("Found ").append(events.size()).append(" correlated events in the specified time range.\n\n");
         
@@ -107,36 +308,6 @@ public class ChatGptClient {
         return response.toString();
     }
     
-    private String buildEventContext(List<CorrelatedEvent> events) {
-        StringBuilder context = new StringBuilder();
-        context.append("Recent Events and Correlations:\n\n");
-        
-        for (int i = 0; i < Math.min(events.size(), 20); i++) {
-            CorrelatedEvent event = events.get(i);
-            context.append(String.format("%d. [%s] %s (Confidence: %.1f%%)\n",
-                    i + 1,
-                    event.getCorrelationTimestamp(),
-                    event.getDescription(),
-                    event.getConfidenceScore() * 100));
-            
-            if (event.getAlarm() != null) {
-                context.append(String.format("   Alarm: %s - %s (Severity: %s)\n",
-                        event.getAlarm().getServiceName(),
-                        event.getAlarm().getAlarmName(),
-                        event.getAlarm().getSeverity()));
-            }
-            
-            if (event.getTelemetry() != null) {
-                context.append(String.format("   Telemetry: %s = %.2f\n",
-                        event.getTelemetry().getMetricType(),
-                        event.getTelemetry().getValue()));
-            }
-            context.append("\n");
-        }
-        
-        return context.toString();
-    }
-    
     private String buildPrompt(String context, String userQuery) {
         return String.format(
                 "Based on the following telemetry and alarm data:\n\n%s\n\n" +
@@ -145,4 +316,110 @@ public class ChatGptClient {
                 "identify root causes, and suggest remediation steps if applicable.",
                 context, userQuery);
     }
+    
+    /**
+     * Reads the upstream's server-sent event stream line by line and hands each
+     * {@code choices[0].delta.content} fragment on as soon as its line arrives. The body completes
+     * with the whole answer once {@code [DONE]} arrives; a stream that ends without it, or goes
+     * quiet for longer than {@code ratip.openai.stream-idle-timeout}, fails instead.
+     */
+    private final class CompletionChunkSubscriber implements HttpResponse.BodySubscriber<String> {
+        
+        private final Consumer<String> onDelta;
+        private final HttpResponse.BodySubscriber<Void> lines = HttpResponse.BodySubscribers.fromLineSubscriber(new Lines());
+        private final CompletableFuture<String> answer = new CompletableFuture<>();
+        private final StringBuilder text = new StringBuilder();
+        private volatile long lastActivityNanos;
+        
+        CompletionChunkSubscriber(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
+        
+        @Override
+        public CompletionStage<String> getBody() {
+            return answer;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            lastActivityNanos = System.nanoTime();
+            watchIdle(subscription, streamIdleTimeoutNanos);
+            lines.onSubscribe(subscription);
+        }
+        
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            lastActivityNanos = System.nanoTime();
+            lines.onNext(buffers);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            answer.completeExceptionally(throwable);
+            lines.onError(throwable);
+        }
+        
+        @Override
+        public void onComplete() {
+            lines.onComplete();
+        }
+        
+        private void watchIdle(Flow.Subscription subscription, long delayNanos) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                if (answer.isDone()) {
+                    return;
+                }
+                long idle = System.nanoTime() - lastActivityNanos;
+                if (idle < streamIdleTimeoutNanos) {
+                    watchIdle(subscription, streamIdleTimeoutNanos - idle);
+                    return;
+                }
+                answer.completeExceptionally(new HttpTimeoutException("ChatGPT stream idle for "
+                        + Duration.ofNanos(idle).toMillis() + " ms"));
+                subscription.cancel();
+            });
+        }
+        
+        private final class Lines implements Flow.Subscriber<String> {
+            
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+            
+            @Override
+            public void onNext(String line) {
+                if (answer.isDone() || !line.startsWith("data:")) {
+                    return;
+                }
+                String data = line.substring(5).trim();
+                if (data.equals("[DONE]")) {
+                    answer.complete(text.toString());
+                    return;
+                }
+                if (data.isEmpty()) {
+                    return;
+                }
+                try {
+                    String delta = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content").asText("");
+                    if (!delta.isEmpty()) {
+                        text.append(delta);
+                        onDelta.accept(delta);
+                    }
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable ChatGPT stream chunk: {}", e.getMessage());
+                }
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+                answer.completeExceptionally(throwable);
+            }
+            
+            @Override
+            public void onComplete() {
+                answer.completeExceptionally(new IOException("ChatGPT stream ended before [DONE]"));
+            }
+        }
+    }
 }
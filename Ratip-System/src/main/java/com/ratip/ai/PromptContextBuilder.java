@@ -0,0 +1,252 @@
+package com.ratip.ai;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds the event context for LLM prompts within a token budget. Correlations describing the
+ * same thing (service, metric, severity, description and action) collapse into one counted group;
+ * groups are ranked by their best member's confidence, weighted by alarm severity and an
+ * exponential recency decay, and packed highest first until {@code ratip.ai.context.max-tokens}
+ * is reached.
+ * <p>
+ * Tokens are estimated at {@value #CHARS_PER_TOKEN} characters each. The text that does not
+ * depend on the rest of the group is rendered once per correlation and kept in a bounded LRU map,
+ * so repeated questions over the same events do not format them again.
+ */
+@Component
+public class PromptContextBuilder {
+    
+    static final int CHARS_PER_TOKEN = 4;
+    
+    private final int maxChars;
+    private final double decayPerMilli;
+    private final int fragmentCacheSize;
+    private final Map<String, Fragment> fragments;
+    
+    public PromptContextBuilder(@Value("${ratip.ai.context.max-tokens:1500}") int maxTokens,
+                                @Value("${ratip.ai.context.recency-half-life:PT1H}") Duration recencyHalfLife,
+                                @Value("${ratip.ai.context.fragment-cache-size:10000}") int fragmentCacheSize) {
+        this.maxChars = maxTokens * CHARS_PER_TOKEN;
+        this.decayPerMilli = Math.log(2) / recencyHalfLife.toMillis();
+        this.fragmentCacheSize = fragmentCacheSize;
+        this.fragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Fragment> eldest) {
+                return size() > PromptContextBuilder.this.fragmentCacheSize;
+            }
+        };
+    }
+    
+    /**
+     * @param aggregates pre-aggregated statistics, placed first and cut by whole lines if they
+     *                   alone exceed the budget
+     * @param events     correlations in any order
+     */
+    public String build(String aggregates, List<CorrelatedEvent> events) {
+        StringBuilder context = new StringBuilder(maxChars);
+        for (String line : aggregates.split("\n", -1)) {
+            if (context.length() + line.length() + 1 > maxChars) {
+                break;
+            }
+            context.append(line).append('\n');
+        }
+        
+        List<Group> groups = rank(events, Instant.now());
+        if (groups.isEmpty()) {
+            return context.append("No correlated events in this range.\n").toString();
+        }
+        context.append("Correlated events (").append(groups.size()).append(" groups from ").append(events.size())
+                .append(" events, most relevant first):\n");
+        
+        StringBuilder entry = new StringBuilder();
+        int packed = 0;
+        int omittedEvents = events.size();
+        for (Group group : groups) {
+            entry.setLength(0);
+            render(packed + 1, group, entry);
+            // keep room for the omission note
+            if (context.length() + entry.length() + 80 > maxChars) {
+                break;
+            }
+            context.append(entry);
+            packed++;
+            omittedEvents -= group.count;
+        }
+        if (packed < groups.size()) {
+            context.append("(").append(groups.size() - packed).append(" more groups covering ").append(omittedEvents)
+                    .append(" events left out to fit the context budget)\n");
+        }
+        return context.toString();
+    }
+    
+    private List<Group> rank(List<CorrelatedEvent> events, Instant now) {
+        Map<GroupKey, Group> groups = new LinkedHashMap<>();
+        for (CorrelatedEvent event : events) {
+            AlarmEvent alarm = event.getAlarm();
+            GroupKey key = new GroupKey(alarm == null ? null : alarm.getServiceName(),
+                    alarm == null ? null : alarm.getMetricType(),
+                    alarm == null ? null : alarm.getSeverity(),
+                    event.getDescription(), event.getRecommendedAction());
+            groups.computeIfAbsent(key, k -> new Group()).add(event, score(event, now));
+        }
+        List<Group> ranked = new ArrayList<>(groups.values());
+        ranked.sort(Comparator.comparingDouble((Group group) -> group.bestScore).reversed()
+                .thenComparing(Comparator.comparingInt((Group group) -> group.count).reversed()));
+        return ranked;
+    }
+    
+    private double score(CorrelatedEvent event, Instant now) {
+        double confidence = event.getConfidenceScore() == null ? 0.5 : event.getConfidenceScore();
+        String severity = event.getAlarm() == null ? null : event.getAlarm().getSeverity();
+        double severityWeight = "CRITICAL".equals(severity) ? 1.0 : "WARNING".equals(severity) ? 0.6 : 0.4;
+        Instant timestamp = event.getCorrelationTimestamp();
+        long ageMillis = timestamp == null ? 0 : Math.max(0, now.toEpochMilli() - timestamp.toEpochMilli());
+        return confidence * severityWeight * Math.exp(-decayPerMilli * ageMillis);
+    }
+    
+    private void render(int rank, Group group, StringBuilder out) {
+        Fragment fragment = fragment(group.best);
+        out.append(rank).append(". ").append(fragment.head);
+        if (group.count > 1) {
+            out.append(" ×").append(group.count);
+        }
+        out.append(": ").append(fragment.description).append(" (confidence ");
+        appendFixed(out, group.bestConfidence * 100, 1);
+        out.append('%');
+        if (group.first != null) {
+            Instant first = group.first.truncatedTo(ChronoUnit.SECONDS);
+            Instant last = group.last.truncatedTo(ChronoUnit.SECONDS);
+            out.append(", ").append(first);
+            if (!last.equals(first)) {
+                out.append(" to ").append(last);
+            }
+        }
+        out.append(")\n");
+        if (group.minValue <= group.maxValue) {
+            out.append("   Telemetry: ");
+            appendFixed(out, group.minValue, 2);
+            if (group.maxValue > group.minValue) {
+                out.append(" to ");
+                appendFixed(out, group.maxValue, 2);
+            }
+            out.append('\n');
+        }
+        out.append(fragment.detail);
+    }
+    
+    private Fragment fragment(CorrelatedEvent event) {
+        synchronized (fragments) {
+            Fragment cached = event.getId() == null ? null : fragments.get(event.getId());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Fragment fragment = Fragment.of(event);
+        if (event.getId() != null) {
+            synchronized (fragments) {
+                fragments.put(event.getId(), fragment);
+            }
+        }
+        return fragment;
+    }
+    
+    /**
+     * Appends {@code value} rounded to {@code decimals} places without going through
+     * {@code String.format}.
+     */
+    static void appendFixed(StringBuilder out, double value, int decimals) {
+        if (!Double.isFinite(value)) {
+            out.append(value);
+            return;
+        }
+        long scale = decimals == 1 ? 10 : 100;
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.append('-');
+        }
+        out.append(scaled / scale).append('.');
+        String fraction = Long.toString(scaled % scale);
+        for (int i = fraction.length(); i < decimals; i++) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+    
+    private record GroupKey(String serviceName, String metricType, String severity, String description, String action) {
+    }
+    
+    private static final class Group {
+        
+        private CorrelatedEvent best;
+        private double bestScore = Double.NEGATIVE_INFINITY;
+        private double bestConfidence;
+        private int count;
+        private Instant first;
+        private Instant last;
+        private double minValue = Double.POSITIVE_INFINITY;
+        private double maxValue = Double.NEGATIVE_INFINITY;
+        
+        void add(CorrelatedEvent event, double score) {
+            count++;
+            if (score > bestScore) {
+                best = event;
+                bestScore = score;
+            }
+            if (event.getConfidenceScore() != null) {
+                bestConfidence = Math.max(bestConfidence, event.getConfidenceScore());
+            }
+            Instant timestamp = event.getCorrelationTimestamp();
+            if (timestamp != null) {
+                first = first == null || timestamp.isBefore(first) ? timestamp : first;
+                last = last == null || timestamp.isAfter(last) ? timestamp : last;
+            }
+            TelemetryEvent telemetry = event.getTelemetry();
+            if (telemetry != null && telemetry.getValue() != null) {
+                minValue = Math.min(minValue, telemetry.getValue());
+                maxValue = Math.max(maxValue, telemetry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * The parts of a group entry that come from its representative correlation alone.
+     */
+    private record Fragment(String head, String description, String detail) {
+        
+        static Fragment of(CorrelatedEvent event) {
+            AlarmEvent alarm = event.getAlarm();
+            StringBuilder head = new StringBuilder();
+            if (alarm != null) {
+                head.append('[').append(alarm.getSeverity()).append("] ")
+                        .append(alarm.getServiceName()).append(' ').append(alarm.getMetricType());
+            } else {
+                head.append(Objects.requireNonNullElse(event.getCorrelationType(), "Correlation"));
+            }
+            StringBuilder detail = new StringBuilder();
+            if (alarm != null && alarm.getAlarmName() != null) {
+                detail.append("   Alarm: ").append(alarm.getAlarmName()).append('\n');
+            }
+            if (event.getRootCause() != null) {
+                detail.append("   Root cause: ").append(event.getRootCause()).append('\n');
+            }
+            if (event.getRecommendedAction() != null) {
+                detail.append("   Action: ").append(event.getRecommendedAction()).append('\n');
+            }
+            return new Fragment(head.toString(), Objects.requireNonNullElse(event.getDescription(), ""), detail.toString());
+        }
+    }
+}
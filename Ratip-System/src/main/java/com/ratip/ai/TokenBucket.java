@@ -0,0 +1,37 @@
+package com.ratip.ai;
+
+/**
+ * Non-blocking token bucket: refills continuously at {@code permitsPerMinute} and holds at most
+ * {@code burst} tokens, so short bursts are allowed while the long-run rate stays within quota.
+ */
+public class TokenBucket {
+    
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAtNanos;
+    
+    public TokenBucket(int permitsPerMinute, int burst) {
+        if (permitsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive");
+        }
+        this.capacity = burst;
+        this.tokensPerNano = permitsPerMinute / 60e9;
+        this.tokens = burst;
+        this.refilledAtNanos = System.nanoTime();
+    }
+    
+    /**
+     * @return true if a token was taken; false if the caller is over quota
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAtNanos) * tokensPerNano);
+        refilledAtNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
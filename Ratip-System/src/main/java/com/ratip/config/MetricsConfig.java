@@ -0,0 +1,54 @@
+package com.ratip.config;
+
+import com.ratip.repository.MockDataRepository;
+import com.ratip.service.SlidingWindowAggregator;
+import com.ratip.service.StreamingCorrelator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+    
+    /**
+     * Turns every {@code ratip.*} meter into a no-op when instrumentation is switched off.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ratip.metrics.enabled", havingValue = "false")
+    public MeterFilter denyRatipMeters() {
+        return MeterFilter.denyNameStartsWith("ratip.");
+    }
+    
+    /**
+     * Size gauges for the in-memory stores and windows. They are only evaluated when metrics are
+     * read, never on the ingest path.
+     */
+    @Bean
+    public MeterBinder storeSizeGauges(MockDataRepository repository,
+                                       SlidingWindowAggregator windowAggregator,
+                                       StreamingCorrelator streamingCorrelator) {
+        return registry -> {
+            Gauge.builder("ratip.store.size", repository, MockDataRepository::telemetryCount)
+                    .description("Events held in the in-memory store")
+                    .tag("type", "telemetry")
+                    .register(registry);
+            Gauge.builder("ratip.store.size", repository, MockDataRepository::alarmCount)
+                    .description("Events held in the in-memory store")
+                    .tag("type", "alarm")
+                    .register(registry);
+            Gauge.builder("ratip.store.size", repository, MockDataRepository::correlationCount)
+                    .description("Events held in the in-memory store")
+                    .tag("type", "correlation")
+                    .register(registry);
+            Gauge.builder("ratip.window.events", windowAggregator, SlidingWindowAggregator::windowSize)
+                    .description("Telemetry points inside the sliding aggregation window")
+                    .register(registry);
+            Gauge.builder("ratip.correlation.window.series", streamingCorrelator, StreamingCorrelator::openSeries)
+                    .description("Series with an open streaming correlation window")
+                    .register(registry);
+        };
+    }
+}
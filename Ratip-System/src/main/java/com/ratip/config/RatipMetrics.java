@@ -0,0 +1,75 @@
+package com.ratip.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point for timing hot paths. A call site takes {@link #start()} before the work and hands
+ * it to {@link #stop} afterwards; with {@code ratip.metrics.enabled=false} neither reads the clock,
+ * so the only cost left is a branch on a final field. {@link MetricsConfig} also denies every
+ * {@code ratip.*} meter in that case, so counters and gauges registered elsewhere become no-ops.
+ * <p>
+ * Timers are published with the percentiles configured under
+ * {@code management.metrics.distribution} and show up in {@code /actuator/metrics}.
+ */
+@Component
+public class RatipMetrics {
+    
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    
+    public RatipMetrics(MeterRegistry registry, @Value("${ratip.metrics.enabled:true}") boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public MeterRegistry registry() {
+        return registry;
+    }
+    
+    public Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+    
+    public Counter counter(String name, String description, String... tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+    
+    /**
+     * @return a start time for {@link #stop}, or 0 without reading the clock when disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+    
+    public void stop(Timer timer, long startNanos) {
+        if (enabled) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Records the time between two {@link #start()} readings, so one clock read can end the
+     * timings of a whole batch.
+     */
+    public void stop(Timer timer, long startNanos, long stopNanos) {
+        if (enabled) {
+            timer.record(stopNanos - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
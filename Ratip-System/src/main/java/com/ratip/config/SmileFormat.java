@@ -0,0 +1,81 @@
+package com.ratip.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Binary wire format for clients that send or read events in bulk, negotiated with
+ * {@code Content-Type} / {@code Accept: application/x-jackson-smile}; JSON stays the default.
+ * Smile keeps the JSON data model, so the same models and endpoints serve both.
+ * <p>
+ * Compared with the JSON mapper, timestamps are written as epoch milliseconds instead of
+ * formatted strings, overriding the models' {@code @JsonFormat} patterns, and repeated short
+ * string values such as service and metric names are back-referenced after their first
+ * occurrence in a payload, as property names already are.
+ */
+@Component
+public class SmileFormat {
+    
+    public static final String MEDIA_TYPE_VALUE = "application/x-jackson-smile";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    
+    private final ObjectMapper mapper;
+    
+    public SmileFormat(Jackson2ObjectMapperBuilder builder) {
+        this.mapper = configure(builder.factory(newFactory()).build());
+    }
+    
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+    
+    public boolean isSmile(MediaType contentType) {
+        return contentType != null && MEDIA_TYPE.isCompatibleWith(contentType);
+    }
+    
+    public static SmileFactory newFactory() {
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+    
+    /**
+     * Applies the timestamp settings to a mapper built on {@link #newFactory()}. Public so the
+     * benchmarks measure the same configuration.
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper
+                .setAnnotationIntrospector(new EpochMillisIntrospector())
+                .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS)
+                .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+    }
+    
+    /**
+     * Replaces string formats declared on {@link Instant} properties with epoch milliseconds.
+     */
+    private static final class EpochMillisIntrospector extends JacksonAnnotationIntrospector {
+        
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        public JsonFormat.Value findFormat(Annotated annotated) {
+            JsonFormat.Value format = super.findFormat(annotated);
+            if (format != null && Instant.class.equals(annotated.getRawType())) {
+                return JsonFormat.Value.forShape(JsonFormat.Shape.NUMBER_INT);
+            }
+            return format;
+        }
+    }
+}
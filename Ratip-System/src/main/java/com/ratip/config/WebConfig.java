@@ -1,12 +1,20 @@
 package com.ratip.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
     
+    private final SmileFormat smileFormat;
+    
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
@@ -15,4 +23,26 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedHeaders("*")
                 .maxAge(3600);
     }
+    
+    /**
+     * Swaps the default Smile converter, which Spring adds whenever Smile is on the classpath,
+     * for one using {@link SmileFormat}'s mapper. It keeps its place after the JSON converter, so
+     * requests without an {@code Accept} header still get JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        MappingJackson2SmileHttpMessageConverter smile = new MappingJackson2SmileHttpMessageConverter(smileFormat.mapper());
+        int index = -1;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2SmileHttpMessageConverter) {
+                index = i;
+                break;
+            }
+        }
+        if (index >= 0) {
+            converters.set(index, smile);
+        } else {
+            converters.add(smile);
+        }
+    }
 }
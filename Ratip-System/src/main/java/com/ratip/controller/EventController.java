@@ -0,0 +1,88 @@
+package com.ratip.controller;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.EventPage;
+import com.ratip.service.EventQueryService;
+import com.ratip.service.EventQueryService.Filter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1")
+@CrossOrigin(origins = "*", exposedHeaders = {EventController.NEXT_CURSOR_HEADER, EventController.WATERMARK_HEADER})
+@RequiredArgsConstructor
+public class EventController {
+    
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String WATERMARK_HEADER = "X-Watermark";
+    
+    private final EventQueryService eventQueryService;
+    
+    @GetMapping("/telemetry")
+    public ResponseEntity<List<TelemetryEvent>> telemetry(@RequestParam(required = false) String service,
+                                                          @RequestParam(required = false) String metric,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) String since,
+                                                          @RequestParam(required = false) Integer limit) {
+        Filter filter = new Filter(service, metric, null, from, to, cursor, since, limit);
+        return respond(eventQueryService.telemetry(filter), since);
+    }
+    
+    @GetMapping("/alarms")
+    public ResponseEntity<List<AlarmEvent>> alarms(@RequestParam(required = false) String service,
+                                                   @RequestParam(required = false) String metric,
+                                                   @RequestParam(required = false) String severity,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) String since,
+                                                   @RequestParam(required = false) Integer limit) {
+        Filter filter = new Filter(service, metric, severity, from, to, cursor, since, limit);
+        return respond(eventQueryService.alarms(filter), since);
+    }
+    
+    @GetMapping("/correlations")
+    public ResponseEntity<List<CorrelatedEvent>> correlations(@RequestParam(required = false) String service,
+                                                              @RequestParam(required = false) String metric,
+                                                              @RequestParam(required = false) String severity,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) String since,
+                                                              @RequestParam(required = false) Integer limit) {
+        Filter filter = new Filter(service, metric, severity, from, to, cursor, since, limit);
+        return respond(eventQueryService.correlations(filter), since);
+    }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    
+    /**
+     * The body stays a plain array, as the dashboard expects; paging state travels in headers.
+     */
+    private static <T> ResponseEntity<List<T>> respond(EventPage<T> page, String since) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.next() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.next().encode());
+        }
+        String watermark = EventQueryService.watermark(page, since);
+        if (watermark != null) {
+            response.header(WATERMARK_HEADER, watermark);
+        }
+        return response.body(page.items());
+    }
+}
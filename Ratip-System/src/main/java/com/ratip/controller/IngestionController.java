@@ -0,0 +1,105 @@
+package com.ratip.controller;
+
+import com.ratip.config.SmileFormat;
+import com.ratip.model.BatchIngestResult;
+import com.ratip.model.DeadLetter;
+import com.ratip.service.BatchIngestionService;
+import com.ratip.service.DeadLetterStore;
+import com.ratip.service.IngestionPipeline;
+import com.ratip.service.KeyPartitioner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class IngestionController {
+    
+    private final BatchIngestionService batchIngestionService;
+    private final IngestionPipeline pipeline;
+    private final DeadLetterStore deadLetterStore;
+    private final KeyPartitioner partitioner;
+    
+    @PostMapping(value = "/telemetry/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, SmileFormat.MEDIA_TYPE_VALUE})
+    public ResponseEntity<BatchIngestResult> ingestTelemetry(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                             InputStream body) throws IOException, InterruptedException {
+        return respond(batchIngestionService.ingestTelemetry(body, contentType));
+    }
+    
+    @PostMapping(value = "/alarms/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, SmileFormat.MEDIA_TYPE_VALUE})
+    public ResponseEntity<BatchIngestResult> ingestAlarms(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                          InputStream body) throws IOException, InterruptedException {
+        return respond(batchIngestionService.ingestAlarms(body, contentType));
+    }
+    
+    @GetMapping("/ingest/status")
+    public ResponseEntity<Map<String, Object>> pipelineStatus() {
+        return ResponseEntity.ok(Map.of(
+                "shards", pipeline.shardCount(),
+                "queueDepths", pipeline.queueDepths(),
+                "remainingCapacity", pipeline.remainingCapacity(),
+                "deadLetters", deadLetterStore.size()
+        ));
+    }
+    
+    /**
+     * Where events of a service are processed: its partition, the node that owns it and, on that
+     * node, the shard. Routers splitting the key space across nodes can use this or compute the
+     * same mapping themselves.
+     */
+    @GetMapping("/partitions/{serviceName}")
+    public ResponseEntity<Map<String, Object>> partitionOf(@PathVariable String serviceName) {
+        return ResponseEntity.ok(Map.of(
+                "serviceName", serviceName,
+                "partition", partitioner.partitionOf(serviceName),
+                "node", partitioner.ownerOf(serviceName),
+                "nodeCount", partitioner.nodeCount(),
+                "local", partitioner.isLocal(serviceName),
+                "shard", partitioner.shardOf(serviceName)
+        ));
+    }
+    
+    @GetMapping("/dlq")
+    public ResponseEntity<List<DeadLetter>> listDeadLetters(@RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(deadLetterStore.list(limit));
+    }
+    
+    @PostMapping("/dlq/{id}/replay")
+    public ResponseEntity<Map<String, Object>> replayDeadLetter(@PathVariable String id) {
+        boolean replayed = pipeline.replay(id);
+        return ResponseEntity.status(replayed ? HttpStatus.ACCEPTED : HttpStatus.NOT_FOUND)
+                .body(Map.of("id", id, "replayed", replayed));
+    }
+    
+    @PostMapping("/dlq/replay")
+    public ResponseEntity<Map<String, Object>> replayAllDeadLetters() {
+        return ResponseEntity.accepted().body(Map.of("replayed", pipeline.replayAll()));
+    }
+    
+    /**
+     * 202 when the whole batch was queued; 429 with Retry-After when the pipeline pushed back, in
+     * which case the batch can be re-sent as a whole since ingestion de-duplicates by event id.
+     */
+    private ResponseEntity<BatchIngestResult> respond(BatchIngestResult result) {
+        if (result.getThrottled() > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(result);
+        }
+        return ResponseEntity.accepted().body(result);
+    }
+}
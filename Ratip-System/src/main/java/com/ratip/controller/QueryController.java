@@ -1,13 +1,20 @@
 package com.ratip.controller;
 
+import com.ratip.service.LiveEventFeed;
 import com.ratip.service.QueryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @RestController
@@ -17,32 +24,73 @@ import java.util.Map;
 public class QueryController {
     
     private final QueryService queryService;
+    private final LiveEventFeed liveEventFeed;
     
     @PostMapping("/query")
-    public ResponseEntity<Map<String, String>> handleQuery(@RequestBody Map<String, String> request) {
-        try {
-            String userQuery = request.get("query");
-            
-            if (userQuery == null || userQuery.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Query cannot be empty"));
-            }
-            
-            log.info("Received query: {}", userQuery);
-            
-            String response = queryService.processQuery(userQuery);
-            
-            return ResponseEntity.ok(Map.of(
-                    "query", userQuery,
-                    "response", response,
-                    "timestamp", Instant.now().toString()
-            ));
-            
-        } catch (Exception e) {
-            log.error("Error handling query", e);
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("error", e.getMessage()));
+    public CompletableFuture<ResponseEntity<Map<String, String>>> handleQuery(@RequestBody Map<String, String> request) {
+        String userQuery = request.get("query");
+        
+        if (userQuery == null || userQuery.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("error", "Query cannot be empty")));
+        }
+        
+        log.info("Received query: {}", userQuery);
+        
+        return queryService.processQuery(userQuery)
+                .thenApply(response -> ResponseEntity.ok(Map.of(
+                        "query", userQuery,
+                        "response", response,
+                        "timestamp", Instant.now().toString()
+                )))
+                .exceptionally(e -> {
+                    log.error("Error handling query", e);
+                    return ResponseEntity.internalServerError()
+                            .body(Map.of("error", String.valueOf(e.getMessage())));
+                });
+    }
+    
+    /**
+     * Same request as {@code /query}, answered as server-sent events: {@code token} events carry
+     * {@code {"text": ...}} fragments as they are generated, then a final {@code done} or
+     * {@code error} event.
+     */
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamQuery(@RequestBody Map<String, String> request) {
+        String userQuery = request.get("query");
+        
+        if (userQuery == null || userQuery.trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
         }
+        
+        log.info("Received streaming query: {}", userQuery);
+        
+        SseEmitter emitter = new SseEmitter();
+        AtomicBoolean clientGone = new AtomicBoolean();
+        emitter.onCompletion(() -> clientGone.set(true));
+        emitter.onError(e -> clientGone.set(true));
+        
+        queryService.streamQuery(userQuery, delta -> sendEvent(emitter, clientGone, "token", Map.of("text", delta)))
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        sendEvent(emitter, clientGone, "done", Map.of(
+                                "query", userQuery,
+                                "timestamp", Instant.now().toString()
+                        ));
+                    } else {
+                        log.error("Error streaming query", error);
+                        sendEvent(emitter, clientGone, "error", Map.of("error", String.valueOf(error.getMessage())));
+                    }
+                    emitter.complete();
+                });
+        return ResponseEntity.ok(emitter);
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream() {
+        return liveEventFeed.subscribe()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
     }
     
     @GetMapping("/health")
@@ -53,4 +101,19 @@ public class QueryController {
                 "timestamp", Instant.now().toString()
         ));
     }
+    
+    /**
+     * Once the browser has gone away the rest of the answer is still read, so it can be cached,
+     * but no longer sent.
+     */
+    private static void sendEvent(SseEmitter emitter, AtomicBoolean clientGone, String name, Object data) {
+        if (clientGone.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            clientGone.set(true);
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.ratip.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchIngestResult {
+    private long accepted;
+    private long rejected;
+    private long throttled;
+    private List<String> errors;
+}
@@ -0,0 +1,264 @@
+package com.ratip.repository;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of events in {@link EventLog} segments. Integers are unsigned LEB128 varints,
+ * doubles fixed 8 bytes behind a presence bit, timestamps epoch milliseconds. A correlation
+ * carries its alarm and telemetry point inline, encoded like the standalone records.
+ * <p>
+ * Low-cardinality strings (service, metric, severity, region, ...) are interned per segment: the
+ * first occurrence is written out and later ones refer to it by index. Each string starts with a
+ * varint tag: {@code 0} is null, low bits {@code 01} a literal, {@code 10} a literal that is
+ * added to the segment's symbol table, {@code 11} a reference; the remaining bits are the length
+ * or the index. Decoding a segment from its start rebuilds the same table.
+ */
+final class EventCodec {
+    
+    static final byte TELEMETRY = 1;
+    static final byte ALARM = 2;
+    static final byte CORRELATION = 3;
+    
+    private static final int MAX_SYMBOLS = 1 << 16;
+    private static final int TAG_LITERAL = 1;
+    private static final int TAG_INTERNED = 2;
+    private static final int TAG_REFERENCE = 3;
+    
+    private EventCodec() {
+    }
+    
+    /**
+     * Encoding side of one segment. Not thread-safe.
+     */
+    static final class Writer {
+        
+        private final Map<String, Integer> symbols = new HashMap<>();
+        
+        /**
+         * Writes {@code event} at the buffer's position.
+         *
+         * @return the event's timestamp in epoch milliseconds
+         * @throws java.nio.BufferOverflowException if it does not fit; the buffer is then
+         *                                          left mid-record
+         */
+        long encode(Object event, ByteBuffer out) {
+            if (event instanceof TelemetryEvent telemetry) {
+                out.put(TELEMETRY);
+                return telemetry(telemetry, out);
+            }
+            if (event instanceof AlarmEvent alarm) {
+                out.put(ALARM);
+                return alarm(alarm, out);
+            }
+            if (event instanceof CorrelatedEvent correlation) {
+                out.put(CORRELATION);
+                text(out, correlation.getId());
+                symbol(out, correlation.getCorrelationType());
+                text(out, correlation.getDescription());
+                text(out, correlation.getRootCause());
+                text(out, correlation.getRecommendedAction());
+                out.put((byte) ((correlation.getConfidenceScore() == null ? 0 : 1)
+                        | (correlation.getAlarm() == null ? 0 : 2) | (correlation.getTelemetry() == null ? 0 : 4)));
+                if (correlation.getConfidenceScore() != null) {
+                    out.putDouble(correlation.getConfidenceScore());
+                }
+                if (correlation.getAlarm() != null) {
+                    alarm(correlation.getAlarm(), out);
+                }
+                if (correlation.getTelemetry() != null) {
+                    telemetry(correlation.getTelemetry(), out);
+                }
+                long millis = correlation.getCorrelationTimestamp().toEpochMilli();
+                putVarLong(out, millis);
+                return millis;
+            }
+            throw new IllegalArgumentException("Cannot log " + (event == null ? "null" : event.getClass().getSimpleName()));
+        }
+        
+        private long telemetry(TelemetryEvent telemetry, ByteBuffer out) {
+            text(out, telemetry.getId());
+            symbol(out, telemetry.getServiceName());
+            symbol(out, telemetry.getMetricType());
+            symbol(out, telemetry.getRegion());
+            symbol(out, telemetry.getEnvironment());
+            out.put((byte) (telemetry.getValue() == null ? 0 : 1));
+            if (telemetry.getValue() != null) {
+                out.putDouble(telemetry.getValue());
+            }
+            long millis = telemetry.getTimestamp().toEpochMilli();
+            putVarLong(out, millis);
+            return millis;
+        }
+        
+        private long alarm(AlarmEvent alarm, ByteBuffer out) {
+            text(out, alarm.getId());
+            symbol(out, alarm.getAlarmName());
+            symbol(out, alarm.getServiceName());
+            symbol(out, alarm.getMetricType());
+            symbol(out, alarm.getSeverity());
+            symbol(out, alarm.getState());
+            symbol(out, alarm.getRegion());
+            text(out, alarm.getDescription());
+            out.put((byte) ((alarm.getThreshold() == null ? 0 : 1) | (alarm.getValue() == null ? 0 : 2)));
+            if (alarm.getThreshold() != null) {
+                out.putDouble(alarm.getThreshold());
+            }
+            if (alarm.getValue() != null) {
+                out.putDouble(alarm.getValue());
+            }
+            long millis = alarm.getTimestamp().toEpochMilli();
+            putVarLong(out, millis);
+            return millis;
+        }
+        
+        private void symbol(ByteBuffer out, String value) {
+            if (value == null) {
+                putVarLong(out, 0);
+                return;
+            }
+            Integer index = symbols.get(value);
+            if (index != null) {
+                putVarLong(out, ((long) index << 2) | TAG_REFERENCE);
+                return;
+            }
+            if (symbols.size() < MAX_SYMBOLS) {
+                symbols.put(value, symbols.size());
+                putString(out, value, TAG_INTERNED);
+            } else {
+                putString(out, value, TAG_LITERAL);
+            }
+        }
+        
+        private static void text(ByteBuffer out, String value) {
+            if (value == null) {
+                putVarLong(out, 0);
+            } else {
+                putString(out, value, TAG_LITERAL);
+            }
+        }
+        
+        private static void putString(ByteBuffer out, String value, int tag) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(out, ((long) bytes.length << 2) | tag);
+            out.put(bytes);
+        }
+    }
+    
+    /**
+     * Decoding side of one segment; records must be read in order from the segment start.
+     */
+    static final class Reader {
+        
+        private final List<String> symbols = new ArrayList<>();
+        
+        Object decode(ByteBuffer in) {
+            byte type = in.get();
+            if (type == TELEMETRY) {
+                return telemetry(in);
+            }
+            if (type == ALARM) {
+                return alarm(in);
+            }
+            if (type == CORRELATION) {
+                CorrelatedEvent.CorrelatedEventBuilder correlation = CorrelatedEvent.builder()
+                        .id(string(in))
+                        .correlationType(string(in))
+                        .description(string(in))
+                        .rootCause(string(in))
+                        .recommendedAction(string(in));
+                byte present = in.get();
+                if ((present & 1) != 0) {
+                    correlation.confidenceScore(in.getDouble());
+                }
+                if ((present & 2) != 0) {
+                    correlation.alarm(alarm(in));
+                }
+                if ((present & 4) != 0) {
+                    correlation.telemetry(telemetry(in));
+                }
+                return correlation.correlationTimestamp(Instant.ofEpochMilli(getVarLong(in))).build();
+            }
+            throw new IllegalStateException("Unknown event log record type " + type);
+        }
+        
+        private TelemetryEvent telemetry(ByteBuffer in) {
+            TelemetryEvent.TelemetryEventBuilder telemetry = TelemetryEvent.builder()
+                    .id(string(in))
+                    .serviceName(string(in))
+                    .metricType(string(in))
+                    .region(string(in))
+                    .environment(string(in));
+            if (in.get() != 0) {
+                telemetry.value(in.getDouble());
+            }
+            return telemetry.timestamp(Instant.ofEpochMilli(getVarLong(in))).build();
+        }
+        
+        private AlarmEvent alarm(ByteBuffer in) {
+            AlarmEvent.AlarmEventBuilder alarm = AlarmEvent.builder()
+                    .id(string(in))
+                    .alarmName(string(in))
+                    .serviceName(string(in))
+                    .metricType(string(in))
+                    .severity(string(in))
+                    .state(string(in))
+                    .region(string(in))
+                    .description(string(in));
+            byte present = in.get();
+            if ((present & 1) != 0) {
+                alarm.threshold(in.getDouble());
+            }
+            if ((present & 2) != 0) {
+                alarm.value(in.getDouble());
+            }
+            return alarm.timestamp(Instant.ofEpochMilli(getVarLong(in))).build();
+        }
+        
+        private String string(ByteBuffer in) {
+            long tag = getVarLong(in);
+            if (tag == 0) {
+                return null;
+            }
+            int payload = (int) (tag >>> 2);
+            if ((tag & 3) == TAG_REFERENCE) {
+                return symbols.get(payload);
+            }
+            byte[] bytes = new byte[payload];
+            in.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            if ((tag & 3) == TAG_INTERNED) {
+                symbols.add(value);
+            }
+            return value;
+        }
+    }
+    
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+    
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
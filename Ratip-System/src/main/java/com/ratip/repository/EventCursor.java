@@ -0,0 +1,52 @@
+package com.ratip.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position in the {@code (timestamp, id)} order that paged store queries return events in. Clients
+ * only see the {@link #encode() encoded} form, which they hand back as a page cursor or a polling
+ * watermark; everything strictly after the position is returned next.
+ */
+public record EventCursor(long timestampMillis, String id) implements Comparable<EventCursor> {
+    
+    private static final Comparator<EventCursor> ORDER = Comparator
+            .comparingLong(EventCursor::timestampMillis)
+            .thenComparing(EventCursor::id, Comparator.nullsFirst(Comparator.naturalOrder()));
+    
+    public static EventCursor of(Instant timestamp, String id) {
+        return new EventCursor(timestamp.toEpochMilli(), id);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if {@code token} was not produced by {@link #encode()}
+     */
+    public static EventCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new EventCursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+    
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestampMillis + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public boolean isBefore(Instant timestamp, String id) {
+        return compareTo(new EventCursor(timestamp.toEpochMilli(), id)) < 0;
+    }
+    
+    @Override
+    public int compareTo(EventCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,270 @@
+package com.ratip.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of ingested telemetry and alarms and of the correlations found between
+ * them, so the in-memory stores survive a restart. Events are written in the {@link EventCodec}
+ * binary form to fixed-size memory-mapped {@link EventLogSegment}s under
+ * {@code ratip.log.directory}; a full segment is sealed and a new one started.
+ * <p>
+ * {@link #append} takes a whole pipeline batch, so with {@code fsync: always} a batch costs one
+ * {@code msync} however many events it holds (group commit). {@code interval} flushes every
+ * {@code ratip.log.fsync-interval} and {@code never} leaves write-back to the OS; both can lose
+ * the most recent events on a machine crash but not on a process crash.
+ * <p>
+ * {@link #replay} maps the segments read-only and decodes them in parallel, so recovery reads
+ * the files once without any JSON parsing. Sealed segments whose newest event is older than
+ * {@code ratip.store.retention} are deleted.
+ */
+@Slf4j
+@Component
+public class EventLog {
+    
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+    
+    private static final int REPLAY_CHUNK = 4096;
+    
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration retention;
+    
+    private final TreeMap<Long, Long> sealedMaxTimestamps = new TreeMap<>();
+    private final Counter appendedCounter;
+    private final Timer fsyncTimer;
+    private EventLogSegment active;
+    private long sealedBytes;
+    private boolean dirty;
+    
+    public EventLog(MeterRegistry meterRegistry,
+                    @Value("${ratip.log.enabled:false}") boolean enabled,
+                    @Value("${ratip.log.directory:data/event-log}") String directory,
+                    @Value("${ratip.log.segment-size:64MB}") DataSize segmentSize,
+                    @Value("${ratip.log.fsync:interval}") FsyncPolicy fsyncPolicy,
+                    @Value("${ratip.store.retention:P7D}") Duration retention) {
+        if (segmentSize.toBytes() < 1024 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Event log segment size must be between 1KB and 2GB: " + segmentSize);
+        }
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = (int) segmentSize.toBytes();
+        this.fsyncPolicy = fsyncPolicy;
+        this.retention = retention;
+        this.appendedCounter = Counter.builder("ratip.log.appended")
+                .description("Events written to the event log")
+                .register(meterRegistry);
+        this.fsyncTimer = Timer.builder("ratip.log.fsync")
+                .description("Time spent forcing event log pages to disk")
+                .register(meterRegistry);
+        Gauge.builder("ratip.log.size", this, EventLog::bytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Feeds every retained event in the log to {@code sink}, in chunks, then opens a fresh segment
+     * for appends. Segments are decoded concurrently, so {@code sink} must be thread-safe and sees
+     * events in write order within a chunk only. A torn record at the end of the newest segment,
+     * left by a crash mid-write, is cut off. Any other segment was sealed intact, so a bad record in
+     * one is corruption: it is logged as an error, the rest of that segment is skipped and the
+     * file is left as it is for inspection.
+     *
+     * @return the number of events replayed
+     */
+    public synchronized long replay(Consumer<List<Object>> sink) throws IOException {
+        if (active != null) {
+            throw new IllegalStateException("Event log is already open");
+        }
+        Files.createDirectories(directory);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> path.getFileName().toString().endsWith(EventLogSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        int threads = Math.max(1, Math.min(segments.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService decoders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ratip-log-replay-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long replayed = 0;
+        try {
+            List<Future<EventLogSegment.Recovered>> results = new ArrayList<>(segments.size());
+            for (Path segment : segments) {
+                results.add(decoders.submit(() -> replaySegment(segment, cutoff, sink)));
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                EventLogSegment.Recovered recovered = await(results.get(i));
+                Path segment = segments.get(i);
+                long size = Files.size(segment);
+                if (size > recovered.validBytes() && i == segments.size() - 1) {
+                    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                        channel.truncate(recovered.validBytes());
+                    }
+                    size = recovered.validBytes();
+                } else if (size > recovered.validBytes()) {
+                    log.error("Event log segment {} is corrupt at byte {}; skipped the {} bytes after it",
+                            segment.getFileName(), recovered.validBytes(), size - recovered.validBytes());
+                }
+                sealedMaxTimestamps.put(EventLogSegment.idOf(segment), recovered.maxTimestamp());
+                sealedBytes += size;
+                replayed += recovered.events();
+            }
+        } finally {
+            decoders.shutdownNow();
+        }
+        long nextId = sealedMaxTimestamps.isEmpty() ? 1 : sealedMaxTimestamps.lastKey() + 1;
+        active = EventLogSegment.create(directory, nextId, segmentBytes);
+        log.info("Event log at {} opened with {} sealed segments ({} MiB), fsync {}",
+                directory.toAbsolutePath(), sealedMaxTimestamps.size(), sealedBytes >> 20,
+                fsyncPolicy.name().toLowerCase(Locale.ROOT));
+        return replayed;
+    }
+    
+    /**
+     * Journals a batch of {@code TelemetryEvent}s, {@code AlarmEvent}s and {@code CorrelatedEvent}s,
+     * rolling to a new segment when the current one is full.
+     */
+    public synchronized void append(List<?> events) throws IOException {
+        if (active == null) {
+            throw new IllegalStateException("Event log has not been opened; call replay first");
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Object event : events) {
+            if (!active.append(event)) {
+                roll();
+                if (!active.append(event)) {
+                    throw new IOException("Event " + event + " does not fit in an empty " + segmentBytes + " byte segment");
+                }
+            }
+        }
+        appendedCounter.increment(events.size());
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            fsyncTimer.record(active::force);
+        } else {
+            dirty = true;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.log.fsync-interval:PT1S}")
+    public synchronized void flush() {
+        if (active != null && dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+            fsyncTimer.record(active::force);
+            dirty = false;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.store.eviction-interval:PT1M}")
+    public synchronized void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        Iterator<Map.Entry<Long, Long>> sealed = sealedMaxTimestamps.entrySet().iterator();
+        while (sealed.hasNext()) {
+            Map.Entry<Long, Long> segment = sealed.next();
+            if (segment.getValue() >= cutoff) {
+                continue;
+            }
+            Path path = EventLogSegment.pathFor(directory, segment.getKey());
+            try {
+                long size = Files.size(path);
+                Files.delete(path);
+                sealedBytes -= size;
+                sealed.remove();
+                log.debug("Deleted expired event log segment {}", path.getFileName());
+            } catch (IOException e) {
+                log.warn("Could not delete expired event log segment {}", path, e);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.seal();
+            active = null;
+        }
+    }
+    
+    private synchronized double bytes() {
+        return sealedBytes + (active == null ? 0 : active.size());
+    }
+    
+    private void roll() throws IOException {
+        active.seal();
+        sealedMaxTimestamps.put(active.id(), active.maxTimestamp());
+        sealedBytes += active.size();
+        active = EventLogSegment.create(directory, active.id() + 1, segmentBytes);
+    }
+    
+    private static EventLogSegment.Recovered replaySegment(Path segment, long cutoff, Consumer<List<Object>> sink) throws IOException {
+        List<Object> chunk = new ArrayList<>(REPLAY_CHUNK);
+        EventLogSegment.Recovered recovered = EventLogSegment.read(segment, event -> {
+            if (EventLogSegment.timestampOf(event) < cutoff) {
+                return;
+            }
+            chunk.add(event);
+            if (chunk.size() == REPLAY_CHUNK) {
+                sink.accept(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            sink.accept(chunk);
+        }
+        return recovered;
+    }
+    
+    private static <T> T await(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying the event log", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Event log replay failed", e.getCause());
+        }
+    }
+}
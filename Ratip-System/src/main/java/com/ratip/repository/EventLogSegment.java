@@ -0,0 +1,178 @@
+package com.ratip.repository;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the {@link EventLog}. The file is mapped at its full size up front and
+ * filled with records {@code [int length][int crc32c][payload]}. The length is written last, so a
+ * zero length marks the end of the data and a record torn by a crash fails its checksum; reading
+ * stops at whichever comes first. Sealing a segment truncates the file to the bytes written.
+ * <p>
+ * Writable segments are guarded by the owning log.
+ */
+final class EventLogSegment {
+    
+    static final String SUFFIX = ".seg";
+    
+    private static final int HEADER_BYTES = 8;
+    
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final EventCodec.Writer codec = new EventCodec.Writer();
+    private final CRC32C crc = new CRC32C();
+    private long maxTimestamp = Long.MIN_VALUE;
+    
+    private EventLogSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+    
+    static Path pathFor(Path directory, long id) {
+        return directory.resolve(String.format("%020d%s", id, SUFFIX));
+    }
+    
+    static long idOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+    
+    static EventLogSegment create(Path directory, long id, int capacity) throws IOException {
+        Path path = pathFor(directory, id);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new EventLogSegment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Decodes every intact record of a segment file, in write order.
+     */
+    static Recovered read(Path path, Consumer<Object> sink) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        EventCodec.Reader codec = new EventCodec.Reader();
+        CRC32C crc = new CRC32C();
+        long maxTimestamp = Long.MIN_VALUE;
+        long events = 0;
+        while (data.remaining() >= HEADER_BYTES) {
+            int start = data.position();
+            int length = data.getInt(start);
+            if (length <= 0 || length > data.remaining() - HEADER_BYTES) {
+                break;
+            }
+            ByteBuffer payload = data.slice(start + HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != data.getInt(start + 4)) {
+                break;
+            }
+            Object event;
+            try {
+                event = codec.decode(payload);
+            } catch (BufferUnderflowException | IllegalStateException e) {
+                break;
+            }
+            maxTimestamp = Math.max(maxTimestamp, timestampOf(event));
+            sink.accept(event);
+            events++;
+            data.position(start + HEADER_BYTES + length);
+        }
+        return new Recovered(events, data.position(), maxTimestamp);
+    }
+    
+    /**
+     * @return false if the event does not fit in the space left
+     */
+    boolean append(Object event) {
+        int start = buffer.position();
+        if (buffer.remaining() <= HEADER_BYTES) {
+            return false;
+        }
+        long timestamp;
+        try {
+            buffer.position(start + HEADER_BYTES);
+            timestamp = codec.encode(event, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        int length = buffer.position() - start - HEADER_BYTES;
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, length));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        return true;
+    }
+    
+    int size() {
+        return buffer.position();
+    }
+    
+    void force() {
+        buffer.force();
+    }
+    
+    /**
+     * Flushes, truncates the file to the data written and closes it.
+     */
+    void seal() throws IOException {
+        buffer.force();
+        channel.truncate(buffer.position());
+        channel.close();
+    }
+    
+    long id() {
+        return id;
+    }
+    
+    Path path() {
+        return path;
+    }
+    
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+    
+    static long timestampOf(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            return telemetry.getTimestamp().toEpochMilli();
+        }
+        if (event instanceof CorrelatedEvent correlation) {
+            return correlation.getCorrelationTimestamp().toEpochMilli();
+        }
+        return ((AlarmEvent) event).getTimestamp().toEpochMilli();
+    }
+    
+    /**
+     * Outcome of reading a segment file: {@code validBytes} is where the intact records end and
+     * {@code maxTimestamp} is {@link Long#MIN_VALUE} for an empty segment.
+     */
+    record Recovered(long events, int validBytes, long maxTimestamp) {
+    }
+}
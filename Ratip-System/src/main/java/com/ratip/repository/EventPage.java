@@ -0,0 +1,28 @@
+package com.ratip.repository;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a store query, in {@code (timestamp, id)} order.
+ *
+ * @param items the events on this page
+ * @param next  position to resume from for the following page, or {@code null} if this page
+ *              reached the end of the query
+ * @param last  position of the last item on this page, or {@code null} if the page is empty
+ */
+public record EventPage<T>(List<T> items, EventCursor next, EventCursor last) {
+    
+    /**
+     * Cuts the first page off {@code candidates}, which must already be in position order and may
+     * hold more than {@code limit} items.
+     */
+    static <T> EventPage<T> of(List<T> candidates, int limit, Function<T, EventCursor> position) {
+        if (candidates.isEmpty()) {
+            return new EventPage<>(candidates, null, null);
+        }
+        List<T> items = candidates.size() > limit ? List.copyOf(candidates.subList(0, limit)) : candidates;
+        EventCursor last = position.apply(items.get(items.size() - 1));
+        return new EventPage<>(items, candidates.size() > limit ? last : null, last);
+    }
+}
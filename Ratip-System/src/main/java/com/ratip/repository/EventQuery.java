@@ -0,0 +1,36 @@
+package com.ratip.repository;
+
+import java.time.Instant;
+
+/**
+ * Filters for a paged store query. {@code null} filters match everything; {@code from} is
+ * inclusive, {@code to} exclusive, and only events strictly after {@code after} are returned.
+ */
+public record EventQuery(String serviceName,
+                         String metricType,
+                         String severity,
+                         Instant from,
+                         Instant to,
+                         EventCursor after,
+                         int limit) {
+    
+    public EventQuery {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+    }
+    
+    long lowerMillis() {
+        long lower = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        return after == null ? lower : Math.max(lower, after.timestampMillis());
+    }
+    
+    long upperMillis() {
+        return to == null ? Long.MAX_VALUE : to.toEpochMilli();
+    }
+    
+    boolean admits(Instant timestamp, String id) {
+        long millis = timestamp.toEpochMilli();
+        return millis >= lowerMillis() && millis < upperMillis() && (after == null || after.isBefore(timestamp, id));
+    }
+}
@@ -1,53 +1,234 @@
 package com.ratip.repository;
 
+import com.ratip.config.RatipMetrics;
 import com.ratip.model.AlarmEvent;
 import com.ratip.model.CorrelatedEvent;
 import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 public class MockDataRepository {
     
-    private final ConcurrentHashMap<String, TelemetryEvent> telemetryStore = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, AlarmEvent> alarmStore = new ConcurrentHashMap<>();
+    private static final int MAX_CORRELATIONS = 1000;
     
-    public void saveTelemetry(TelemetryEvent event) {
-        telemetryStore.put(event.getId(), event);
-        log.debug("Saved telemetry: {}", event.getId());
+    private final TelemetryColumnStore telemetryStore;
+    private final TimePartitionedEventStore<AlarmEvent> alarmStore;
+    private final TimePartitionedEventStore<CorrelatedEvent> correlationStore;
+    private final Duration retention;
+    private final Duration telemetryRetention;
+    
+    private final RatipMetrics metrics;
+    private final Timer telemetryWriteTimer;
+    private final Timer telemetryBatchWriteTimer;
+    private final Timer alarmWriteTimer;
+    private final Timer alarmBatchWriteTimer;
+    private final Timer correlationWriteTimer;
+    private final Timer telemetryRangeTimer;
+    private final Timer alarmRangeTimer;
+    private final Timer correlationRangeTimer;
+    private final Timer evictionTimer;
+    
+    public MockDataRepository(StringDictionary dictionary,
+                              RatipMetrics metrics,
+                              @Value("${ratip.store.segment-width:PT1H}") Duration segmentWidth,
+                              @Value("${ratip.store.retention:P7D}") Duration retention,
+                              @Value("${ratip.store.telemetry-retention:${ratip.store.retention:P7D}}") Duration telemetryRetention) {
+        this.telemetryStore = new TelemetryColumnStore(dictionary, segmentWidth);
+        this.alarmStore = new TimePartitionedEventStore<>(AlarmEvent::getId,
+                event -> alarmKey(event.getServiceName(), event.getSeverity()),
+                AlarmEvent::getTimestamp, segmentWidth);
+        this.correlationStore = new TimePartitionedEventStore<>(CorrelatedEvent::getId,
+                correlation -> telemetryKey(correlation.getAlarm().getServiceName(), correlation.getAlarm().getMetricType()),
+                CorrelatedEvent::getCorrelationTimestamp, segmentWidth);
+        this.retention = retention;
+        this.telemetryRetention = telemetryRetention;
+        
+        this.metrics = metrics;
+        this.telemetryWriteTimer = metrics.timer("ratip.store.write", "Time to write to the in-memory store",
+                "type", "telemetry", "mode", "single");
+        this.telemetryBatchWriteTimer = metrics.timer("ratip.store.write", "Time to write to the in-memory store",
+                "type", "telemetry", "mode", "batch");
+        this.alarmWriteTimer = metrics.timer("ratip.store.write", "Time to write to the in-memory store",
+                "type", "alarm", "mode", "single");
+        this.alarmBatchWriteTimer = metrics.timer("ratip.store.write", "Time to write to the in-memory store",
+                "type", "alarm", "mode", "batch");
+        this.correlationWriteTimer = metrics.timer("ratip.store.write", "Time to write to the in-memory store",
+                "type", "correlation", "mode", "single");
+        this.telemetryRangeTimer = metrics.timer("ratip.store.query", "Time to read a series range from the store",
+                "type", "telemetry");
+        this.alarmRangeTimer = metrics.timer("ratip.store.query", "Time to read a series range from the store",
+                "type", "alarm");
+        this.correlationRangeTimer = metrics.timer("ratip.store.query", "Time to read a series range from the store",
+                "type", "correlation");
+        this.evictionTimer = metrics.timer("ratip.eviction", "Time spent dropping expired data", "component", "store");
+    }
+    
+    public static String telemetryKey(String serviceName, String metricType) {
+        return serviceName + "#" + metricType;
+    }
+    
+    public static String alarmKey(String serviceName, String severity) {
+        return serviceName + "#" + severity;
+    }
+    
+    /**
+     * @return false if a telemetry event with the same id was already stored and has been replaced
+     */
+    public boolean saveTelemetry(TelemetryEvent event) {
+        long start = metrics.start();
+        boolean added = telemetryStore.put(event);
+        metrics.stop(telemetryWriteTimer, start);
+        return added;
     }
     
     public void saveAlarm(AlarmEvent event) {
-        alarmStore.put(event.getId(), event);
-        log.debug("Saved alarm: {}", event.getId());
+        long start = metrics.start();
+        alarmStore.put(event);
+        metrics.stop(alarmWriteTimer, start);
+    }
+    
+    /**
+     * @return the events whose ids were not stored before; the others replaced their earlier copy
+     */
+    public List<TelemetryEvent> saveTelemetryBatch(List<TelemetryEvent> events) {
+        long start = metrics.start();
+        List<TelemetryEvent> added = telemetryStore.putAll(events);
+        metrics.stop(telemetryBatchWriteTimer, start);
+        log.debug("Saved {} telemetry events", events.size());
+        return added;
+    }
+    
+    public void saveAlarmBatch(List<AlarmEvent> events) {
+        long start = metrics.start();
+        for (AlarmEvent event : events) {
+            alarmStore.put(event);
+        }
+        metrics.stop(alarmBatchWriteTimer, start);
+        log.debug("Saved {} alarms", events.size());
+    }
+    
+    public void saveCorrelation(CorrelatedEvent correlation) {
+        long start = metrics.start();
+        correlationStore.put(correlation);
+        metrics.stop(correlationWriteTimer, start);
+    }
+    
+    public EventPage<TelemetryEvent> queryTelemetry(EventQuery query) {
+        return telemetryStore.query(query);
+    }
+    
+    public EventPage<AlarmEvent> queryAlarms(EventQuery query) {
+        return alarmStore.query(servicePrefix(query), alarm -> matches(query, alarm.getMetricType(), alarm.getSeverity()), query);
+    }
+    
+    public EventPage<CorrelatedEvent> queryCorrelations(EventQuery query) {
+        return correlationStore.query(servicePrefix(query),
+                correlation -> matches(query, correlation.getAlarm().getMetricType(), correlation.getAlarm().getSeverity()),
+                query);
     }
     
     public List<TelemetryEvent> getTelemetryByServiceAndTime(String serviceName, String metricType, Instant start, Instant end) {
-        return telemetryStore.values().stream()
-                .filter(event -> event.getServiceName().equals(serviceName))
-                .filter(event -> event.getMetricType().equals(metricType))
-                .filter(event -> event.getTimestamp().isAfter(start) && event.getTimestamp().isBefore(end))
-                .collect(Collectors.toList());
+        long started = metrics.start();
+        List<TelemetryEvent> events = telemetryStore.range(serviceName, metricType, start, end);
+        metrics.stop(telemetryRangeTimer, started);
+        return events;
     }
     
     public List<AlarmEvent> getAlarmsByServiceAndTime(String serviceName, String severity, Instant start, Instant end) {
-        return alarmStore.values().stream()
-                .filter(event -> event.getServiceName().equals(serviceName))
-                .filter(event -> severity == null || event.getSeverity().equals(severity))
-                .filter(event -> event.getTimestamp().isAfter(start) && event.getTimestamp().isBefore(end))
-                .collect(Collectors.toList());
+        long started = metrics.start();
+        List<AlarmEvent> alarms = severity == null
+                ? alarmStore.rangeByPrefix(serviceName + "#", start, end)
+                : alarmStore.range(alarmKey(serviceName, severity), start, end);
+        metrics.stop(alarmRangeTimer, started);
+        return alarms;
+    }
+    
+    public List<CorrelatedEvent> getCorrelationsByServiceAndTime(String serviceName, Instant start, Instant end) {
+        long started = metrics.start();
+        List<CorrelatedEvent> correlations = correlationStore.rangeByPrefix(serviceName + "#", start, end);
+        metrics.stop(correlationRangeTimer, started);
+        return correlations;
     }
     
+    /**
+     * Every service with retained telemetry, alarms or correlations, mapped to the metric types
+     * seen for it. Services known only from alarms map to an empty set.
+     */
+    public Map<String, Set<String>> metricsByService() {
+        Map<String, Set<String>> result = telemetryStore.metricsByService();
+        for (String key : correlationStore.keys()) {
+            result.computeIfAbsent(keyHead(key), service -> new TreeSet<>()).add(keyTail(key));
+        }
+        for (String key : alarmStore.keys()) {
+            result.computeIfAbsent(keyHead(key), service -> new TreeSet<>());
+        }
+        return result;
+    }
+    
+    public Set<String> severities() {
+        Set<String> severities = new TreeSet<>();
+        for (String key : alarmStore.keys()) {
+            severities.add(keyTail(key));
+        }
+        return severities;
+    }
+    
+    /**
+     * How long raw telemetry is kept; older ranges are only available as rollups.
+     */
+    public Duration telemetryRetention() {
+        return telemetryRetention;
+    }
+    
+    public int telemetryCount() {
+        return telemetryStore.size();
+    }
+    
+    public int alarmCount() {
+        return alarmStore.size();
+    }
+    
+    public int correlationCount() {
+        return correlationStore.size();
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.store.eviction-interval:PT1M}")
+    public void evictExpired() {
+        long start = metrics.start();
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(retention);
+        int dropped = telemetryStore.evictBefore(now.minus(telemetryRetention)) + alarmStore.evictBefore(cutoff)
+                + correlationStore.evictBefore(cutoff);
+        metrics.stop(evictionTimer, start);
+        if (dropped > 0) {
+            log.info("Dropped {} expired store segments", dropped);
+        }
+    }
+    
+    /**
+     * The newest {@value #MAX_CORRELATIONS} stored correlations found in {@code [start, end)},
+     * newest first; a canned sample set when none have been found yet.
+     */
     public List<CorrelatedEvent> getCorrelations(Instant start, Instant end) {
+        List<CorrelatedEvent> stored = correlationStore.latest("", start, end, MAX_CORRELATIONS);
+        return stored.isEmpty() ? sampleCorrelations(end) : stored;
+    }
+    
+    private List<CorrelatedEvent> sampleCorrelations(Instant end) {
         List<CorrelatedEvent> correlations = new ArrayList<>();
         
         String[] correlationPatterns = {
@@ -104,10 +285,27 @@ public class MockDataRepository {
     }
     
     public List<TelemetryEvent> getAllTelemetry() {
-        return new ArrayList<>(telemetryStore.values());
+        return telemetryStore.values();
     }
     
     public List<AlarmEvent> getAllAlarms() {
-        return new ArrayList<>(alarmStore.values());
+        return alarmStore.values();
+    }
+    
+    private static String servicePrefix(EventQuery query) {
+        return query.serviceName() == null ? "" : query.serviceName() + "#";
+    }
+    
+    private static String keyHead(String key) {
+        return key.substring(0, key.lastIndexOf('#'));
+    }
+    
+    private static String keyTail(String key) {
+        return key.substring(key.lastIndexOf('#') + 1);
+    }
+    
+    private static boolean matches(EventQuery query, String metricType, String severity) {
+        return (query.metricType() == null || query.metricType().equals(metricType))
+                && (query.severity() == null || query.severity().equals(severity));
     }
 }
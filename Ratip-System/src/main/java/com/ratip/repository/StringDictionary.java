@@ -0,0 +1,68 @@
+package com.ratip.repository;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary encoding for low-cardinality telemetry strings (service, metric,
+ * region, environment). Columnar stores keep the int code instead of a String reference.
+ * Codes are never reused; {@code null} encodes to {@link #NULL_CODE}.
+ */
+@Component
+public class StringDictionary {
+    
+    public static final int NULL_CODE = -1;
+    public static final int UNKNOWN_CODE = -2;
+    
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+    
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : register(value);
+    }
+    
+    /**
+     * Like {@link #encode} but never registers a new value, so lookups on behalf of queries do not
+     * grow the dictionary.
+     *
+     * @return the code, or {@link #UNKNOWN_CODE} if the value has never been encoded
+     */
+    public int find(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : UNKNOWN_CODE;
+    }
+    
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values[code];
+    }
+    
+    public int size() {
+        return codes.size();
+    }
+    
+    private synchronized int register(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        codes.put(value, size);
+        return size++;
+    }
+}
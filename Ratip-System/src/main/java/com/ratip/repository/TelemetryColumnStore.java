@@ -0,0 +1,232 @@
+package com.ratip.repository;
+
+import com.ratip.model.TelemetryEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Telemetry counterpart of {@link TimePartitionedEventStore} that keeps each series in a
+ * {@link TelemetryColumns} batch instead of a map of beans. Segments are fixed-width time
+ * partitions; within a segment each {@code (serviceName, metricType)} series is a time-sorted
+ * column set guarded by its own monitor, which also dedupes on event id. A redelivered event lands
+ * in the same series and segment, so that is where it is caught. Retention drops whole segments.
+ */
+public class TelemetryColumnStore {
+    
+    private final StringDictionary dictionary;
+    private final long segmentMillis;
+    
+    private final ConcurrentSkipListMap<Long, Map<Long, TelemetryColumns>> segments = new ConcurrentSkipListMap<>();
+    /** Number of retained segments holding each series, so listing series never walks the segments. */
+    private final Map<Long, Integer> seriesSegments = new ConcurrentHashMap<>();
+    
+    public TelemetryColumnStore(StringDictionary dictionary, Duration segmentWidth) {
+        if (segmentWidth.toMillis() <= 0) {
+            throw new IllegalArgumentException("Segment width must be positive: " + segmentWidth);
+        }
+        this.dictionary = dictionary;
+        this.segmentMillis = segmentWidth.toMillis();
+    }
+    
+    /**
+     * @return false if the event's id was already stored and the event replaced it
+     */
+    public boolean put(TelemetryEvent event) {
+        TelemetryColumns series = seriesFor(event);
+        synchronized (series) {
+            return series.add(event);
+        }
+    }
+    
+    /**
+     * Bulk insert that takes each series monitor once per run of consecutive events for that
+     * series, which is the common shape of batches produced by a single emitter.
+     *
+     * @return the events whose ids were not stored yet, in batch order
+     */
+    public List<TelemetryEvent> putAll(List<TelemetryEvent> events) {
+        List<TelemetryEvent> added = new ArrayList<>(events.size());
+        int i = 0;
+        while (i < events.size()) {
+            TelemetryColumns series = seriesFor(events.get(i));
+            synchronized (series) {
+                do {
+                    TelemetryEvent event = events.get(i++);
+                    if (series.add(event)) {
+                        added.add(event);
+                    }
+                } while (i < events.size() && seriesFor(events.get(i)) == series);
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Views of the series' points with {@code start < timestamp < end}, in timestamp order.
+     */
+    public List<TelemetryEvent> range(String serviceName, String metricType, Instant start, Instant end) {
+        List<TelemetryEvent> result = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return result;
+        }
+        int serviceCode = dictionary.find(serviceName);
+        int metricCode = dictionary.find(metricType);
+        if (serviceCode == StringDictionary.UNKNOWN_CODE || metricCode == StringDictionary.UNKNOWN_CODE) {
+            return result;
+        }
+        long key = seriesKey(serviceCode, metricCode);
+        for (Map<Long, TelemetryColumns> segment : segments
+                .subMap(segmentStart(start.toEpochMilli()), true, segmentStart(end.toEpochMilli()), true).values()) {
+            TelemetryColumns series = segment.get(key);
+            if (series != null) {
+                synchronized (series) {
+                    series.collectRange(start, end, result);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * First page of points matching {@code query} in {@code (timestamp, id)} order. Segments are
+     * visited oldest first and the walk stops as soon as a segment overfills the page, so the cost
+     * follows the page size rather than the retained history.
+     */
+    public EventPage<TelemetryEvent> query(EventQuery query) {
+        List<TelemetryEvent> candidates = new ArrayList<>();
+        int serviceCode = query.serviceName() == null ? StringDictionary.UNKNOWN_CODE : dictionary.find(query.serviceName());
+        int metricCode = query.metricType() == null ? StringDictionary.UNKNOWN_CODE : dictionary.find(query.metricType());
+        if ((query.serviceName() != null && serviceCode == StringDictionary.UNKNOWN_CODE)
+                || (query.metricType() != null && metricCode == StringDictionary.UNKNOWN_CODE)
+                || query.lowerMillis() >= query.upperMillis()) {
+            return EventPage.of(candidates, query.limit(), TelemetryColumnStore::position);
+        }
+        
+        for (Map<Long, TelemetryColumns> segment : segmentsCovering(query).values()) {
+            for (Map.Entry<Long, TelemetryColumns> entry : segment.entrySet()) {
+                long key = entry.getKey();
+                if ((query.serviceName() != null && (int) (key >>> 32) != serviceCode)
+                        || (query.metricType() != null && (int) key != metricCode)) {
+                    continue;
+                }
+                TelemetryColumns series = entry.getValue();
+                synchronized (series) {
+                    series.collect(query, candidates);
+                }
+            }
+            if (candidates.size() > query.limit()) {
+                break;
+            }
+        }
+        candidates.sort(Comparator.comparing(TelemetryEvent::getTimestamp).thenComparing(TelemetryEvent::getId));
+        return EventPage.of(candidates, query.limit(), TelemetryColumnStore::position);
+    }
+    
+    public List<TelemetryEvent> values() {
+        List<TelemetryEvent> result = new ArrayList<>();
+        for (Map<Long, TelemetryColumns> segment : segments.values()) {
+            for (TelemetryColumns series : segment.values()) {
+                synchronized (series) {
+                    series.collectAll(result);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Metric types per service across every retained series.
+     */
+    public Map<String, Set<String>> metricsByService() {
+        Map<String, Set<String>> result = new TreeMap<>();
+        for (long key : seriesSegments.keySet()) {
+            result.computeIfAbsent(dictionary.decode((int) (key >>> 32)), service -> new TreeSet<>())
+                    .add(dictionary.decode((int) key));
+        }
+        return result;
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Map<Long, TelemetryColumns> segment : segments.values()) {
+            for (TelemetryColumns series : segment.values()) {
+                synchronized (series) {
+                    size += series.size();
+                }
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Drops every segment that ends at or before {@code cutoff}.
+     *
+     * @return number of segments dropped
+     */
+    public int evictBefore(Instant cutoff) {
+        NavigableMap<Long, Map<Long, TelemetryColumns>> expired = segments.headMap(cutoff.toEpochMilli() - segmentMillis, true);
+        int dropped = 0;
+        Map.Entry<Long, Map<Long, TelemetryColumns>> entry;
+        while ((entry = expired.pollFirstEntry()) != null) {
+            for (long key : entry.getValue().keySet()) {
+                seriesSegments.computeIfPresent(key, (series, count) -> count == 1 ? null : count - 1);
+            }
+            dropped++;
+        }
+        return dropped;
+    }
+    
+    private TelemetryColumns seriesFor(TelemetryEvent event) {
+        Objects.requireNonNull(event.getId(), "event id");
+        Instant timestamp = Objects.requireNonNull(event.getTimestamp(), "event timestamp");
+        long key = seriesKey(dictionary.encode(event.getServiceName()), dictionary.encode(event.getMetricType()));
+        Map<Long, TelemetryColumns> segment =
+                segments.computeIfAbsent(segmentStart(timestamp.toEpochMilli()), start -> new ConcurrentHashMap<>());
+        TelemetryColumns columns = segment.get(key);
+        if (columns != null) {
+            return columns;
+        }
+        TelemetryColumns created = new TelemetryColumns(dictionary, (int) (key >>> 32), (int) key);
+        columns = segment.putIfAbsent(key, created);
+        if (columns != null) {
+            return columns;
+        }
+        seriesSegments.merge(key, 1, Integer::sum);
+        return created;
+    }
+    
+    private static EventCursor position(TelemetryEvent event) {
+        return EventCursor.of(event.getTimestamp(), event.getId());
+    }
+    
+    private static long seriesKey(int serviceCode, int metricCode) {
+        return ((long) serviceCode << 32) | (metricCode & 0xFFFFFFFFL);
+    }
+    
+    private NavigableMap<Long, Map<Long, TelemetryColumns>> segmentsCovering(EventQuery query) {
+        NavigableMap<Long, Map<Long, TelemetryColumns>> covering = segments;
+        if (query.lowerMillis() != Long.MIN_VALUE) {
+            covering = covering.tailMap(segmentStart(query.lowerMillis()), true);
+        }
+        if (query.upperMillis() != Long.MAX_VALUE) {
+            covering = covering.headMap(segmentStart(query.upperMillis()), true);
+        }
+        return covering;
+    }
+    
+    private long segmentStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, segmentMillis) * segmentMillis;
+    }
+}
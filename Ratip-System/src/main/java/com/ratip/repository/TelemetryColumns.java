@@ -0,0 +1,395 @@
+package com.ratip.repository;
+
+import com.ratip.model.TelemetryEvent;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Columnar, time-sorted batch of telemetry points for one {@code (serviceName, metricType)} series:
+ * epoch-millis and values as primitive arrays, region and environment as {@link StringDictionary}
+ * codes, and the series' own service and metric codes held once for the whole batch. Ids in
+ * canonical UUID form are packed into two longs; any other id is kept as its string. A point costs
+ * 44 bytes in the columns plus 8 to 16 in the id index, so about 56 once the arrays are full and up
+ * to twice that just after they grow, instead of a full {@link TelemetryEvent} bean; callers get
+ * views on read.
+ * <p>
+ * Ids are unique within the batch: re-adding a known id replaces its point, which keeps redelivered
+ * events from being stored twice. In-order points are appended to the sorted rows; late points go
+ * to an unsorted tail of at most 128 rows, which is sorted and merged in place once it fills up or
+ * before a ranged read. A merge only shifts the sorted rows newer than the earliest late point and
+ * re-points their index slots, so its cost follows how late the points are rather than the size
+ * of the batch. Replaced points stay behind as gaps until they make up half the rows, when one pass
+ * compacts them and rebuilds the index.
+ * <p>
+ * Timestamps are kept at millisecond precision, the precision of the JSON wire format, and a
+ * {@code null} value is stored as {@code NaN}. Not thread-safe; callers guard access, reads
+ * included, since a read may merge the tail.
+ */
+public class TelemetryColumns {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MERGE_THRESHOLD = 128;
+    private static final String REMOVED = new String();
+    
+    private final StringDictionary dictionary;
+    private final int serviceCode;
+    private final int metricCode;
+    
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int[] regions = new int[INITIAL_CAPACITY];
+    private int[] environments = new int[INITIAL_CAPACITY];
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private String[] rawIds = new String[INITIAL_CAPACITY];
+    private int size;
+    private int sorted;
+    private int removed;
+    
+    /** Open-addressing id index holding {@code row + 1}; 0 marks a free slot. */
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+    
+    public TelemetryColumns(StringDictionary dictionary, int serviceCode, int metricCode) {
+        this.dictionary = dictionary;
+        this.serviceCode = serviceCode;
+        this.metricCode = metricCode;
+    }
+    
+    /**
+     * Adds a point, replacing the point with the same id if there is one.
+     *
+     * @return false if the id was already held, so the point replaced an earlier delivery
+     */
+    public boolean add(TelemetryEvent event) {
+        long timestamp = event.getTimestamp().toEpochMilli();
+        String id = event.getId();
+        UUID packed = packable(id);
+        if ((size + 1) * 2 > index.length) {
+            rebuildIndex(index.length * 2);
+        }
+        int slot = slotOf(id, packed);
+        int existing = index[slot] - 1;
+        if (existing >= 0) {
+            if (timestamps[existing] == timestamp) {
+                write(existing, timestamp, event, packed);
+                return false;
+            }
+            rawIds[existing] = REMOVED;
+            removed++;
+        }
+        
+        if (size == timestamps.length) {
+            grow();
+        }
+        int row = size++;
+        write(row, timestamp, event, packed);
+        index[slot] = row + 1;
+        if (sorted == row && (row == 0 || timestamps[row - 1] <= timestamp)) {
+            sorted++;
+        } else if (size - sorted >= MERGE_THRESHOLD) {
+            merge();
+        }
+        return existing < 0;
+    }
+    
+    public int size() {
+        return size - removed;
+    }
+    
+    /**
+     * Appends views of every point with {@code start < timestamp < end} to {@code out}.
+     */
+    public void collectRange(Instant start, Instant end, List<TelemetryEvent> out) {
+        merge();
+        int from = upperBound(start.toEpochMilli());
+        int to = lowerBound(end.getNano() % 1_000_000 == 0 ? end.toEpochMilli() : end.toEpochMilli() + 1);
+        for (int i = from; i < to; i++) {
+            if (rawIds[i] != REMOVED) {
+                out.add(view(i));
+            }
+        }
+    }
+    
+    /**
+     * Appends views of every point admitted by {@code query}'s time bounds and cursor to
+     * {@code out}. Service and metric filters are the caller's concern.
+     */
+    public void collect(EventQuery query, List<TelemetryEvent> out) {
+        merge();
+        EventCursor after = query.after();
+        int from = lowerBound(query.lowerMillis());
+        int to = lowerBound(query.upperMillis());
+        for (int i = from; i < to; i++) {
+            if (rawIds[i] == REMOVED) {
+                continue;
+            }
+            if (after == null || after.timestampMillis() < timestamps[i]) {
+                out.add(view(i));
+            } else if (after.timestampMillis() == timestamps[i]) {
+                TelemetryEvent candidate = view(i);
+                if (after.compareTo(new EventCursor(timestamps[i], candidate.getId())) < 0) {
+                    out.add(candidate);
+                }
+            }
+        }
+    }
+    
+    public void collectAll(List<TelemetryEvent> out) {
+        for (int i = 0; i < size; i++) {
+            if (rawIds[i] != REMOVED) {
+                out.add(view(i));
+            }
+        }
+    }
+    
+    private TelemetryEvent view(int row) {
+        double value = values[row];
+        return TelemetryEvent.builder()
+                .id(rawIds[row] != null ? rawIds[row] : new UUID(idHigh[row], idLow[row]).toString())
+                .serviceName(dictionary.decode(serviceCode))
+                .metricType(dictionary.decode(metricCode))
+                .value(Double.isNaN(value) ? null : value)
+                .timestamp(Instant.ofEpochMilli(timestamps[row]))
+                .region(dictionary.decode(regions[row]))
+                .environment(dictionary.decode(environments[row]))
+                .build();
+    }
+    
+    private void write(int row, long timestamp, TelemetryEvent event, UUID packed) {
+        timestamps[row] = timestamp;
+        values[row] = event.getValue() == null ? Double.NaN : event.getValue();
+        regions[row] = dictionary.encode(event.getRegion());
+        environments[row] = dictionary.encode(event.getEnvironment());
+        if (packed != null) {
+            idHigh[row] = packed.getMostSignificantBits();
+            idLow[row] = packed.getLeastSignificantBits();
+            rawIds[row] = null;
+        } else {
+            rawIds[row] = event.getId();
+        }
+    }
+    
+    /**
+     * The id as a UUID if it is in canonical form, so it survives the round trip through two longs.
+     */
+    private static UUID packable(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private int slotOf(String id, UUID packed) {
+        int mask = index.length - 1;
+        int slot = spread(packed != null
+                ? Long.hashCode(packed.getMostSignificantBits() ^ packed.getLeastSignificantBits())
+                : id.hashCode()) & mask;
+        while (index[slot] != 0) {
+            int row = index[slot] - 1;
+            boolean same = packed != null
+                    ? rawIds[row] == null && idHigh[row] == packed.getMostSignificantBits()
+                            && idLow[row] == packed.getLeastSignificantBits()
+                    : rawIds[row] != REMOVED && id.equals(rawIds[row]);
+            if (same) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void rebuildIndex(int capacity) {
+        index = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            if (rawIds[row] == REMOVED) {
+                continue;
+            }
+            int slot = spread(hashOf(row)) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = row + 1;
+        }
+    }
+    
+    /**
+     * Index slot holding {@code row}, which must be a live row.
+     */
+    private int slotOfRow(int row) {
+        int mask = index.length - 1;
+        int slot = spread(hashOf(row)) & mask;
+        while (index[slot] != row + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private int hashOf(int row) {
+        return rawIds[row] == null ? Long.hashCode(idHigh[row] ^ idLow[row]) : rawIds[row].hashCode();
+    }
+    
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Sorts the tail and merges it into the sorted rows from the back, dropping replaced tail
+     * points. Only the sorted rows newer than the earliest late point move.
+     */
+    private void merge() {
+        if (sorted == size) {
+            return;
+        }
+        Integer[] order = new Integer[size - sorted];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = sorted + i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer row) -> timestamps[row]));
+        
+        int live = 0;
+        for (Integer row : order) {
+            if (rawIds[row] != REMOVED) {
+                live++;
+            }
+        }
+        long[] tailTimestamps = new long[live];
+        double[] tailValues = new double[live];
+        int[] tailRegions = new int[live];
+        int[] tailEnvironments = new int[live];
+        long[] tailIdHigh = new long[live];
+        long[] tailIdLow = new long[live];
+        String[] tailRawIds = new String[live];
+        int[] tailSlots = new int[live];
+        int k = 0;
+        for (int row : order) {
+            if (rawIds[row] == REMOVED) {
+                removed--;
+                continue;
+            }
+            tailTimestamps[k] = timestamps[row];
+            tailValues[k] = values[row];
+            tailRegions[k] = regions[row];
+            tailEnvironments[k] = environments[row];
+            tailIdHigh[k] = idHigh[row];
+            tailIdLow[k] = idLow[row];
+            tailRawIds[k] = rawIds[row];
+            tailSlots[k] = slotOfRow(row);
+            k++;
+        }
+        
+        int newSize = sorted + live;
+        int first = live == 0 ? sorted : upperBound(tailTimestamps[0], sorted);
+        int i = sorted - 1;
+        int j = live - 1;
+        for (int to = newSize - 1; j >= 0; to--) {
+            if (i >= first && timestamps[i] > tailTimestamps[j]) {
+                if (rawIds[i] != REMOVED) {
+                    index[slotOfRow(i)] = to + 1;
+                }
+                copyRow(i--, to);
+            } else {
+                timestamps[to] = tailTimestamps[j];
+                values[to] = tailValues[j];
+                regions[to] = tailRegions[j];
+                environments[to] = tailEnvironments[j];
+                idHigh[to] = tailIdHigh[j];
+                idLow[to] = tailIdLow[j];
+                rawIds[to] = tailRawIds[j];
+                index[tailSlots[j]] = to + 1;
+                j--;
+            }
+        }
+        Arrays.fill(rawIds, newSize, size, null);
+        size = newSize;
+        sorted = newSize;
+        if (removed * 2 > size) {
+            compact();
+        }
+    }
+    
+    /**
+     * Drops the rows of replaced points and rebuilds the index. Only called on sorted rows.
+     */
+    private void compact() {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (rawIds[row] != REMOVED) {
+                copyRow(row, count++);
+            }
+        }
+        Arrays.fill(rawIds, count, size, null);
+        size = count;
+        sorted = count;
+        removed = 0;
+        rebuildIndex(index.length);
+    }
+    
+    private void copyRow(int from, int to) {
+        timestamps[to] = timestamps[from];
+        values[to] = values[from];
+        regions[to] = regions[from];
+        environments[to] = environments[from];
+        idHigh[to] = idHigh[from];
+        idLow[to] = idLow[from];
+        rawIds[to] = rawIds[from];
+    }
+    
+    /**
+     * First index whose timestamp is {@code >= timestamp}. Only valid once the tail is merged.
+     */
+    private int lowerBound(long timestamp) {
+        return lowerBound(timestamp, size);
+    }
+    
+    /**
+     * First index below {@code limit} whose timestamp is {@code >= timestamp}, or {@code limit}.
+     */
+    private int lowerBound(long timestamp, int limit) {
+        if (limit == 0 || timestamps[limit - 1] < timestamp) {
+            return limit;
+        }
+        int low = 0;
+        int high = limit;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * First index whose timestamp is {@code > timestamp}.
+     */
+    private int upperBound(long timestamp) {
+        return upperBound(timestamp, size);
+    }
+    
+    private int upperBound(long timestamp, int limit) {
+        return timestamp == Long.MAX_VALUE ? limit : lowerBound(timestamp + 1, limit);
+    }
+    
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        values = Arrays.copyOf(values, capacity);
+        regions = Arrays.copyOf(regions, capacity);
+        environments = Arrays.copyOf(environments, capacity);
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        rawIds = Arrays.copyOf(rawIds, capacity);
+    }
+}
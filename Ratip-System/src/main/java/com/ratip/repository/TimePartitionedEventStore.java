@@ -0,0 +1,278 @@
+package com.ratip.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory event store partitioned into fixed-width time segments. Each segment keeps one
+ * time-sorted series per composite key (e.g. {@code serviceName#metricType}), so a range query
+ * costs a segment lookup plus a sorted sub-map walk, and retention drops whole segments.
+ * <p>
+ * Ids are unique across the store: re-saving an event with a known id replaces the previous
+ * entry wherever it lives, mirroring the old map-by-id behaviour. The id index and the series
+ * are updated together inside one {@code compute} on the id, so writers of the same id never
+ * interleave and a replaced event leaves its old series before the new one is indexed.
+ */
+public class TimePartitionedEventStore<T> {
+
+    private final Function<T, String> idFn;
+    private final Function<T, String> keyFn;
+    private final Function<T, Instant> timestampFn;
+    private final long segmentMillis;
+
+    private final ConcurrentSkipListMap<Long, Segment<T>> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, T> byId = new ConcurrentHashMap<>();
+    /** Number of retained segments holding a series for each key. */
+    private final Map<String, Integer> keySegments = new ConcurrentHashMap<>();
+
+    public TimePartitionedEventStore(Function<T, String> idFn,
+                                     Function<T, String> keyFn,
+                                     Function<T, Instant> timestampFn,
+                                     Duration segmentWidth) {
+        if (segmentWidth.toMillis() <= 0) {
+            throw new IllegalArgumentException("Segment width must be positive: " + segmentWidth);
+        }
+        this.idFn = idFn;
+        this.keyFn = keyFn;
+        this.timestampFn = timestampFn;
+        this.segmentMillis = segmentWidth.toMillis();
+    }
+
+    public void put(T event) {
+        String id = Objects.requireNonNull(idFn.apply(event), "event id");
+        Instant timestamp = Objects.requireNonNull(timestampFn.apply(event), "event timestamp");
+        String key = keyFn.apply(event);
+
+        byId.compute(id, (ignored, previous) -> {
+            if (previous != null) {
+                unlink(previous, id);
+            }
+            seriesFor(segments.computeIfAbsent(segmentStart(timestamp), start -> new Segment<>()), key)
+                    .put(new EntryKey(timestamp, id), event);
+            return event;
+        });
+    }
+
+    /**
+     * The segment's series for {@code key}, created on first use. The key index is bumped only by
+     * the writer whose map wins the {@code putIfAbsent}; a skip-list {@code computeIfAbsent} may
+     * run its function more than once under contention and would over-count.
+     */
+    private NavigableMap<EntryKey, T> seriesFor(Segment<T> segment, String key) {
+        NavigableMap<EntryKey, T> series = segment.series.get(key);
+        if (series != null) {
+            return series;
+        }
+        NavigableMap<EntryKey, T> created = new ConcurrentSkipListMap<>();
+        series = segment.series.putIfAbsent(key, created);
+        if (series != null) {
+            return series;
+        }
+        keySegments.merge(key, 1, Integer::sum);
+        return created;
+    }
+
+    /**
+     * Events for {@code key} with {@code start < timestamp < end}, in timestamp order.
+     */
+    public List<T> range(String key, Instant start, Instant end) {
+        List<T> result = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return result;
+        }
+        for (Segment<T> segment : segmentsCovering(start, end)) {
+            NavigableMap<EntryKey, T> series = segment.series.get(key);
+            if (series != null) {
+                result.addAll(slice(series, start, end).values());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Events for every key starting with {@code keyPrefix} with {@code start < timestamp < end}.
+     * Results are ordered by segment, then key, then timestamp.
+     */
+    public List<T> rangeByPrefix(String keyPrefix, Instant start, Instant end) {
+        List<T> result = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return result;
+        }
+        for (Segment<T> segment : segmentsCovering(start, end)) {
+            for (NavigableMap<EntryKey, T> series : segment.series
+                    .subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false).values()) {
+                result.addAll(slice(series, start, end).values());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * First page of events under keys starting with {@code keyPrefix} that pass {@code filter} and
+     * {@code query}'s time bounds and cursor, in {@code (timestamp, id)} order. Only as many
+     * segments as it takes to fill the page are visited. The query's service, metric and severity
+     * fields are not interpreted here; callers fold them into the prefix and filter.
+     */
+    public EventPage<T> query(String keyPrefix, Predicate<T> filter, EventQuery query) {
+        List<T> candidates = new ArrayList<>();
+        if (query.lowerMillis() >= query.upperMillis()) {
+            return EventPage.of(candidates, query.limit(), this::position);
+        }
+        for (Segment<T> segment : segmentsCovering(query).values()) {
+            for (NavigableMap<EntryKey, T> series : segment.series
+                    .subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false).values()) {
+                for (T event : series.tailMap(new EntryKey(Instant.ofEpochMilli(query.lowerMillis()), null)).values()) {
+                    Instant timestamp = timestampFn.apply(event);
+                    if (timestamp.toEpochMilli() >= query.upperMillis()) {
+                        break;
+                    }
+                    if (query.admits(timestamp, idFn.apply(event)) && filter.test(event)) {
+                        candidates.add(event);
+                    }
+                }
+            }
+            if (candidates.size() > query.limit()) {
+                break;
+            }
+        }
+        candidates.sort(Comparator.comparing(this::position));
+        return EventPage.of(candidates, query.limit(), this::position);
+    }
+
+    /**
+     * The newest {@code limit} events under keys starting with {@code keyPrefix} with
+     * {@code start <= timestamp < end}, newest first. Segments are walked newest first and the walk
+     * stops once a segment fills the limit, since older segments cannot hold anything newer.
+     */
+    public List<T> latest(String keyPrefix, Instant start, Instant end, int limit) {
+        List<T> candidates = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return candidates;
+        }
+        for (Segment<T> segment : segments
+                .subMap(segmentStart(start), true, segmentStart(end), true).descendingMap().values()) {
+            for (NavigableMap<EntryKey, T> series : segment.series
+                    .subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false).values()) {
+                int taken = 0;
+                for (T event : series.headMap(new EntryKey(end, null), false).descendingMap().values()) {
+                    if (timestampFn.apply(event).isBefore(start) || taken++ == limit) {
+                        break;
+                    }
+                    candidates.add(event);
+                }
+            }
+            if (candidates.size() >= limit) {
+                break;
+            }
+        }
+        candidates.sort(Comparator.comparing(this::position).reversed());
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    public List<T> values() {
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Distinct composite keys that have events in any retained segment, read from an index kept
+     * up to date by writes and eviction rather than by scanning the segments.
+     */
+    public Set<String> keys() {
+        return new TreeSet<>(keySegments.keySet());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Drops every segment that ends at or before {@code cutoff}. Segments straddling the cutoff
+     * are kept whole, so up to one segment width of extra history may remain.
+     *
+     * @return number of segments dropped
+     */
+    public int evictBefore(Instant cutoff) {
+        NavigableMap<Long, Segment<T>> expired = segments.headMap(cutoff.toEpochMilli() - segmentMillis, true);
+        int dropped = 0;
+        Map.Entry<Long, Segment<T>> entry;
+        while ((entry = expired.pollFirstEntry()) != null) {
+            for (Map.Entry<String, NavigableMap<EntryKey, T>> series : entry.getValue().series.entrySet()) {
+                for (Map.Entry<EntryKey, T> event : series.getValue().entrySet()) {
+                    byId.remove(event.getKey().id(), event.getValue());
+                }
+                keySegments.computeIfPresent(series.getKey(), (key, count) -> count == 1 ? null : count - 1);
+            }
+            dropped++;
+        }
+        return dropped;
+    }
+
+    private void unlink(T event, String id) {
+        Segment<T> segment = segments.get(segmentStart(timestampFn.apply(event)));
+        if (segment != null) {
+            NavigableMap<EntryKey, T> series = segment.series.get(keyFn.apply(event));
+            if (series != null) {
+                series.remove(new EntryKey(timestampFn.apply(event), id));
+            }
+        }
+    }
+
+    private EventCursor position(T event) {
+        return EventCursor.of(timestampFn.apply(event), idFn.apply(event));
+    }
+
+    private long segmentStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, segmentMillis) * segmentMillis;
+    }
+
+    private long segmentStart(Instant timestamp) {
+        return segmentStart(timestamp.toEpochMilli());
+    }
+
+    private Iterable<Segment<T>> segmentsCovering(Instant start, Instant end) {
+        return segments.subMap(segmentStart(start), true, segmentStart(end), true).values();
+    }
+
+    private NavigableMap<Long, Segment<T>> segmentsCovering(EventQuery query) {
+        NavigableMap<Long, Segment<T>> covering = segments;
+        if (query.lowerMillis() != Long.MIN_VALUE) {
+            covering = covering.tailMap(segmentStart(query.lowerMillis()), true);
+        }
+        if (query.upperMillis() != Long.MAX_VALUE) {
+            covering = covering.headMap(segmentStart(query.upperMillis()), true);
+        }
+        return covering;
+    }
+
+    private static <T> NavigableMap<EntryKey, T> slice(NavigableMap<EntryKey, T> series, Instant start, Instant end) {
+        return series.subMap(new EntryKey(start.plusNanos(1), null), true, new EntryKey(end, null), false);
+    }
+
+    private static final class Segment<T> {
+        private final ConcurrentSkipListMap<String, NavigableMap<EntryKey, T>> series = new ConcurrentSkipListMap<>();
+    }
+
+    private record EntryKey(Instant timestamp, String id) implements Comparable<EntryKey> {
+
+        private static final Comparator<EntryKey> ORDER = Comparator
+                .comparing(EntryKey::timestamp)
+                .thenComparing(EntryKey::id, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        @Override
+        public int compareTo(EntryKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.StringDictionary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online anomaly detection on the telemetry stream with a dynamic threshold per
+ * ({@code serviceName}, {@code metricType}). Each series keeps an exponentially weighted mean and
+ * variance (EWMA/EWMV); a point whose z-score against them reaches {@code ratip.anomaly.threshold}
+ * raises a synthetic {@link AlarmEvent} whose {@code threshold} is the band it crossed, at most
+ * once per {@code ratip.anomaly.cooldown} of event time per series.
+ * <p>
+ * An update is O(1) and a series costs a fixed ~100 bytes, so hundreds of thousands of series fit
+ * comfortably; series that stop reporting are dropped after {@code ratip.anomaly.idle-timeout}.
+ * Anomalous points are clipped to the band before they update the baseline, so a sustained spike
+ * takes many points to become the new normal instead of silencing itself. The standard deviation
+ * is floored at {@code ratip.anomaly.min-relative-std} of the mean's magnitude (1% by default),
+ * so a series that sits flat does not turn every small wobble into an alarm. A series flat at
+ * zero has no magnitude to scale by; there the absolute {@code ratip.anomaly.min-std} (0.01 by
+ * default) applies, and any point more than {@code threshold} times that away from zero is
+ * anomalous, which is what a counter such as errors going from none to some should be.
+ * <p>
+ * The baseline depends on the order points arrive in, so recovery does not train on the replayed
+ * events as they come: a {@link Training} keeps the newest points of each series and folds them
+ * in in event-time order once the replay is done.
+ */
+@Slf4j
+@Component
+public class AnomalyDetector {
+    
+    private static final String ALARM_ID_PREFIX = "anomaly-";
+    
+    private final StringDictionary dictionary;
+    private final List<AnomalyListener> listeners;
+    private final boolean enabled;
+    private final double alpha;
+    private final double threshold;
+    private final double criticalThreshold;
+    private final int warmup;
+    private final long cooldownMillis;
+    private final long idleTimeoutMillis;
+    private final double minStd;
+    private final double minRelativeStd;
+    private final int trainingPoints;
+    
+    private final Map<Long, Baseline> baselines = new ConcurrentHashMap<>();
+    private final Counter warningAlarms;
+    private final Counter criticalAlarms;
+    
+    public AnomalyDetector(StringDictionary dictionary,
+                           List<AnomalyListener> listeners,
+                           MeterRegistry meterRegistry,
+                           @Value("${ratip.anomaly.enabled:true}") boolean enabled,
+                           @Value("${ratip.anomaly.alpha:0.05}") double alpha,
+                           @Value("${ratip.anomaly.threshold:4.0}") double threshold,
+                           @Value("${ratip.anomaly.critical-threshold:6.0}") double criticalThreshold,
+                           @Value("${ratip.anomaly.warmup:30}") int warmup,
+                           @Value("${ratip.anomaly.cooldown:PT5M}") Duration cooldown,
+                           @Value("${ratip.anomaly.idle-timeout:PT1H}") Duration idleTimeout,
+                           @Value("${ratip.anomaly.min-std:0.01}") double minStd,
+                           @Value("${ratip.anomaly.min-relative-std:0.01}") double minRelativeStd) {
+        if (minStd <= 0 || minRelativeStd < 0) {
+            throw new IllegalArgumentException("Anomaly min-std must be positive and min-relative-std not negative: "
+                    + minStd + ", " + minRelativeStd);
+        }
+        this.dictionary = dictionary;
+        this.listeners = listeners;
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.criticalThreshold = criticalThreshold;
+        this.warmup = Math.max(2, warmup);
+        this.cooldownMillis = cooldown.toMillis();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.minStd = minStd;
+        this.minRelativeStd = minRelativeStd;
+        // older points carry less than e^-3 of the EWMA weight
+        this.trainingPoints = Math.max(this.warmup, (int) Math.ceil(3 / alpha));
+        this.warningAlarms = alarmCounter(meterRegistry, "WARNING");
+        this.criticalAlarms = alarmCounter(meterRegistry, "CRITICAL");
+        Gauge.builder("ratip.anomaly.series", baselines, Map::size)
+                .description("Series with an anomaly baseline")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Scores a point against its series baseline and folds it in. Anomalous points are also
+     * passed to the {@link AnomalyListener}s.
+     *
+     * @return a synthetic alarm if the point is anomalous and the series is not cooling down,
+     *         otherwise {@code null}
+     */
+    public AlarmEvent observe(TelemetryEvent event) {
+        Double value = event.getValue();
+        if (!enabled || value == null || value.isNaN() || value.isInfinite()) {
+            return null;
+        }
+        return update(seriesKey(event), value, event.getTimestamp().toEpochMilli(), event);
+    }
+    
+    /**
+     * Starts collecting recovered points to train the baselines on.
+     */
+    public Training startTraining() {
+        return new Training();
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.anomaly.idle-sweep-interval:PT5M}")
+    public void evictIdleSeries() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        baselines.values().removeIf(baseline -> baseline.lastSeenMillis < cutoff);
+    }
+    
+    /**
+     * @param event the point being scored, or {@code null} to fold it in without raising alarms
+     */
+    private AlarmEvent update(long key, double value, long eventMillis, TelemetryEvent event) {
+        boolean detect = event != null;
+        Baseline baseline = baselines.computeIfAbsent(key, k -> new Baseline());
+        double anomalyScore = Double.NaN;
+        AlarmEvent alarm = null;
+        
+        synchronized (baseline) {
+            baseline.lastSeenMillis = System.currentTimeMillis();
+            double x = value;
+            if (baseline.count >= warmup) {
+                double mean = baseline.mean;
+                double deviation = x - mean;
+                double std = Math.max(Math.sqrt(baseline.variance), Math.max(Math.abs(mean) * minRelativeStd, minStd));
+                double score = deviation / std;
+                if (Math.abs(score) >= threshold) {
+                    anomalyScore = score;
+                    double bound = mean + Math.copySign(threshold * std, deviation);
+                    if (detect && eventMillis - baseline.lastAlarmMillis >= cooldownMillis) {
+                        baseline.lastAlarmMillis = eventMillis;
+                        alarm = alarm(event, score, mean, bound);
+                    }
+                    x = bound;
+                }
+            }
+            baseline.add(x, alpha);
+        }
+        
+        if (detect && !Double.isNaN(anomalyScore)) {
+            for (AnomalyListener listener : listeners) {
+                listener.onAnomaly(event, anomalyScore);
+            }
+        }
+        return alarm;
+    }
+    
+    private long seriesKey(TelemetryEvent event) {
+        return ((long) dictionary.encode(event.getServiceName()) << 32)
+                | (dictionary.encode(event.getMetricType()) & 0xFFFFFFFFL);
+    }
+    
+    private AlarmEvent alarm(TelemetryEvent event, double score, double mean, double bound) {
+        boolean critical = Math.abs(score) >= criticalThreshold;
+        (critical ? criticalAlarms : warningAlarms).increment();
+        String direction = score > 0 ? "above" : "below";
+        String description = String.format(Locale.ROOT, "%s %.2f is %.1f standard deviations %s its baseline %.2f on %s",
+                event.getMetricType(), event.getValue(), Math.abs(score), direction, mean, event.getServiceName());
+        log.debug("Anomaly: {}", description);
+        return AlarmEvent.builder()
+                .id(ALARM_ID_PREFIX + UUID.randomUUID())
+                .alarmName(event.getMetricType() + " anomaly")
+                .serviceName(event.getServiceName())
+                .metricType(event.getMetricType())
+                .severity(critical ? "CRITICAL" : "WARNING")
+                .state("ALARM")
+                .threshold(bound)
+                .value(event.getValue())
+                .timestamp(event.getTimestamp())
+                .description(description)
+                .region(event.getRegion())
+                .build();
+    }
+    
+    private static Counter alarmCounter(MeterRegistry meterRegistry, String severity) {
+        return Counter.builder("ratip.anomaly.alarms")
+                .description("Synthetic alarms raised by the anomaly detector")
+                .tag("severity", severity)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Recovered points waiting to train the baselines. {@link #offer} may be called concurrently
+     * and in any order; each series keeps only its newest points, as many as still carry weight in
+     * the EWMA, and {@link #finish} folds them in oldest first.
+     */
+    public final class Training {
+        
+        private final Map<Long, RecentPoints> series = new ConcurrentHashMap<>();
+        
+        private Training() {
+        }
+        
+        public void offer(TelemetryEvent event) {
+            Double value = event.getValue();
+            if (!enabled || value == null || value.isNaN() || value.isInfinite()) {
+                return;
+            }
+            RecentPoints points = series.computeIfAbsent(seriesKey(event), k -> new RecentPoints(trainingPoints));
+            synchronized (points) {
+                points.add(event.getTimestamp().toEpochMilli(), value);
+            }
+        }
+        
+        /**
+         * Trains every baseline on its collected points in event-time order, without raising
+         * alarms.
+         */
+        public void finish() {
+            for (Map.Entry<Long, RecentPoints> entry : series.entrySet()) {
+                RecentPoints points = entry.getValue();
+                synchronized (points) {
+                    points.keepNewest();
+                    for (int i = 0; i < points.size; i++) {
+                        update(entry.getKey(), points.values[i], points.timestamps[i], null);
+                    }
+                }
+            }
+            series.clear();
+        }
+    }
+    
+    /**
+     * Newest {@code limit} points of a series, buffered up to twice that and trimmed in bulk.
+     */
+    private static final class RecentPoints {
+        private final int limit;
+        private long[] timestamps = new long[8];
+        private double[] values = new double[8];
+        private int size;
+        
+        RecentPoints(int limit) {
+            this.limit = limit;
+        }
+        
+        void add(long timestamp, double value) {
+            if (size == 2 * limit) {
+                keepNewest();
+            }
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, Math.min(size * 2, 2 * limit));
+                values = Arrays.copyOf(values, timestamps.length);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+        
+        /**
+         * Sorts by timestamp, stable for equal timestamps, and drops all but the newest
+         * {@code limit}.
+         */
+        void keepNewest() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+            int from = Math.max(0, size - limit);
+            long[] keptTimestamps = new long[timestamps.length];
+            double[] keptValues = new double[values.length];
+            for (int i = from; i < size; i++) {
+                keptTimestamps[i - from] = timestamps[order[i]];
+                keptValues[i - from] = values[order[i]];
+            }
+            timestamps = keptTimestamps;
+            values = keptValues;
+            size -= from;
+        }
+    }
+    
+    /**
+     * EWMA/EWMV state of one series. While warming up the weight is {@code 1/n}, so the first
+     * points give a plain mean and variance rather than one biased towards the first value.
+     */
+    private static final class Baseline {
+        private double mean;
+        private double variance;
+        private int count;
+        private long lastAlarmMillis = Long.MIN_VALUE / 2;
+        private volatile long lastSeenMillis;
+        
+        void add(double x, double alpha) {
+            if (count < Integer.MAX_VALUE) {
+                count++;
+            }
+            double weight = Math.max(alpha, 1.0 / count);
+            double diff = x - mean;
+            double increment = weight * diff;
+            mean += increment;
+            variance = (1 - weight) * (variance + diff * increment);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ratip.service;
+
+import com.ratip.model.TelemetryEvent;
+
+/**
+ * Receives every telemetry point {@link AnomalyDetector} finds outside its series band, including
+ * points that raise no alarm because the series is cooling down. Called on the ingesting thread.
+ */
+public interface AnomalyListener {
+    
+    /**
+     * @param score signed distance from the series baseline in standard deviations
+     */
+    void onAnomaly(TelemetryEvent event, double score);
+}
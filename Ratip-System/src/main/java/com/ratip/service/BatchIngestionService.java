@@ -0,0 +1,156 @@
+package com.ratip.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.ratip.config.SmileFormat;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.BatchIngestResult;
+import com.ratip.model.TelemetryEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Parses large telemetry/alarm batches (a JSON array or newline-delimited objects, or the same as
+ * Smile, see {@link SmileFormat}) with Jackson's streaming parser, binding one event at a time and
+ * submitting it to the {@link IngestionPipeline}, so memory stays bounded by the pipeline queues
+ * rather than the request size. Once the pipeline refuses an event for longer than
+ * {@code ratip.ingest.submit-timeout}, the rest of the batch is offered without waiting and
+ * everything refused is reported as throttled.
+ * <p>
+ * When the key space is split over several nodes, events of services another node owns are
+ * rejected with the owning node's index, so the sender can re-route them.
+ */
+@Slf4j
+@Service
+public class BatchIngestionService {
+    
+    private static final int MAX_REPORTED_ERRORS = 20;
+    
+    private final ObjectMapper objectMapper;
+    private final SmileFormat smileFormat;
+    private final IngestionPipeline pipeline;
+    private final KeyPartitioner partitioner;
+    private final Duration submitTimeout;
+    
+    public BatchIngestionService(ObjectMapper objectMapper,
+                                 SmileFormat smileFormat,
+                                 IngestionPipeline pipeline,
+                                 KeyPartitioner partitioner,
+                                 @Value("${ratip.ingest.submit-timeout:PT1S}") Duration submitTimeout) {
+        this.objectMapper = objectMapper;
+        this.smileFormat = smileFormat;
+        this.pipeline = pipeline;
+        this.partitioner = partitioner;
+        this.submitTimeout = submitTimeout;
+    }
+    
+    public BatchIngestResult ingestTelemetry(InputStream body, MediaType contentType) throws IOException, InterruptedException {
+        return ingest(body, mapperFor(contentType), TelemetryEvent.class,
+                (TelemetryEvent event) -> validate(EventValidation.validateTelemetry(event), event.getServiceName()));
+    }
+    
+    public BatchIngestResult ingestAlarms(InputStream body, MediaType contentType) throws IOException, InterruptedException {
+        return ingest(body, mapperFor(contentType), AlarmEvent.class,
+                (AlarmEvent event) -> validate(EventValidation.validateAlarm(event), event.getServiceName()));
+    }
+    
+    private <T> BatchIngestResult ingest(InputStream body, ObjectMapper mapper, Class<T> type, Function<T, String> validator)
+            throws IOException, InterruptedException {
+        ObjectReader reader = mapper.readerFor(type);
+        long accepted = 0;
+        long rejected = 0;
+        long throttled = 0;
+        long position = 0;
+        List<String> errors = new ArrayList<>();
+        
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            
+            while (token != null && token != JsonToken.END_ARRAY) {
+                position++;
+                String error;
+                boolean submitted = false;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    error = "expected an object but found " + token;
+                } else {
+                    int elementDepth = parser.getParsingContext().getNestingDepth();
+                    try {
+                        T event = reader.readValue(parser);
+                        error = validator.apply(event);
+                        submitted = error == null && submit(event, throttled == 0);
+                    } catch (JsonMappingException e) {
+                        skipRemainder(parser, elementDepth);
+                        error = e.getOriginalMessage();
+                    }
+                }
+                
+                if (submitted) {
+                    accepted++;
+                } else if (error == null) {
+                    throttled++;
+                } else {
+                    rejected++;
+                    report(errors, position, error);
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException e) {
+            rejected++;
+            report(errors, position, "malformed JSON, stopped reading: " + e.getOriginalMessage());
+        }
+        
+        log.info("Batch ingested: {} accepted, {} rejected, {} throttled", accepted, rejected, throttled);
+        return BatchIngestResult.builder()
+                .accepted(accepted)
+                .rejected(rejected)
+                .throttled(throttled)
+                .errors(errors)
+                .build();
+    }
+    
+    private ObjectMapper mapperFor(MediaType contentType) {
+        return smileFormat.isSmile(contentType) ? smileFormat.mapper() : objectMapper;
+    }
+    
+    private String validate(String error, String serviceName) {
+        if (error != null || partitioner.isLocal(serviceName)) {
+            return error;
+        }
+        return "serviceName " + serviceName + " is owned by node " + partitioner.ownerOf(serviceName);
+    }
+    
+    private boolean submit(Object event, boolean wait) throws InterruptedException {
+        return wait ? pipeline.submit(event, submitTimeout) : pipeline.submit(event);
+    }
+    
+    private static void skipRemainder(JsonParser parser, int elementDepth) throws IOException {
+        while (parser.getParsingContext().getNestingDepth() >= elementDepth) {
+            if (parser.nextToken() == null) {
+                return;
+            }
+        }
+    }
+    
+    private static void report(List<String> errors, long position, String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("event " + position + ": " + error);
+        }
+    }
+}
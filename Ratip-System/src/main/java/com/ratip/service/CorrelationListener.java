@@ -0,0 +1,12 @@
+package com.ratip.service;
+
+import com.ratip.model.CorrelatedEvent;
+
+/**
+ * Receives correlations produced by {@link StreamingCorrelator} and {@link DependencyCorrelator}.
+ * Called on the ingesting thread, once per alarm/telemetry pair.
+ */
+public interface CorrelationListener {
+    
+    void onCorrelation(CorrelatedEvent correlation);
+}
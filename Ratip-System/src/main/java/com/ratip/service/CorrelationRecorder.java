@@ -0,0 +1,75 @@
+package com.ratip.service;
+
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.repository.EventLog;
+import com.ratip.repository.MockDataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Keeps streamed correlations in the repository so the dashboard can page through them. With the
+ * {@link EventLog} enabled each correlation is journaled first, so a restart restores exactly the
+ * correlations that were found instead of re-deriving them from a replay that runs out of order.
+ * <p>
+ * The pipeline stages run inside {@link #batch}, which holds back the correlations found on that
+ * thread and journals them in one append when the stage's batch is done, the same group commit
+ * telemetry and alarms get. Correlations found outside a batch are journaled one at a time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CorrelationRecorder implements CorrelationListener {
+    
+    private final MockDataRepository repository;
+    private final EventLog eventLog;
+    private final ThreadLocal<List<CorrelatedEvent>> pending = new ThreadLocal<>();
+    
+    @Override
+    public void onCorrelation(CorrelatedEvent correlation) {
+        List<CorrelatedEvent> batch = pending.get();
+        if (batch != null) {
+            batch.add(correlation);
+        } else {
+            record(List.of(correlation));
+        }
+    }
+    
+    /**
+     * Runs {@code work}, then journals and stores every correlation it produced on this thread.
+     */
+    public <T> T batch(Supplier<T> work) {
+        if (pending.get() != null) {
+            return work.get();
+        }
+        List<CorrelatedEvent> batch = new ArrayList<>();
+        pending.set(batch);
+        try {
+            return work.get();
+        } finally {
+            pending.remove();
+            record(batch);
+        }
+    }
+    
+    private void record(List<CorrelatedEvent> correlations) {
+        if (correlations.isEmpty()) {
+            return;
+        }
+        if (eventLog.isEnabled()) {
+            try {
+                eventLog.append(correlations);
+            } catch (Exception e) {
+                log.error("Event log append failed for {} correlations; they will not survive a restart",
+                        correlations.size(), e);
+            }
+        }
+        for (CorrelatedEvent correlation : correlations) {
+            repository.saveCorrelation(correlation);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ratip.service;
+
+import com.ratip.model.DeadLetter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process dead-letter queue for events the ingestion pipeline gave up on. Bounded: once full,
+ * the oldest entry is discarded to make room.
+ */
+@Slf4j
+@Component
+public class DeadLetterStore {
+    
+    private final int capacity;
+    private final LinkedHashMap<String, DeadLetter> entries = new LinkedHashMap<>();
+    private long discarded;
+    
+    public DeadLetterStore(@Value("${ratip.pipeline.dlq-capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+    
+    public synchronized void add(DeadLetter deadLetter) {
+        if (entries.size() >= capacity) {
+            Iterator<Map.Entry<String, DeadLetter>> oldest = entries.entrySet().iterator();
+            oldest.next();
+            oldest.remove();
+            discarded++;
+        }
+        entries.put(deadLetter.getId(), deadLetter);
+        log.warn("Dead-lettered {} at stage {}: {}", deadLetter.getEventType(), deadLetter.getStage(), deadLetter.getReason());
+    }
+    
+    public synchronized List<DeadLetter> list(int limit) {
+        List<DeadLetter> result = new ArrayList<>(Math.min(limit, entries.size()));
+        for (DeadLetter deadLetter : entries.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(deadLetter);
+        }
+        return result;
+    }
+    
+    public synchronized DeadLetter remove(String id) {
+        return entries.remove(id);
+    }
+    
+    public synchronized List<DeadLetter> drain() {
+        List<DeadLetter> result = new ArrayList<>(entries.values());
+        entries.clear();
+        return result;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized long discarded() {
+        return discarded;
+    }
+}
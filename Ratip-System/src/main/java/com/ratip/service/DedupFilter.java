@@ -0,0 +1,169 @@
+package com.ratip.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rotating Bloom filter over event ids. Ids are added to the newest generation and looked up in
+ * all of them; a generation is retired once it has absorbed its expected number of insertions or
+ * has been current for the rotation interval, so memory is fixed at
+ * {@code generations x bits-per-generation} however long the process runs, and an id is
+ * remembered for at least {@code (generations - 1)} rotations.
+ * <p>
+ * A Bloom filter never misses a real duplicate inside that horizon, but may report a first-seen
+ * id as a duplicate with the configured false-positive rate per generation consulted. The filter is
+ * blocked: all probes for an id fall in one 512-bit (cache-line sized) block, so a lookup costs one
+ * memory access per generation; blocks are sized up slightly to keep the configured rate. Safe for
+ * concurrent use: bits are set with CAS, rotation takes a short lock.
+ */
+public final class DedupFilter {
+    
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+    private static final int PROBES_PER_WORD = Long.SIZE / 9;
+    private static final double BLOCKING_OVERHEAD = 1.25;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private final int generations;
+    private final long expectedInsertions;
+    private final long rotationNanos;
+    private final int blocks;
+    private final int hashes;
+    
+    private volatile Generation[] ring;
+    private volatile long rotatedAtNanos = System.nanoTime();
+    
+    public DedupFilter(long expectedInsertions, double falsePositiveRate, int generations, long rotationNanos) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1 || generations < 2) {
+            throw new IllegalArgumentException("Invalid dedup filter configuration");
+        }
+        this.generations = generations;
+        this.expectedInsertions = expectedInsertions;
+        this.rotationNanos = rotationNanos;
+        double ln2 = Math.log(2);
+        double optimalBits = -expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2);
+        this.hashes = Math.max(1, (int) Math.round(optimalBits / expectedInsertions * ln2));
+        this.blocks = (int) Math.max(1, Math.min(Integer.MAX_VALUE / BLOCK_WORDS,
+                (long) Math.ceil(optimalBits * BLOCKING_OVERHEAD / BLOCK_BITS)));
+        
+        Generation[] initial = new Generation[generations];
+        for (int i = 0; i < generations; i++) {
+            initial[i] = new Generation(blocks);
+        }
+        this.ring = initial;
+    }
+    
+    /**
+     * Records {@code id} and reports whether it was (probably) seen before.
+     *
+     * @return true if {@code id} is a likely duplicate
+     */
+    public boolean checkAndAdd(String id) {
+        long hash = mix(fnv1a(id));
+        int block = (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_WORDS;
+        long probes = mix(hash + GOLDEN_GAMMA);
+        
+        Generation[] current = ring;
+        for (int g = 1; g < current.length; g++) {
+            if (current[g].mightContain(block, probes, hashes)) {
+                return true;
+            }
+        }
+        Generation newest = current[0];
+        if (!newest.add(block, probes, hashes)) {
+            return true;
+        }
+        if (newest.insertions.incrementAndGet() >= expectedInsertions
+                || System.nanoTime() - rotatedAtNanos >= rotationNanos) {
+            rotate(newest);
+        }
+        return false;
+    }
+    
+    public long memoryBytes() {
+        return (long) generations * blocks * BLOCK_WORDS * Long.BYTES;
+    }
+    
+    public int hashFunctions() {
+        return hashes;
+    }
+    
+    private synchronized void rotate(Generation expectedNewest) {
+        Generation[] current = ring;
+        if (current[0] != expectedNewest) {
+            return;
+        }
+        Generation[] next = new Generation[generations];
+        next[0] = new Generation(blocks);
+        System.arraycopy(current, 0, next, 1, generations - 1);
+        rotatedAtNanos = System.nanoTime();
+        ring = next;
+    }
+    
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    private static final class Generation {
+        
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+        
+        Generation(int blocks) {
+            this.words = new AtomicLongArray(blocks * BLOCK_WORDS);
+        }
+        
+        boolean mightContain(int block, long probes, int hashes) {
+            long slices = probes;
+            for (int i = 0; i < hashes; i++) {
+                if (i > 0 && i % PROBES_PER_WORD == 0) {
+                    slices = mix(slices + GOLDEN_GAMMA);
+                }
+                int bit = (int) (slices >>> (9 * (i % PROBES_PER_WORD))) & (BLOCK_BITS - 1);
+                if ((words.get(block + (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * @return true if at least one bit was newly set, i.e. the id was not already present
+         */
+        boolean add(int block, long probes, int hashes) {
+            boolean changed = false;
+            long slices = probes;
+            for (int i = 0; i < hashes; i++) {
+                if (i > 0 && i % PROBES_PER_WORD == 0) {
+                    slices = mix(slices + GOLDEN_GAMMA);
+                }
+                int bit = (int) (slices >>> (9 * (i % PROBES_PER_WORD))) & (BLOCK_BITS - 1);
+                int word = block + (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0) {
+                    if (words.compareAndSet(word, current, current | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    current = words.get(word);
+                }
+            }
+            return changed;
+        }
+    }
+}
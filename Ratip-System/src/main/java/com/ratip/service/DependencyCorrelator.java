@@ -0,0 +1,423 @@
+package com.ratip.service;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cross-service correlation over a service dependency graph, configured as caller->callee edges
+ * in {@code ratip.correlation.dependency.edges}. An alarm on a service is matched with anomalous
+ * telemetry (as flagged by {@link AnomalyDetector}) on the services it calls, directly or
+ * transitively, that led the alarm by up to {@code lag}: an upstream cause. It is also matched with
+ * anomalous telemetry on the services that call it, trailing the alarm by up to {@code lag}:
+ * downstream impact. Confidence falls with hop distance and lead time.
+ * <p>
+ * Like {@link StreamingCorrelator} this is a symmetric streaming join, so a pair is found whichever
+ * side arrives first. Work per event is bounded. Neighbour lists are computed once from the graph,
+ * up to {@code max-hops} and nearest first, capped at {@code max-neighbors}. Each service keeps its
+ * recent alarms and anomalies in one-minute buckets capped at {@code max-per-bucket}, and only the
+ * buckets inside the lag window are probed. An alarm is paired with each neighbour series at most
+ * once, so an alarm storm grows the output linearly.
+ */
+@Slf4j
+@Component
+public class DependencyCorrelator implements AnomalyListener {
+    
+    static final String UPSTREAM_TYPE = "Upstream Dependency Correlation";
+    static final String DOWNSTREAM_TYPE = "Downstream Impact Correlation";
+    private static final long BUCKET_MILLIS = 60_000;
+    
+    private final List<CorrelationListener> listeners;
+    private final long lagMillis;
+    private final long skewMillis;
+    private final int maxPerBucket;
+    private final Map<String, List<Neighbor>> upstream;
+    private final Map<String, List<Neighbor>> downstream;
+    
+    private final Map<String, ServiceWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, Counter> correlationCounters = new ConcurrentHashMap<>();
+    private final RatipMetrics metrics;
+    private final Timer joinTimer;
+    private final Counter truncated;
+    
+    public DependencyCorrelator(List<CorrelationListener> listeners,
+                                RatipMetrics metrics,
+                                @Value("${ratip.correlation.dependency.edges:}") String[] edges,
+                                @Value("${ratip.correlation.dependency.max-hops:2}") int maxHops,
+                                @Value("${ratip.correlation.dependency.max-neighbors:32}") int maxNeighbors,
+                                @Value("${ratip.correlation.dependency.lag:PT10M}") Duration lag,
+                                @Value("${ratip.correlation.dependency.skew:PT30S}") Duration skew,
+                                @Value("${ratip.correlation.dependency.max-per-bucket:64}") int maxPerBucket) {
+        if (lag.toMillis() <= 0) {
+            throw new IllegalArgumentException("Dependency lag must be positive: " + lag);
+        }
+        this.listeners = listeners;
+        this.lagMillis = lag.toMillis();
+        this.skewMillis = skew.toMillis();
+        this.maxPerBucket = maxPerBucket;
+        
+        Map<String, List<String>> callees = new HashMap<>();
+        Map<String, List<String>> callers = new HashMap<>();
+        Set<String> services = new HashSet<>();
+        for (String edge : edges) {
+            if (edge.isBlank()) {
+                continue;
+            }
+            String[] ends = edge.split("->");
+            if (ends.length != 2 || ends[0].isBlank() || ends[1].isBlank()) {
+                throw new IllegalArgumentException("Dependency edge must look like caller->callee: " + edge);
+            }
+            String caller = ends[0].trim();
+            String callee = ends[1].trim();
+            callees.computeIfAbsent(caller, k -> new ArrayList<>()).add(callee);
+            callers.computeIfAbsent(callee, k -> new ArrayList<>()).add(caller);
+            services.add(caller);
+            services.add(callee);
+        }
+        this.upstream = neighbors(callees, maxHops, maxNeighbors);
+        this.downstream = neighbors(callers, maxHops, maxNeighbors);
+        
+        this.metrics = metrics;
+        this.joinTimer = metrics.timer("ratip.correlation.join",
+                "Time to match an event against the open window of its series", "side", "dependency");
+        this.truncated = metrics.counter("ratip.correlation.dependency.truncated",
+                "Events not retained for dependency matching because their minute bucket was full");
+        if (!services.isEmpty()) {
+            log.info("Dependency correlation over {} services, up to {} hops", services.size(), maxHops);
+        }
+    }
+    
+    /**
+     * Matches an alarm with anomalies on its dependencies and dependents, and keeps it so later
+     * anomalies can still find it.
+     */
+    public List<CorrelatedEvent> ingestAlarm(AlarmEvent alarm) {
+        List<Neighbor> causes = upstream.getOrDefault(alarm.getServiceName(), List.of());
+        List<Neighbor> impacts = downstream.getOrDefault(alarm.getServiceName(), List.of());
+        if (causes.isEmpty() && impacts.isEmpty()) {
+            return List.of();
+        }
+        long start = metrics.start();
+        long alarmMillis = alarm.getTimestamp().toEpochMilli();
+        PendingAlarm pending = new PendingAlarm(alarm);
+        ServiceWindow own = windowFor(alarm.getServiceName());
+        synchronized (own) {
+            if (!own.addAlarm(pending, alarmMillis)) {
+                return List.of();
+            }
+        }
+        
+        List<CorrelatedEvent> correlations = new ArrayList<>();
+        for (Neighbor cause : causes) {
+            matchSignals(pending, cause, alarmMillis - lagMillis, alarmMillis + skewMillis, UPSTREAM_TYPE, correlations);
+        }
+        for (Neighbor impact : impacts) {
+            matchSignals(pending, impact, alarmMillis - skewMillis, alarmMillis + lagMillis, DOWNSTREAM_TYPE, correlations);
+        }
+        metrics.stop(joinTimer, start);
+        publish(correlations);
+        return correlations;
+    }
+    
+    /**
+     * Keeps an anomalous point and matches it with alarms it may have caused on the services that
+     * call this one, or that may have caused it on the services this one calls.
+     */
+    @Override
+    public void onAnomaly(TelemetryEvent event, double score) {
+        List<Neighbor> dependents = downstream.getOrDefault(event.getServiceName(), List.of());
+        List<Neighbor> dependencies = upstream.getOrDefault(event.getServiceName(), List.of());
+        if (dependents.isEmpty() && dependencies.isEmpty()) {
+            return;
+        }
+        long start = metrics.start();
+        long signalMillis = event.getTimestamp().toEpochMilli();
+        ServiceWindow own = windowFor(event.getServiceName());
+        synchronized (own) {
+            own.addSignal(event, signalMillis);
+        }
+        
+        List<CorrelatedEvent> correlations = new ArrayList<>();
+        for (Neighbor dependent : dependents) {
+            matchAlarms(event, dependent, signalMillis - skewMillis, signalMillis + lagMillis, UPSTREAM_TYPE, correlations);
+        }
+        for (Neighbor dependency : dependencies) {
+            matchAlarms(event, dependency, signalMillis - lagMillis, signalMillis + skewMillis, DOWNSTREAM_TYPE, correlations);
+        }
+        metrics.stop(joinTimer, start);
+        publish(correlations);
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.correlation.idle-sweep-interval:PT1M}")
+    public void evictIdleServices() {
+        long cutoff = System.currentTimeMillis() - lagMillis - skewMillis - BUCKET_MILLIS;
+        windows.values().removeIf(window -> {
+            synchronized (window) {
+                return window.watermark < cutoff;
+            }
+        });
+    }
+    
+    private void matchSignals(PendingAlarm pending, Neighbor neighbor, long from, long to, String type,
+                              List<CorrelatedEvent> correlations) {
+        ServiceWindow window = windows.get(neighbor.service);
+        if (window == null) {
+            return;
+        }
+        List<TelemetryEvent> candidates;
+        synchronized (window) {
+            candidates = window.signals(from, to);
+        }
+        Map<String, TelemetryEvent> bestBySeries = new LinkedHashMap<>();
+        Map<String, Double> bestConfidence = new HashMap<>();
+        for (TelemetryEvent telemetry : candidates) {
+            double confidence = confidence(pending.alarm, telemetry, neighbor.hops);
+            if (confidence > bestConfidence.getOrDefault(telemetry.getMetricType(), -1.0)) {
+                bestConfidence.put(telemetry.getMetricType(), confidence);
+                bestBySeries.put(telemetry.getMetricType(), telemetry);
+            }
+        }
+        for (TelemetryEvent telemetry : bestBySeries.values()) {
+            if (pending.matched.add(neighbor.service + "#" + telemetry.getMetricType())) {
+                correlations.add(build(type, pending.alarm, telemetry, neighbor.hops));
+            }
+        }
+    }
+    
+    private void matchAlarms(TelemetryEvent telemetry, Neighbor neighbor, long from, long to, String type,
+                             List<CorrelatedEvent> correlations) {
+        ServiceWindow window = windows.get(neighbor.service);
+        if (window == null) {
+            return;
+        }
+        List<PendingAlarm> candidates;
+        synchronized (window) {
+            candidates = window.alarms(from, to);
+        }
+        String series = telemetry.getServiceName() + "#" + telemetry.getMetricType();
+        for (PendingAlarm pending : candidates) {
+            if (pending.matched.add(series)) {
+                correlations.add(build(type, pending.alarm, telemetry, neighbor.hops));
+            }
+        }
+    }
+    
+    /**
+     * 0.85 for a critical alarm and 0.75 otherwise, times 0.8 per hop beyond the first, times a
+     * lead-time factor falling from 1 for simultaneous events to 0.6 at the edge of the lag window.
+     */
+    private double confidence(AlarmEvent alarm, TelemetryEvent telemetry, int hops) {
+        double base = "CRITICAL".equals(alarm.getSeverity()) ? 0.85 : 0.75;
+        double gap = Math.abs(alarm.getTimestamp().toEpochMilli() - telemetry.getTimestamp().toEpochMilli());
+        double lead = 1 - 0.4 * Math.min(1, gap / lagMillis);
+        return base * Math.pow(0.8, hops - 1) * lead;
+    }
+    
+    private CorrelatedEvent build(String type, AlarmEvent alarm, TelemetryEvent telemetry, int hops) {
+        long seconds = Math.abs(alarm.getTimestamp().getEpochSecond() - telemetry.getTimestamp().getEpochSecond());
+        String hopText = hops == 1 ? "1 hop" : hops + " hops";
+        boolean upstreamCause = UPSTREAM_TYPE.equals(type);
+        String description = upstreamCause
+                ? String.format(Locale.ROOT, "%s %s anomaly %ds before %s %s alarm (%s upstream)",
+                        telemetry.getServiceName(), telemetry.getMetricType(), seconds,
+                        alarm.getServiceName(), alarm.getAlarmName(), hopText)
+                : String.format(Locale.ROOT, "%s %s alarm followed by %s %s anomaly %ds later (%s downstream)",
+                        alarm.getServiceName(), alarm.getAlarmName(), telemetry.getServiceName(),
+                        telemetry.getMetricType(), seconds, hopText);
+        String rootCause = upstreamCause
+                ? String.format(Locale.ROOT, "Dependency %s degraded (%s %.2f) before %s raised %s",
+                        telemetry.getServiceName(), telemetry.getMetricType(), telemetry.getValue(),
+                        alarm.getServiceName(), alarm.getMetricType())
+                : String.format(Locale.ROOT, "%s degradation propagated to its caller %s (%s %.2f)",
+                        alarm.getServiceName(), telemetry.getServiceName(), telemetry.getMetricType(), telemetry.getValue());
+        String action = upstreamCause
+                ? "Investigate " + telemetry.getServiceName() + " first; " + alarm.getServiceName() + " depends on it"
+                : "Mitigate " + alarm.getServiceName() + " to relieve " + telemetry.getServiceName()
+                        + ", or shed or time out its calls to it";
+        return CorrelatedEvent.builder()
+                .id(UUID.randomUUID().toString())
+                .correlationType(type)
+                .confidenceScore(confidence(alarm, telemetry, hops))
+                .description(description)
+                .correlationTimestamp(Instant.now())
+                .alarm(alarm)
+                .telemetry(telemetry)
+                .rootCause(rootCause)
+                .recommendedAction(action)
+                .build();
+    }
+    
+    private void publish(List<CorrelatedEvent> correlations) {
+        for (CorrelatedEvent correlation : correlations) {
+            log.debug("Dependency correlation: {} (confidence: {})",
+                    correlation.getDescription(), correlation.getConfidenceScore());
+            if (metrics.isEnabled()) {
+                correlationCounter(correlation).increment();
+            }
+            for (CorrelationListener listener : listeners) {
+                try {
+                    listener.onCorrelation(correlation);
+                } catch (Exception e) {
+                    log.error("Correlation listener {} failed", listener.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+    
+    private Counter correlationCounter(CorrelatedEvent correlation) {
+        String type = correlation.getCorrelationType();
+        String severity = correlation.getAlarm().getSeverity();
+        return correlationCounters.computeIfAbsent(type + "#" + severity,
+                key -> metrics.counter("ratip.correlations", "Correlations emitted by the dependency correlator",
+                        "type", type, "severity", String.valueOf(severity)));
+    }
+    
+    private ServiceWindow windowFor(String serviceName) {
+        return windows.computeIfAbsent(serviceName, k -> new ServiceWindow());
+    }
+    
+    /**
+     * Breadth-first neighbours of every service up to {@code maxHops}, nearest first, without the
+     * service itself and capped at {@code maxNeighbors}.
+     */
+    private static Map<String, List<Neighbor>> neighbors(Map<String, List<String>> edges, int maxHops, int maxNeighbors) {
+        Map<String, List<Neighbor>> result = new HashMap<>();
+        for (String origin : edges.keySet()) {
+            List<Neighbor> reached = new ArrayList<>();
+            Map<String, Integer> hopsByService = new HashMap<>(Map.of(origin, 0));
+            Deque<String> frontier = new ArrayDeque<>(List.of(origin));
+            while (!frontier.isEmpty() && reached.size() < maxNeighbors) {
+                String service = frontier.poll();
+                int hops = hopsByService.get(service) + 1;
+                if (hops > maxHops) {
+                    continue;
+                }
+                for (String next : edges.getOrDefault(service, List.of())) {
+                    if (hopsByService.putIfAbsent(next, hops) == null && reached.size() < maxNeighbors) {
+                        reached.add(new Neighbor(next, hops));
+                        frontier.add(next);
+                    }
+                }
+            }
+            result.put(origin, List.copyOf(reached));
+        }
+        return result;
+    }
+    
+    private record Neighbor(String service, int hops) {
+    }
+    
+    private static final class PendingAlarm {
+        private final AlarmEvent alarm;
+        private final Set<String> matched = ConcurrentHashMap.newKeySet();
+        
+        PendingAlarm(AlarmEvent alarm) {
+            this.alarm = alarm;
+        }
+    }
+    
+    /**
+     * Recent alarms and anomalies of one service in one-minute buckets of event time, trimmed to
+     * the lag window behind the newest event. Guarded by its own monitor.
+     */
+    private final class ServiceWindow {
+        private final TreeMap<Long, List<PendingAlarm>> alarms = new TreeMap<>();
+        private final TreeMap<Long, List<TelemetryEvent>> signals = new TreeMap<>();
+        private long watermark = Long.MIN_VALUE;
+        
+        /**
+         * @return false if an alarm with the same id is already in the window
+         */
+        boolean addAlarm(PendingAlarm pending, long millis) {
+            advance(millis);
+            List<PendingAlarm> bucket = alarms.computeIfAbsent(Math.floorDiv(millis, BUCKET_MILLIS), k -> new ArrayList<>());
+            for (PendingAlarm existing : bucket) {
+                if (existing.alarm.getId().equals(pending.alarm.getId())) {
+                    return false;
+                }
+            }
+            if (bucket.size() < maxPerBucket) {
+                bucket.add(pending);
+            } else {
+                truncated.increment();
+            }
+            return true;
+        }
+        
+        void addSignal(TelemetryEvent event, long millis) {
+            advance(millis);
+            List<TelemetryEvent> bucket = signals.computeIfAbsent(Math.floorDiv(millis, BUCKET_MILLIS), k -> new ArrayList<>());
+            if (bucket.size() < maxPerBucket) {
+                bucket.add(event);
+            } else {
+                truncated.increment();
+            }
+        }
+        
+        List<PendingAlarm> alarms(long from, long to) {
+            List<PendingAlarm> result = new ArrayList<>();
+            for (List<PendingAlarm> bucket : buckets(alarms, from, to)) {
+                for (PendingAlarm pending : bucket) {
+                    long millis = pending.alarm.getTimestamp().toEpochMilli();
+                    if (millis >= from && millis <= to) {
+                        result.add(pending);
+                    }
+                }
+            }
+            return result;
+        }
+        
+        List<TelemetryEvent> signals(long from, long to) {
+            List<TelemetryEvent> result = new ArrayList<>();
+            for (List<TelemetryEvent> bucket : buckets(signals, from, to)) {
+                for (TelemetryEvent event : bucket) {
+                    long millis = event.getTimestamp().toEpochMilli();
+                    if (millis >= from && millis <= to) {
+                        result.add(event);
+                    }
+                }
+            }
+            return result;
+        }
+        
+        private <T> Iterable<List<T>> buckets(TreeMap<Long, List<T>> byBucket, long from, long to) {
+            if (from > to) {
+                return Collections.emptyList();
+            }
+            return byBucket.subMap(Math.floorDiv(from, BUCKET_MILLIS), true, Math.floorDiv(to, BUCKET_MILLIS), true).values();
+        }
+        
+        private void advance(long millis) {
+            if (millis > watermark) {
+                watermark = millis;
+                long oldestKept = Math.floorDiv(watermark - lagMillis - skewMillis, BUCKET_MILLIS);
+                alarms.headMap(oldestKept, false).clear();
+                signals.headMap(oldestKept, false).clear();
+            }
+        }
+    }
+}
@@ -3,29 +3,32 @@ package com.ratip.service;
 import com.ratip.model.AlarmEvent;
 import com.ratip.model.CorrelatedEvent;
 import com.ratip.model.TelemetryEvent;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
-@Slf4j
 @Component
 public class EventCorrelator {
     
+    private static final long BUCKET_SECONDS = 300;
+    private static final long MAX_CORRELATION_MINUTES = 5;
+    private static final long HIGH_CONFIDENCE_MINUTES = 2;
+    
     public List<CorrelatedEvent> correlateEvents(List<TelemetryEvent> telemetryEvents, List<AlarmEvent> alarms) {
         List<CorrelatedEvent> correlations = new ArrayList<>();
+        TelemetryIndex index = new TelemetryIndex(telemetryEvents);
         
         for (AlarmEvent alarm : alarms) {
-            for (TelemetryEvent telemetry : telemetryEvents) {
+            for (int position : index.candidates(alarm)) {
+                TelemetryEvent telemetry = telemetryEvents.get(position);
                 if (isCorrelated(alarm, telemetry)) {
-                    CorrelatedEvent correlation = buildCorrelation(alarm, telemetry);
-                    correlations.add(correlation);
-                    log.debug("Created correlation: {} (confidence: {})", 
-                            correlation.getDescription(), correlation.getConfidenceScore());
+                    correlations.add(buildCorrelation(alarm, telemetry));
                 }
             }
         }
@@ -33,7 +36,7 @@ public class EventCorrelator {
         return correlations;
     }
     
-    private boolean isCorrelated(AlarmEvent alarm, TelemetryEvent telemetry) {
+    boolean isCorrelated(AlarmEvent alarm, TelemetryEvent telemetry) {
         if (!alarm.getServiceName().equals(telemetry.getServiceName())) {
             return false;
         }
@@ -42,11 +45,21 @@ public class EventCorrelator {
             return false;
         }
         
-        Duration timeDiff = Duration.between(telemetry.getTimestamp(), alarm.getTimestamp());
-        return Math.abs(timeDiff.toMinutes()) <= 5;
+        return Math.abs(minutesBetween(telemetry.getTimestamp(), alarm.getTimestamp())) <= MAX_CORRELATION_MINUTES;
+    }
+    
+    /**
+     * Same result as {@code Duration.between(start, end).toMinutes()} without allocating a Duration.
+     */
+    static long minutesBetween(Instant start, Instant end) {
+        long seconds = end.getEpochSecond() - start.getEpochSecond();
+        if (end.getNano() < start.getNano()) {
+            seconds--;
+        }
+        return seconds / 60;
     }
     
-    private CorrelatedEvent buildCorrelation(AlarmEvent alarm, TelemetryEvent telemetry) {
+    CorrelatedEvent buildCorrelation(AlarmEvent alarm, TelemetryEvent telemetry) {
         double confidence = calculateConfidence(alarm, telemetry);
         
         return CorrelatedEvent.builder()
@@ -70,8 +83,7 @@ public class EventCorrelator {
             baseConfidence += 0.2;
         }
         
-        Duration timeDiff = Duration.between(telemetry.getTimestamp(), alarm.getTimestamp());
-        if (Math.abs(timeDiff.toMinutes()) <= 2) {
+        if (Math.abs(minutesBetween(telemetry.getTimestamp(), alarm.getTimestamp())) <= HIGH_CONFIDENCE_MINUTES) {
             baseConfidence += 0.1;
         }
         
@@ -93,4 +105,82 @@ public class EventCorrelator {
         }
         return "Monitor the situation and investigate if pattern persists";
     }
+    
+    /**
+     * Hash partition of a telemetry batch by service, metric and 5-minute bucket. Probing returns
+     * the positions of every telemetry event that can possibly correlate with an alarm, in input
+     * order, so the join emits correlations in the same order as a full alarm x telemetry scan.
+     */
+    private static final class TelemetryIndex {
+        
+        private static final int[] NO_CANDIDATES = new int[0];
+        
+        private final Map<String, Map<String, Map<Long, IntList>>> partitions = new HashMap<>();
+        
+        TelemetryIndex(List<TelemetryEvent> telemetryEvents) {
+            for (int i = 0; i < telemetryEvents.size(); i++) {
+                TelemetryEvent telemetry = telemetryEvents.get(i);
+                if (telemetry.getServiceName() == null || telemetry.getMetricType() == null
+                        || telemetry.getTimestamp() == null) {
+                    continue;
+                }
+                partitions.computeIfAbsent(telemetry.getServiceName(), k -> new HashMap<>())
+                        .computeIfAbsent(telemetry.getMetricType(), k -> new HashMap<>())
+                        .computeIfAbsent(bucketOf(telemetry.getTimestamp().getEpochSecond()), k -> new IntList())
+                        .add(i);
+            }
+        }
+        
+        int[] candidates(AlarmEvent alarm) {
+            Map<String, Map<Long, IntList>> byMetric = partitions.get(alarm.getServiceName());
+            Map<Long, IntList> buckets = byMetric == null ? null : byMetric.get(alarm.getMetricType());
+            if (buckets == null) {
+                return NO_CANDIDATES;
+            }
+            
+            long alarmSecond = alarm.getTimestamp().getEpochSecond();
+            long reach = (MAX_CORRELATION_MINUTES + 1) * 60 + 1;
+            long lastBucket = bucketOf(alarmSecond + reach);
+            
+            IntList candidates = new IntList();
+            for (long bucket = bucketOf(alarmSecond - reach); bucket <= lastBucket; bucket++) {
+                IntList positions = buckets.get(bucket);
+                if (positions != null) {
+                    candidates.addAll(positions);
+                }
+            }
+            int[] sorted = candidates.toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+        
+        private static long bucketOf(long epochSecond) {
+            return Math.floorDiv(epochSecond, BUCKET_SECONDS);
+        }
+    }
+    
+    private static final class IntList {
+        
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
 }
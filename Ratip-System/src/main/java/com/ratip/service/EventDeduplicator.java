@@ -0,0 +1,81 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Drops redelivered events by id. Telemetry and alarms have separate {@link DedupFilter}s so ids
+ * only need to be unique per event type.
+ */
+@Slf4j
+@Component
+public class EventDeduplicator {
+    
+    private final DedupFilter telemetryFilter;
+    private final DedupFilter alarmFilter;
+    private final Counter telemetryDuplicates;
+    private final Counter alarmDuplicates;
+    
+    public EventDeduplicator(MeterRegistry meterRegistry,
+                             @Value("${ratip.dedup.expected-insertions:1000000}") long expectedInsertions,
+                             @Value("${ratip.dedup.false-positive-rate:0.0001}") double falsePositiveRate,
+                             @Value("${ratip.dedup.generations:3}") int generations,
+                             @Value("${ratip.dedup.rotation-interval:PT10M}") Duration rotationInterval) {
+        this.telemetryFilter = new DedupFilter(expectedInsertions, falsePositiveRate, generations, rotationInterval.toNanos());
+        this.alarmFilter = new DedupFilter(expectedInsertions, falsePositiveRate, generations, rotationInterval.toNanos());
+        this.telemetryDuplicates = duplicatesCounter(meterRegistry, "telemetry");
+        this.alarmDuplicates = duplicatesCounter(meterRegistry, "alarm");
+        Gauge.builder("ratip.dedup.memory", this, d -> d.telemetryFilter.memoryBytes() + d.alarmFilter.memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Dedup filters: {} generations x {} ids, {} hash functions, {} KiB each",
+                generations, expectedInsertions, telemetryFilter.hashFunctions(), telemetryFilter.memoryBytes() / 1024);
+    }
+    
+    /**
+     * @return true if the event's id was (probably) seen before and the event should be dropped
+     */
+    public boolean isDuplicate(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            return record(telemetryFilter.checkAndAdd(telemetry.getId()), telemetryDuplicates);
+        }
+        if (event instanceof AlarmEvent alarm) {
+            return record(alarmFilter.checkAndAdd(alarm.getId()), alarmDuplicates);
+        }
+        return false;
+    }
+    
+    /**
+     * Adds the event's id without counting it as a duplicate; used to warm the filters with
+     * recovered events.
+     */
+    public void remember(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            telemetryFilter.checkAndAdd(telemetry.getId());
+        } else if (event instanceof AlarmEvent alarm) {
+            alarmFilter.checkAndAdd(alarm.getId());
+        }
+    }
+    
+    private static boolean record(boolean duplicate, Counter counter) {
+        if (duplicate) {
+            counter.increment();
+        }
+        return duplicate;
+    }
+    
+    private static Counter duplicatesCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("ratip.dedup.duplicates")
+                .description("Events dropped because their id was already ingested")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.EventCursor;
+import com.ratip.repository.EventPage;
+import com.ratip.repository.EventQuery;
+import com.ratip.repository.MockDataRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Paged, filtered reads behind the dashboard endpoints. Results come back in
+ * {@code (timestamp, id)} order, so a client can either page through a fixed range with the
+ * returned cursor or poll with {@code since} set to the last watermark and receive only events
+ * after it.
+ * <p>
+ * Events are ordered by their own timestamp (correlations by the time they were found), so an
+ * event that arrives with a timestamp older than a client's watermark is not sent to that client.
+ */
+@Service
+public class EventQueryService {
+    
+    private final MockDataRepository repository;
+    private final int defaultLimit;
+    private final int maxLimit;
+    
+    public EventQueryService(MockDataRepository repository,
+                             @Value("${ratip.query.default-limit:500}") int defaultLimit,
+                             @Value("${ratip.query.max-limit:5000}") int maxLimit) {
+        this.repository = repository;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+    
+    public EventPage<TelemetryEvent> telemetry(Filter filter) {
+        return repository.queryTelemetry(toQuery(filter));
+    }
+    
+    public EventPage<AlarmEvent> alarms(Filter filter) {
+        return repository.queryAlarms(toQuery(filter));
+    }
+    
+    public EventPage<CorrelatedEvent> correlations(Filter filter) {
+        return repository.queryCorrelations(toQuery(filter));
+    }
+    
+    /**
+     * Watermark a polling client should send as {@code since} next time: the last event returned,
+     * or the one it sent if nothing new arrived.
+     */
+    public static String watermark(EventPage<?> page, String since) {
+        return page.last() != null ? page.last().encode() : since;
+    }
+    
+    /**
+     * Raw request parameters. {@code cursor} continues a paged read; {@code since} is a watermark
+     * from a previous response. When both are given the later position wins. A malformed cursor or
+     * watermark, or a non-positive limit, is rejected with {@link IllegalArgumentException}.
+     */
+    public record Filter(String service, String metric, String severity, Instant from, Instant to,
+                         String cursor, String since, Integer limit) {
+    }
+    
+    private EventQuery toQuery(Filter filter) {
+        EventCursor after = later(decode(filter.cursor()), decode(filter.since()));
+        int limit = filter.limit() == null ? defaultLimit : Math.min(filter.limit(), maxLimit);
+        return new EventQuery(blankToNull(filter.service()), blankToNull(filter.metric()), blankToNull(filter.severity()),
+                filter.from(), filter.to(), after, limit);
+    }
+    
+    private static EventCursor decode(String token) {
+        return token == null || token.isBlank() ? null : EventCursor.decode(token);
+    }
+    
+    private static EventCursor later(EventCursor a, EventCursor b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+    
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.TelemetryEvent;
+
+/**
+ * Structural checks shared by the batch endpoints and the pipeline's validate stage.
+ * Each method returns {@code null} for a valid event, otherwise the reason it was rejected.
+ */
+final class EventValidation {
+    
+    private EventValidation() {
+    }
+    
+    static String validate(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            return validateTelemetry(telemetry);
+        }
+        if (event instanceof AlarmEvent alarm) {
+            return validateAlarm(alarm);
+        }
+        return "unsupported event type " + (event == null ? "null" : event.getClass().getSimpleName());
+    }
+    
+    static String validateTelemetry(TelemetryEvent event) {
+        if (event.getId() == null || event.getServiceName() == null || event.getMetricType() == null) {
+            return "id, serviceName and metricType are required";
+        }
+        if (event.getValue() != null && !Double.isFinite(event.getValue())) {
+            return "value must be a finite number";
+        }
+        return event.getTimestamp() == null ? "timestamp is required" : null;
+    }
+    
+    static String validateAlarm(AlarmEvent event) {
+        if (event.getId() == null || event.getServiceName() == null || event.getMetricType() == null) {
+            return "id, serviceName and metricType are required";
+        }
+        if (event.getSeverity() == null) {
+            return "severity is required";
+        }
+        return event.getTimestamp() == null ? "timestamp is required" : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ratip.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratip.model.Notification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends each notification as one JSON line to {@code ratip.notifications.file.path}; meant for
+ * local testing and for shipping with a log forwarder.
+ */
+@Component
+@ConditionalOnProperty(name = "ratip.notifications.file.path")
+public class FileNotificationSink implements NotificationSink {
+    
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    
+    public FileNotificationSink(ObjectMapper objectMapper,
+                                @Value("${ratip.notifications.file.path}") Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+    
+    @Override
+    public String name() {
+        return "file";
+    }
+    
+    @Override
+    public void deliver(Notification notification) throws IOException {
+        Files.writeString(path, objectMapper.writeValueAsString(notification) + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ratip.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratip.model.Notification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * POSTs each notification as JSON to {@code ratip.notifications.http.url}, e.g. a chat webhook
+ * or a local stub. A non-2xx response counts as a failed delivery.
+ */
+@Component
+@ConditionalOnProperty(name = "ratip.notifications.http.url")
+public class HttpNotificationSink implements NotificationSink {
+    
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    
+    public HttpNotificationSink(ObjectMapper objectMapper,
+                                @Value("${ratip.notifications.http.url}") URI url,
+                                @Value("${ratip.notifications.http.timeout:PT5S}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+    
+    @Override
+    public String name() {
+        return "http";
+    }
+    
+    @Override
+    public void deliver(Notification notification) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(notification)))
+                .build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Notification webhook returned " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while delivering notification", e);
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package com.ratip.service;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.DeadLetter;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.EventLog;
+import com.ratip.repository.MockDataRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous ingestion path: validate, normalize, dedupe, store, window, correlate. Each stage
+ * owns a bounded queue and a worker that drains it in micro-batches and hands survivors to the
+ * next stage, blocking when that stage is full. Back-pressure therefore propagates to
+ * {@link #submit}, which reports a full intake queue to the producer instead of blocking it.
+ * <p>
+ * The stages are replicated per shard ({@code ratip.pipeline.shards}, one per core by default)
+ * and {@link KeyPartitioner} routes each event to a shard by {@code serviceName}, so the events of
+ * one service keep their order. The stores, rollups, sliding window and correlators are single
+ * shared instances, each guarding its per-series state with its own monitor or map bin: shards
+ * working on different services seldom wait on the same lock, but no state has a single writer.
+ * Synchronous ingest through {@link IngestionService}, the parallel log replay and the
+ * {@link DependencyCorrelator}, which matches alarms across services, write the same state from
+ * other threads and rely on those locks. Queries read the shared stores without merging shards.
+ * <p>
+ * The window stage also scores telemetry with the {@link AnomalyDetector}; the alarms it raises
+ * are submitted like external ones, so they are journaled, stored and correlated the same way.
+ * Alarms are also matched across services by the {@link DependencyCorrelator}. Both stages run
+ * inside {@link CorrelationRecorder#batch}, so the correlations a batch yields are journaled in one
+ * append.
+ * <p>
+ * Failures are handled per event, so one bad event never takes the rest of its batch with it. An
+ * event that keeps failing in a stage is moved to the {@link DeadLetterStore} after
+ * {@code ratip.pipeline.max-attempts} tries in that stage, with an exponential backoff starting at
+ * {@code ratip.pipeline.retry-backoff} between tries, and can be replayed from there. A failed
+ * event waits out its backoff in its stage's retry queue while the worker carries on with other
+ * batches, so it falls behind events of its service submitted after it.
+ * <p>
+ * With the {@link EventLog} enabled, the store stage journals each batch before it reaches the
+ * in-memory stores, and startup replays the log into the stores, the sliding window and the
+ * correlator's open windows before the stages accept events.
+ */
+@Slf4j
+@Service
+public class IngestionPipeline {
+    
+    private final MockDataRepository repository;
+    private final EventLog eventLog;
+    private final TelemetryRollups rollups;
+    private final SlidingWindowAggregator windowAggregator;
+    private final AnomalyDetector anomalyDetector;
+    private final StreamingCorrelator streamingCorrelator;
+    private final DependencyCorrelator dependencyCorrelator;
+    private final DeadLetterStore deadLetters;
+    private final EventDeduplicator deduplicator;
+    private final LiveEventFeed liveFeed;
+    private final CorrelationRecorder correlationRecorder;
+    private final KeyPartitioner partitioner;
+    private final RatipMetrics metrics;
+    
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final int maxAttempts;
+    private final long retryBackoffNanos;
+    
+    private final List<Shard> shards = new ArrayList<>();
+    private final Counter rejectedCounter;
+    private final Timer endToEndTimer;
+    private volatile boolean running;
+    
+    public IngestionPipeline(MockDataRepository repository,
+                             EventLog eventLog,
+                             TelemetryRollups rollups,
+                             SlidingWindowAggregator windowAggregator,
+                             AnomalyDetector anomalyDetector,
+                             StreamingCorrelator streamingCorrelator,
+                             DependencyCorrelator dependencyCorrelator,
+                             DeadLetterStore deadLetters,
+                             EventDeduplicator deduplicator,
+                             LiveEventFeed liveFeed,
+                             CorrelationRecorder correlationRecorder,
+                             KeyPartitioner partitioner,
+                             RatipMetrics metrics,
+                             @Value("${ratip.pipeline.queue-capacity:10000}") int queueCapacity,
+                             @Value("${ratip.pipeline.max-batch:500}") int maxBatch,
+                             @Value("${ratip.pipeline.max-attempts:3}") int maxAttempts,
+                             @Value("${ratip.pipeline.retry-backoff:PT0.05S}") Duration retryBackoff) {
+        this.repository = repository;
+        this.eventLog = eventLog;
+        this.rollups = rollups;
+        this.windowAggregator = windowAggregator;
+        this.anomalyDetector = anomalyDetector;
+        this.streamingCorrelator = streamingCorrelator;
+        this.dependencyCorrelator = dependencyCorrelator;
+        this.deadLetters = deadLetters;
+        this.deduplicator = deduplicator;
+        this.liveFeed = liveFeed;
+        this.correlationRecorder = correlationRecorder;
+        this.partitioner = partitioner;
+        this.metrics = metrics;
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = maxBatch;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        this.rejectedCounter = metrics.counter("ratip.pipeline.rejected",
+                "Events refused at submit because the intake queue was full");
+        this.endToEndTimer = metrics.timer("ratip.pipeline.latency",
+                "Time from submit until an event leaves the last stage");
+        Gauge.builder("ratip.pipeline.dead.letters", deadLetters, DeadLetterStore::size)
+                .register(metrics.registry());
+    }
+    
+    @PostConstruct
+    public void start() {
+        if (eventLog.isEnabled()) {
+            recover();
+        }
+        for (int i = 0; i < partitioner.shards(); i++) {
+            shards.add(new Shard(i));
+        }
+        running = true;
+        shards.forEach(Shard::start);
+        log.info("Ingestion pipeline started with {} shards of {} stages (queue capacity {}, max batch {})",
+                shards.size(), shards.get(0).stages.size(), queueCapacity, maxBatch);
+    }
+    
+    private void recover() {
+        long started = System.nanoTime();
+        long replayed;
+        AnomalyDetector.Training training = anomalyDetector.startTraining();
+        try {
+            replayed = eventLog.replay(events -> restore(events, training));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Event log recovery failed", e);
+        }
+        training.finish();
+        log.info("Recovered {} events from the event log in {} ms", replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+    
+    /**
+     * Loads a chunk of journaled events back into memory. Called concurrently during recovery.
+     * Correlations are journaled as they are found and go straight back into the store; the
+     * correlator's windows are refilled without correlating, so nothing is emitted twice.
+     * Telemetry inside the raw retention is rolled up only if the store had not seen its id, so
+     * duplicate log entries count once; older telemetry cannot be checked that way and rebuilds
+     * the rollups as journaled. All telemetry goes to the anomaly {@code training}, which runs in
+     * event-time order once the replay is done, and only events inside the sliding window are fed
+     * to the dedup filters, which cover recent redeliveries rather than the whole history.
+     */
+    private void restore(List<Object> events, AnomalyDetector.Training training) {
+        Instant now = Instant.now();
+        Instant windowStart = now.minus(SlidingWindowAggregator.WINDOW_SIZE);
+        Instant rawStart = now.minus(repository.telemetryRetention());
+        List<TelemetryEvent> telemetry = new ArrayList<>(events.size());
+        List<TelemetryEvent> raw = new ArrayList<>(events.size());
+        List<TelemetryEvent> older = new ArrayList<>();
+        List<AlarmEvent> alarms = new ArrayList<>();
+        for (Object event : events) {
+            if (event instanceof TelemetryEvent telemetryEvent) {
+                telemetry.add(telemetryEvent);
+                if (!telemetryEvent.getTimestamp().isBefore(rawStart)) {
+                    raw.add(telemetryEvent);
+                } else {
+                    older.add(telemetryEvent);
+                }
+            } else if (event instanceof CorrelatedEvent correlation) {
+                repository.saveCorrelation(correlation);
+            } else {
+                alarms.add((AlarmEvent) event);
+            }
+        }
+        rollups.record(repository.saveTelemetryBatch(raw));
+        rollups.record(older);
+        repository.saveAlarmBatch(alarms);
+        for (TelemetryEvent event : telemetry) {
+            training.offer(event);
+            if (!event.getTimestamp().isBefore(windowStart)) {
+                windowAggregator.addEvent(event);
+                deduplicator.remember(event);
+            }
+            streamingCorrelator.restoreTelemetry(event);
+        }
+        for (AlarmEvent alarm : alarms) {
+            if (!alarm.getTimestamp().isBefore(windowStart)) {
+                deduplicator.remember(alarm);
+            }
+            streamingCorrelator.restoreAlarm(alarm);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            for (Stage stage : shard.stages) {
+                stage.worker.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+    }
+    
+    /**
+     * Non-blocking submit.
+     *
+     * @return false if the intake queue is full; the producer should back off and retry
+     */
+    public boolean submit(Object event) {
+        return offer(new Envelope(event, false, metrics.start()));
+    }
+    
+    /**
+     * Submit that waits up to {@code timeout} for intake capacity.
+     *
+     * @return false if the queue stayed full for the whole timeout
+     */
+    public boolean submit(Object event, Duration timeout) throws InterruptedException {
+        if (shardFor(event).intake().offer(new Envelope(event, false, metrics.start()), timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+    
+    /**
+     * Intake capacity summed over all shards; a single service can only use its own shard's share.
+     */
+    public int remainingCapacity() {
+        int remaining = 0;
+        for (Shard shard : shards) {
+            remaining += shard.intake().remainingCapacity();
+        }
+        return remaining;
+    }
+    
+    /**
+     * Queued events per stage, summed over all shards.
+     */
+    public Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            for (Stage stage : shard.stages) {
+                depths.merge(stage.name, stage.queue.size(), Integer::sum);
+            }
+        }
+        return depths;
+    }
+    
+    public int shardCount() {
+        return shards.size();
+    }
+    
+    /**
+     * Re-submits a dead-lettered event from the start of the pipeline.
+     *
+     * @return false if there is no such entry or the intake queue is full
+     */
+    public boolean replay(String deadLetterId) {
+        DeadLetter deadLetter = deadLetters.remove(deadLetterId);
+        if (deadLetter == null) {
+            return false;
+        }
+        if (!offer(new Envelope(deadLetter.getPayload(), true, metrics.start()))) {
+            deadLetters.add(deadLetter);
+            return false;
+        }
+        return true;
+    }
+    
+    public int replayAll() {
+        int replayed = 0;
+        for (DeadLetter deadLetter : deadLetters.drain()) {
+            if (offer(new Envelope(deadLetter.getPayload(), true, metrics.start()))) {
+                replayed++;
+            } else {
+                deadLetters.add(deadLetter);
+            }
+        }
+        return replayed;
+    }
+    
+    private boolean offer(Envelope envelope) {
+        if (shardFor(envelope.event).intake().offer(envelope)) {
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+    
+    private List<Envelope> validate(List<Envelope> batch) {
+        List<Envelope> valid = new ArrayList<>(batch.size());
+        for (Envelope envelope : batch) {
+            String error;
+            try {
+                error = EventValidation.validate(envelope.event);
+            } catch (Exception e) {
+                error = e.toString();
+            }
+            if (error == null) {
+                valid.add(envelope);
+            } else {
+                deadLetter(envelope, "validate", error);
+            }
+        }
+        return valid;
+    }
+    
+    private List<Envelope> normalize(List<Envelope> batch) {
+        List<Envelope> normalized = new ArrayList<>(batch.size());
+        for (Envelope envelope : batch) {
+            try {
+                if (envelope.event instanceof TelemetryEvent telemetry) {
+                    telemetry.setServiceName(telemetry.getServiceName().trim());
+                    telemetry.setMetricType(telemetry.getMetricType().trim());
+                    telemetry.setTimestamp(telemetry.getTimestamp().truncatedTo(ChronoUnit.MILLIS));
+                } else if (envelope.event instanceof AlarmEvent alarm) {
+                    alarm.setServiceName(alarm.getServiceName().trim());
+                    alarm.setMetricType(alarm.getMetricType().trim());
+                    alarm.setSeverity(alarm.getSeverity().trim().toUpperCase(Locale.ROOT));
+                    alarm.setTimestamp(alarm.getTimestamp().truncatedTo(ChronoUnit.MILLIS));
+                }
+                normalized.add(envelope);
+            } catch (Exception e) {
+                deadLetter(envelope, "normalize", e.toString());
+            }
+        }
+        return normalized;
+    }
+    
+    /**
+     * A failed filter lookup lets the event through: the stores are keyed by id, so a missed
+     * duplicate costs a redundant write rather than a lost event.
+     */
+    private List<Envelope> dedupe(List<Envelope> batch) {
+        List<Envelope> fresh = new ArrayList<>(batch.size());
+        for (Envelope envelope : batch) {
+            boolean duplicate;
+            try {
+                duplicate = !envelope.replayed && deduplicator.isDuplicate(envelope.event);
+            } catch (Exception e) {
+                log.warn("Dedup lookup failed for {}, passing it on", idOf(envelope.event), e);
+                duplicate = false;
+            }
+            if (!duplicate) {
+                fresh.add(envelope);
+            }
+        }
+        return fresh;
+    }
+    
+    private List<Envelope> store(List<Envelope> batch) {
+        if (eventLog.isEnabled()) {
+            try {
+                // Events back from a retry backoff were journaled on their first pass.
+                eventLog.append(batch.stream().filter(envelope -> !envelope.journaled).map(envelope -> envelope.event).toList());
+                for (Envelope envelope : batch) {
+                    envelope.journaled = true;
+                }
+            } catch (Exception e) {
+                log.error("Event log append failed for a batch of {}", batch.size(), e);
+                for (Envelope envelope : batch) {
+                    deadLetter(envelope, "store", e.toString());
+                }
+                return List.of();
+            }
+        }
+        
+        List<TelemetryEvent> telemetry = new ArrayList<>();
+        for (Envelope envelope : batch) {
+            if (envelope.event instanceof TelemetryEvent event) {
+                telemetry.add(event);
+            }
+        }
+        // Only points the raw store had not seen are rolled up, so redeliveries that got past the
+        // dedup filter and retried attempts are not counted twice.
+        List<TelemetryEvent> added;
+        try {
+            added = repository.saveTelemetryBatch(telemetry);
+        } catch (Exception e) {
+            log.warn("Bulk telemetry store failed, retrying events individually", e);
+            added = null;
+        }
+        boolean telemetryStored = added != null;
+        
+        List<Envelope> stored = new ArrayList<>(batch.size());
+        if (telemetryStored) {
+            try {
+                rollups.record(added);
+            } catch (Exception e) {
+                // The points are stored and journaled; the rollups are rebuilt from the log on restart.
+                log.error("Rollup of a stored batch of {} telemetry events failed", added.size(), e);
+            }
+        }
+        for (Envelope envelope : batch) {
+            boolean done;
+            if (envelope.event instanceof TelemetryEvent event) {
+                done = telemetryStored || attempt(envelope, "store", () -> {
+                    if (repository.saveTelemetry(event)) {
+                        rollups.record(List.of(event));
+                    }
+                });
+            } else {
+                done = attempt(envelope, "store", () -> repository.saveAlarm((AlarmEvent) envelope.event));
+            }
+            if (done) {
+                stored.add(envelope);
+            }
+        }
+        return stored;
+    }
+    
+    private List<Envelope> window(List<Envelope> batch) {
+        List<Envelope> windowed = new ArrayList<>(batch.size());
+        for (Envelope envelope : batch) {
+            if (!(envelope.event instanceof TelemetryEvent event)) {
+                windowed.add(envelope);
+            } else if (attempt(envelope, "window", () -> windowAggregator.addEvent(event))) {
+                windowed.add(envelope);
+                try {
+                    detectAnomaly(event);
+                } catch (Exception e) {
+                    log.warn("Anomaly scoring failed for {}", event.getId(), e);
+                }
+            }
+        }
+        return windowed;
+    }
+    
+    /**
+     * Never blocks: the alarm goes to this shard's own intake, which this worker may be holding
+     * up. If the intake is full the alarm is dropped and counted as rejected.
+     */
+    private void detectAnomaly(TelemetryEvent event) {
+        AlarmEvent alarm = anomalyDetector.observe(event);
+        if (alarm != null && !submit(alarm)) {
+            log.warn("Intake full, dropped anomaly alarm for {} {}", alarm.getServiceName(), alarm.getMetricType());
+        }
+    }
+    
+    private List<Envelope> correlate(List<Envelope> batch) {
+        long now = metrics.start();
+        for (Envelope envelope : batch) {
+            boolean done;
+            if (envelope.event instanceof TelemetryEvent telemetry) {
+                done = attempt(envelope, "correlate", () -> streamingCorrelator.ingestTelemetry(telemetry));
+            } else {
+                AlarmEvent alarm = (AlarmEvent) envelope.event;
+                done = attempt(envelope, "correlate", () -> {
+                    streamingCorrelator.ingestAlarm(alarm);
+                    dependencyCorrelator.ingestAlarm(alarm);
+                });
+                if (done) {
+                    try {
+                        liveFeed.publishAlarm(alarm);
+                    } catch (Exception e) {
+                        log.warn("Live feed push failed for alarm {}", alarm.getId(), e);
+                    }
+                }
+            }
+            if (done) {
+                metrics.stop(endToEndTimer, envelope.submittedNanos, now);
+            }
+        }
+        return List.of();
+    }
+    
+    /**
+     * Runs {@code action} for one envelope, retrying with exponential backoff. Attempts are
+     * counted per stage, so failures in earlier stages do not use up this stage's tries.
+     */
+    /**
+     * Runs one try of {@code action}. On failure the envelope is dead-lettered once it has used up
+     * its tries in this stage, or else marked for its stage's worker to retry after the backoff.
+     *
+     * @return true if the action succeeded
+     */
+    private boolean attempt(Envelope envelope, String stage, Runnable action) {
+        try {
+            action.run();
+            return true;
+        } catch (Exception e) {
+            envelope.attempts++;
+            if (envelope.attempts >= maxAttempts) {
+                deadLetter(envelope, stage, e.toString());
+                return false;
+            }
+            log.debug("Stage {} failed for {} (attempt {}), retrying", stage, idOf(envelope.event), envelope.attempts);
+            envelope.retryAtNanos = System.nanoTime() + (retryBackoffNanos << Math.min(envelope.attempts - 1, 10));
+            envelope.retryPending = true;
+            return false;
+        }
+    }
+    
+    private void deadLetter(Envelope envelope, String stage, String reason) {
+        deadLetters.add(DeadLetter.builder()
+                .id(UUID.randomUUID().toString())
+                .eventType(envelope.event == null ? "null" : envelope.event.getClass().getSimpleName())
+                .payload(envelope.event)
+                .stage(stage)
+                .reason(reason)
+                .attempts(envelope.attempts)
+                .failedAt(Instant.now())
+                .build());
+    }
+    
+    private Shard shardFor(Object event) {
+        return shards.get(partitioner.shardOf(serviceNameOf(event)));
+    }
+    
+    private static String serviceNameOf(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            return telemetry.getServiceName();
+        }
+        return event instanceof AlarmEvent alarm ? alarm.getServiceName() : null;
+    }
+    
+    private static String idOf(Object event) {
+        if (event instanceof TelemetryEvent telemetry) {
+            return telemetry.getId();
+        }
+        return event instanceof AlarmEvent alarm ? alarm.getId() : null;
+    }
+    
+    private static final class Envelope {
+        private final Object event;
+        private final boolean replayed;
+        private final long submittedNanos;
+        /** Failed tries in the current stage. */
+        private int attempts;
+        private boolean journaled;
+        private boolean retryPending;
+        private long retryAtNanos;
+        
+        Envelope(Object event, boolean replayed, long submittedNanos) {
+            this.event = event;
+            this.replayed = replayed;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+    
+    private interface StageHandler {
+        List<Envelope> process(List<Envelope> batch);
+    }
+    
+    /**
+     * One full chain of stages, fed with the events of the services routed to it.
+     */
+    private final class Shard {
+        
+        private final List<Stage> stages = new ArrayList<>();
+        
+        Shard(int index) {
+            String shard = String.valueOf(index);
+            stages.add(new Stage("validate", shard, IngestionPipeline.this::validate));
+            stages.add(new Stage("normalize", shard, IngestionPipeline.this::normalize));
+            stages.add(new Stage("dedupe", shard, IngestionPipeline.this::dedupe));
+            stages.add(new Stage("store", shard, IngestionPipeline.this::store));
+            stages.add(new Stage("window", shard, batch -> correlationRecorder.batch(() -> window(batch))));
+            stages.add(new Stage("correlate", shard, batch -> correlationRecorder.batch(() -> correlate(batch))));
+            for (int i = 0; i < stages.size() - 1; i++) {
+                stages.get(i).next = stages.get(i + 1);
+                stages.get(i + 1).previous = stages.get(i);
+            }
+        }
+        
+        BlockingQueue<Envelope> intake() {
+            return stages.get(0).queue;
+        }
+        
+        void start() {
+            stages.forEach(Stage::start);
+        }
+    }
+    
+    private final class Stage {
+        
+        private final String name;
+        private final StageHandler handler;
+        private final BlockingQueue<Envelope> queue;
+        private final Counter processed;
+        /** Envelopes waiting out a retry backoff, only touched by the worker. */
+        private final PriorityQueue<Envelope> retries =
+                new PriorityQueue<>(Comparator.comparingLong((Envelope envelope) -> envelope.retryAtNanos));
+        private final Thread worker;
+        private Stage previous;
+        private Stage next;
+        
+        Stage(String name, String shard, StageHandler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.processed = metrics.counter("ratip.pipeline.events", "Events that entered a pipeline stage",
+                    "stage", name, "shard", shard);
+            Gauge.builder("ratip.pipeline.queue.depth", queue, BlockingQueue::size)
+                    .tags("stage", name, "shard", shard)
+                    .register(metrics.registry());
+            this.worker = new Thread(this::run, "ratip-pipeline-" + shard + "-" + name);
+            this.worker.setDaemon(true);
+        }
+        
+        void start() {
+            worker.start();
+        }
+        
+        private void run() {
+            List<Envelope> batch = new ArrayList<>(maxBatch);
+            while (running || !queue.isEmpty() || !retries.isEmpty() || (previous != null && previous.worker.isAlive())) {
+                try {
+                    Envelope first = queue.poll(pollNanos(), TimeUnit.NANOSECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, maxBatch - 1);
+                    }
+                    addDueRetries(batch);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                    processed.increment(batch.size());
+                    
+                    List<Envelope> survivors = handler.process(batch);
+                    scheduleRetries(batch);
+                    if (next != null) {
+                        for (Envelope envelope : survivors) {
+                            envelope.attempts = 0;
+                            next.queue.put(envelope);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    // Handlers settle every envelope on their own, so this is a handler bug; the
+                    // batch is logged rather than dead-lettered since part of it may be applied.
+                    log.error("Pipeline stage {} failed on a batch of {}", name, batch.size(), e);
+                    scheduleRetries(batch);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+        
+        /**
+         * How long to wait for new events: until the next retry is due, and not at all once the
+         * pipeline is stopping, when pending retries are run without their backoff.
+         */
+        private long pollNanos() {
+            Envelope retry = retries.peek();
+            long wait = TimeUnit.MILLISECONDS.toNanos(100);
+            if (retry == null) {
+                return wait;
+            }
+            return running ? Math.max(0, Math.min(wait, retry.retryAtNanos - System.nanoTime())) : 0;
+        }
+        
+        private void addDueRetries(List<Envelope> batch) {
+            long now = System.nanoTime();
+            while (batch.size() < maxBatch && !retries.isEmpty()
+                    && (!running || retries.peek().retryAtNanos - now <= 0)) {
+                batch.add(retries.poll());
+            }
+        }
+        
+        private void scheduleRetries(List<Envelope> batch) {
+            for (Envelope envelope : batch) {
+                if (envelope.retryPending) {
+                    envelope.retryPending = false;
+                    retries.add(envelope);
+                }
+            }
+        }
+    }
+}
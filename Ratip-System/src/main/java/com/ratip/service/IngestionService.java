@@ -0,0 +1,37 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.MockDataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Synchronous ingest for callers that want an event's correlations back inline: persists it, feeds
+ * the sliding window and runs it through the streaming correlator, which notifies
+ * {@link CorrelationListener}s of any match. The HTTP endpoints go through {@link IngestionPipeline}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionService {
+    
+    private final MockDataRepository repository;
+    private final SlidingWindowAggregator windowAggregator;
+    private final StreamingCorrelator streamingCorrelator;
+    
+    public List<CorrelatedEvent> ingestTelemetry(TelemetryEvent event) {
+        repository.saveTelemetry(event);
+        windowAggregator.addEvent(event);
+        return streamingCorrelator.ingestTelemetry(event);
+    }
+    
+    public List<CorrelatedEvent> ingestAlarm(AlarmEvent event) {
+        repository.saveAlarm(event);
+        return streamingCorrelator.ingestAlarm(event);
+    }
+}
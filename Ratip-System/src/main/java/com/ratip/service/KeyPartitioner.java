@@ -0,0 +1,79 @@
+package com.ratip.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps a {@code serviceName} to one of {@value #PARTITIONS} fixed partitions, and partitions to
+ * nodes and to the local processing shards. The pipeline runs all of a service's events through
+ * the one shard that owns its partition, which keeps them in order and keeps shards mostly on
+ * different series; the state they write is still shared and lock-guarded, see
+ * {@link IngestionPipeline}.
+ * <p>
+ * The partition count never changes, and the hash only depends on the name, so every node
+ * computes the same partition for a key. With {@code ratip.partition.node-count} nodes, node
+ * {@code i} owns the partitions {@code p} with {@code p % node-count == i}; a router in front of
+ * the nodes can use {@link #ownerOf} to send each service to its owner.
+ */
+@Component
+public class KeyPartitioner {
+    
+    public static final int PARTITIONS = 4096;
+    
+    private final int nodeCount;
+    private final int nodeIndex;
+    private final int shards;
+    
+    public KeyPartitioner(@Value("${ratip.partition.node-count:1}") int nodeCount,
+                          @Value("${ratip.partition.node-index:0}") int nodeIndex,
+                          @Value("${ratip.pipeline.shards:0}") int shards) {
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount) {
+            throw new IllegalArgumentException("Invalid partition node " + nodeIndex + " of " + nodeCount);
+        }
+        this.nodeCount = nodeCount;
+        this.nodeIndex = nodeIndex;
+        this.shards = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Murmur3's 32-bit finalizer over {@link String#hashCode}, which the language specification
+     * fixes, so partitions agree across JVMs.
+     */
+    public int partitionOf(String serviceName) {
+        int h = serviceName == null ? 0 : serviceName.trim().hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (PARTITIONS - 1);
+    }
+    
+    public int ownerOf(String serviceName) {
+        return partitionOf(serviceName) % nodeCount;
+    }
+    
+    public boolean isLocal(String serviceName) {
+        return ownerOf(serviceName) == nodeIndex;
+    }
+    
+    /**
+     * Local shard for a service. Only the partitions this node owns are spread over the shards,
+     * so they stay evenly loaded whatever the node count.
+     */
+    public int shardOf(String serviceName) {
+        return (partitionOf(serviceName) / nodeCount) % shards;
+    }
+    
+    public int shards() {
+        return shards;
+    }
+    
+    public int nodeCount() {
+        return nodeCount;
+    }
+    
+    public int nodeIndex() {
+        return nodeIndex;
+    }
+}
@@ -0,0 +1,203 @@
+package com.ratip.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events push channel for the dashboard. Alarms and correlations are pushed as they
+ * leave the ingestion pipeline, and per-service window aggregates on a fixed interval.
+ * <p>
+ * Each payload is serialized once into an SSE frame that is shared by every subscriber. A
+ * subscriber has its own bounded frame buffer drained by its own sender task, so a slow client
+ * only blocks its own writes; once its buffer overflows it is disconnected, and the client is
+ * expected to reconnect and backfill through the {@code since} watermark of the query endpoints.
+ */
+@Slf4j
+@Service
+public class LiveEventFeed implements CorrelationListener {
+    
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("keepalive").build();
+    
+    private final ObjectMapper objectMapper;
+    private final SlidingWindowAggregator windowAggregator;
+    private final int bufferCapacity;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ratip-feed-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong frameIds = new AtomicLong();
+    private final Counter evictedCounter;
+    
+    public LiveEventFeed(ObjectMapper objectMapper,
+                         SlidingWindowAggregator windowAggregator,
+                         MeterRegistry meterRegistry,
+                         @Value("${ratip.feed.buffer-capacity:1024}") int bufferCapacity,
+                         @Value("${ratip.feed.max-subscribers:256}") int maxSubscribers,
+                         @Value("${ratip.feed.timeout:PT30M}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.windowAggregator = windowAggregator;
+        this.bufferCapacity = bufferCapacity;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeout.toMillis();
+        this.evictedCounter = Counter.builder("ratip.feed.evicted")
+                .description("Subscribers disconnected because their send buffer overflowed")
+                .register(meterRegistry);
+        Gauge.builder("ratip.feed.subscribers", subscribers, List::size)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * @return the new subscriber's emitter, or empty if {@code ratip.feed.max-subscribers} are
+     *         already connected
+     */
+    public Optional<SseEmitter> subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscribers.add(subscriber);
+        subscriber.offer(HEARTBEAT);
+        log.debug("Feed subscriber connected ({} total)", subscribers.size());
+        return Optional.of(emitter);
+    }
+    
+    public void publishAlarm(AlarmEvent alarm) {
+        publish("alarm", alarm);
+    }
+    
+    @Override
+    public void onCorrelation(CorrelatedEvent correlation) {
+        publish("correlation", correlation);
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.feed.aggregate-interval:PT5S}")
+    public void publishAggregates() {
+        if (!subscribers.isEmpty()) {
+            publish("aggregates", windowAggregator.getStatsInWindow());
+        }
+    }
+    
+    /**
+     * Keeps idle connections open through proxies and notices clients that went away silently.
+     */
+    @Scheduled(fixedDelayString = "${ratip.feed.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        broadcast(HEARTBEAT);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+    
+    private void publish(String type, Object payload) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize {} for the live feed", type, e);
+            return;
+        }
+        broadcast(SseEmitter.event()
+                .id(Long.toString(frameIds.incrementAndGet()))
+                .name(type)
+                .data(json)
+                .build());
+    }
+    
+    private void broadcast(Set<DataWithMediaType> frame) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+    
+    private final class Subscriber {
+        
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<DataWithMediaType>> buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        void offer(Set<DataWithMediaType> frame) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(frame)) {
+                evictedCounter.increment();
+                log.info("Disconnecting slow feed subscriber after {} buffered frames", bufferCapacity);
+                close();
+                // complete() waits for the emitter's monitor, which a blocked send may be holding
+                senders.execute(emitter::complete);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            try {
+                Set<DataWithMediaType> frame;
+                while (!closed && (frame = buffer.poll()) != null) {
+                    emitter.send(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Feed subscriber went away: {}", e.toString());
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+        
+        void close() {
+            closed = true;
+            buffer.clear();
+            subscribers.remove(this);
+        }
+    }
+}
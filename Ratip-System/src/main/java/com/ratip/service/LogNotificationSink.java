@@ -0,0 +1,27 @@
+package com.ratip.service;
+
+import com.ratip.model.Notification;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes notifications to the application log; on unless {@code ratip.notifications.log.enabled}
+ * is false.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ratip.notifications.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LogNotificationSink implements NotificationSink {
+    
+    @Override
+    public String name() {
+        return "log";
+    }
+    
+    @Override
+    public void deliver(Notification notification) {
+        log.info("📧 Notification sent: {}", notification.getSubject());
+        log.debug("Notification message:\n{}", notification.getMessage());
+    }
+}
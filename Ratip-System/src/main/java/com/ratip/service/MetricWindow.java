@@ -0,0 +1,192 @@
+package com.ratip.service;
+
+import com.ratip.model.WindowStats;
+
+import java.time.Instant;
+
+/**
+ * Running aggregates for one {@code (serviceName, metricType)} series over a sliding window,
+ * kept as a ring of fixed-width panes. Totals are updated on every add and corrected by
+ * subtracting a pane when it leaves the window, so reads never revisit individual events.
+ * The window covers whole panes: it may include up to one pane width of extra history.
+ * <p>
+ * Points more than one pane ahead of the clock and non-finite values are ignored; either would
+ * otherwise stay in the totals, and a future pane would also push current points out of its slot.
+ */
+public final class MetricWindow {
+    
+    private final String serviceName;
+    private final String metricType;
+    private final long paneMillis;
+    private final long windowMillis;
+    private final Pane[] panes;
+    
+    private final QuantileSketch totalSketch = new QuantileSketch();
+    private long totalCount;
+    private double totalSum;
+    private double totalMin = Double.NaN;
+    private double totalMax = Double.NaN;
+    private long oldestLivePane = Long.MIN_VALUE;
+    
+    MetricWindow(String serviceName, String metricType, long windowMillis, long paneMillis) {
+        this.serviceName = serviceName;
+        this.metricType = metricType;
+        this.paneMillis = paneMillis;
+        this.windowMillis = windowMillis;
+        this.panes = new Pane[(int) (windowMillis / paneMillis) + 1];
+        for (int i = 0; i < panes.length; i++) {
+            panes[i] = new Pane();
+        }
+    }
+    
+    synchronized void add(long timestampMillis, double value, long nowMillis) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        expire(nowMillis);
+        long paneId = Math.floorDiv(timestampMillis, paneMillis);
+        if (paneId < oldestLivePane || paneId > Math.floorDiv(nowMillis, paneMillis) + 1) {
+            return;
+        }
+        Pane pane = panes[(int) Math.floorMod(paneId, (long) panes.length)];
+        if (pane.id != paneId) {
+            if (pane.id > paneId) {
+                return;
+            }
+            boolean retired = retire(pane);
+            pane.id = paneId;
+            if (retired) {
+                recomputeExtremes();
+            }
+        }
+        
+        pane.count++;
+        pane.sum += value;
+        pane.min = Math.min(pane.min, value);
+        pane.max = Math.max(pane.max, value);
+        pane.sketch.add(value);
+        
+        totalCount++;
+        totalSum += value;
+        totalMin = Double.isNaN(totalMin) ? value : Math.min(totalMin, value);
+        totalMax = Double.isNaN(totalMax) ? value : Math.max(totalMax, value);
+        totalSketch.add(value);
+    }
+    
+    public String getServiceName() {
+        return serviceName;
+    }
+    
+    public String getMetricType() {
+        return metricType;
+    }
+    
+    public synchronized long count() {
+        expire(System.currentTimeMillis());
+        return totalCount;
+    }
+    
+    public synchronized double sum() {
+        expire(System.currentTimeMillis());
+        return totalSum;
+    }
+    
+    public synchronized double mean() {
+        expire(System.currentTimeMillis());
+        return totalCount == 0 ? Double.NaN : totalSum / totalCount;
+    }
+    
+    public synchronized double min() {
+        expire(System.currentTimeMillis());
+        return totalMin;
+    }
+    
+    public synchronized double max() {
+        expire(System.currentTimeMillis());
+        return totalMax;
+    }
+    
+    public synchronized double quantile(double q) {
+        expire(System.currentTimeMillis());
+        return totalSketch.quantile(q);
+    }
+    
+    public synchronized WindowStats snapshot() {
+        long now = System.currentTimeMillis();
+        expire(now);
+        return WindowStats.builder()
+                .serviceName(serviceName)
+                .metricType(metricType)
+                .windowStart(Instant.ofEpochMilli(oldestLivePane * paneMillis))
+                .windowEnd(Instant.ofEpochMilli(now))
+                .count(totalCount)
+                .sum(totalSum)
+                .mean(totalCount == 0 ? null : totalSum / totalCount)
+                .min(totalCount == 0 ? null : totalMin)
+                .max(totalCount == 0 ? null : totalMax)
+                .p50(totalCount == 0 ? null : totalSketch.quantile(0.50))
+                .p95(totalCount == 0 ? null : totalSketch.quantile(0.95))
+                .p99(totalCount == 0 ? null : totalSketch.quantile(0.99))
+                .build();
+    }
+    
+    private void expire(long nowMillis) {
+        long oldestLive = Math.floorDiv(nowMillis - windowMillis, paneMillis);
+        if (oldestLive <= oldestLivePane) {
+            return;
+        }
+        oldestLivePane = oldestLive;
+        boolean retired = false;
+        for (Pane pane : panes) {
+            if (pane.id < oldestLive) {
+                retired |= retire(pane);
+            }
+        }
+        if (retired) {
+            recomputeExtremes();
+        }
+    }
+    
+    private boolean retire(Pane pane) {
+        if (pane.count == 0) {
+            return false;
+        }
+        totalCount -= pane.count;
+        totalSum -= pane.sum;
+        totalSketch.subtract(pane.sketch);
+        pane.reset();
+        return true;
+    }
+    
+    private void recomputeExtremes() {
+        totalMin = Double.NaN;
+        totalMax = Double.NaN;
+        if (totalCount == 0) {
+            totalSum = 0;
+            return;
+        }
+        for (Pane pane : panes) {
+            if (pane.count > 0) {
+                totalMin = Double.isNaN(totalMin) ? pane.min : Math.min(totalMin, pane.min);
+                totalMax = Double.isNaN(totalMax) ? pane.max : Math.max(totalMax, pane.max);
+            }
+        }
+    }
+    
+    private static final class Pane {
+        private long id = Long.MIN_VALUE;
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final QuantileSketch sketch = new QuantileSketch();
+        
+        void reset() {
+            count = 0;
+            sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            sketch.clear();
+        }
+    }
+}
@@ -1,26 +1,232 @@
 package com.ratip.service;
 
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
 import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous notification dispatcher. Correlations are deduplicated on the ingesting thread:
+ * after one is let through for a {@code (service, metric, severity)} key, the rest for that key
+ * are only counted until {@code ratip.notifications.suppression-window} has passed, and the count
+ * is reported with the next notification for the key.
+ * <p>
+ * Survivors wait in one of two bounded lanes drained by a single dispatcher thread. CRITICAL
+ * correlations are sent as soon as the dispatcher sees them; everything else is rolled into a
+ * digest once {@code batch-size} are waiting or the oldest has waited {@code batch-delay}.
+ * Messages are only built on the dispatcher thread and go to every {@link NotificationSink}.
+ * Each sink's meters are registered up front, so a dispatch only looks them up.
+ */
 @Slf4j
 @Service
-public class NotificationService {
+public class NotificationService implements CorrelationListener {
+    
+    private static final String CRITICAL = "CRITICAL";
+    
+    private final List<NotificationSink> sinks;
+    private final RatipMetrics metrics;
+    private final List<SinkMeters> sinkMeters;
+    private final long suppressionMillis;
+    private final int batchSize;
+    private final long batchDelayNanos;
+    
+    private final Map<String, SuppressionState> suppression = new ConcurrentHashMap<>();
+    private final BlockingQueue<Pending> criticalLane;
+    private final BlockingQueue<Pending> digestLane;
+    private final Counter suppressedCounter;
+    private final Counter droppedCounter;
+    private final Thread dispatcher;
+    private volatile boolean running;
+    
+    public NotificationService(List<NotificationSink> sinks,
+                               RatipMetrics metrics,
+                               @Value("${ratip.notifications.suppression-window:PT5M}") Duration suppressionWindow,
+                               @Value("${ratip.notifications.batch-size:50}") int batchSize,
+                               @Value("${ratip.notifications.batch-delay:PT30S}") Duration batchDelay,
+                               @Value("${ratip.notifications.queue-capacity:10000}") int queueCapacity) {
+        this.sinks = sinks;
+        this.metrics = metrics;
+        this.sinkMeters = sinks.stream().map(sink -> new SinkMeters(sink, metrics)).toList();
+        this.suppressionMillis = suppressionWindow.toMillis();
+        this.batchSize = batchSize;
+        this.batchDelayNanos = batchDelay.toNanos();
+        this.criticalLane = new ArrayBlockingQueue<>(queueCapacity);
+        this.digestLane = new ArrayBlockingQueue<>(queueCapacity);
+        this.suppressedCounter = metrics.counter("ratip.notifications.suppressed",
+                "Correlations not notified because their key was inside its suppression window");
+        this.droppedCounter = metrics.counter("ratip.notifications.dropped",
+                "Correlations dropped because their notification lane was full");
+        Gauge.builder("ratip.notifications.queue.depth", criticalLane, BlockingQueue::size)
+                .tag("lane", "critical")
+                .register(metrics.registry());
+        Gauge.builder("ratip.notifications.queue.depth", digestLane, BlockingQueue::size)
+                .tag("lane", "digest")
+                .register(metrics.registry());
+        this.dispatcher = new Thread(this::run, "ratip-notifications");
+        this.dispatcher.setDaemon(true);
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        dispatcher.start();
+        log.info("Notification dispatcher started with sinks {}", sinks.stream().map(NotificationSink::name).toList());
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    
+    @Override
+    public void onCorrelation(CorrelatedEvent correlation) {
+        String severity = correlation.getAlarm() == null ? null : correlation.getAlarm().getSeverity();
+        SuppressionState state = suppression.computeIfAbsent(suppressionKey(correlation), key -> new SuppressionState());
+        if (!state.tryOpen(System.currentTimeMillis(), suppressionMillis)) {
+            state.suppressed.incrementAndGet();
+            suppressedCounter.increment();
+            return;
+        }
+        Pending pending = new Pending(correlation, state.suppressed.getAndSet(0), System.nanoTime());
+        if (!(CRITICAL.equals(severity) ? criticalLane : digestLane).offer(pending)) {
+            droppedCounter.increment();
+        }
+    }
+    
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !criticalLane.isEmpty() || !digestLane.isEmpty()) {
+            try {
+                Pending urgent = criticalLane.poll(100, TimeUnit.MILLISECONDS);
+                if (urgent != null) {
+                    batch.add(urgent);
+                    criticalLane.drainTo(batch, batchSize - 1);
+                    dispatch("critical", batch);
+                    batch.clear();
+                }
+                Pending oldest = digestLane.peek();
+                if (oldest != null && (!running || digestLane.size() >= batchSize
+                        || System.nanoTime() - oldest.enqueuedNanos >= batchDelayNanos)) {
+                    digestLane.drainTo(batch, batchSize);
+                    dispatch("digest", batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Notification dispatch failed for {} correlations", batch.size(), e);
+                batch.clear();
+            }
+        }
+    }
+    
+    private void dispatch(String lane, List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Notification notification = batch.size() == 1 ? single(lane, batch.get(0)) : digest(lane, batch);
+        long oldestNanos = batch.stream().mapToLong(Pending::enqueuedNanos).min().orElseThrow();
+        for (SinkMeters meters : sinkMeters) {
+            boolean delivered = true;
+            long sendStart = metrics.start();
+            try {
+                meters.sink.deliver(notification);
+            } catch (Exception e) {
+                delivered = false;
+                log.warn("Notification sink {} failed: {}", meters.sink.name(), e.toString());
+            }
+            (delivered ? meters.delivered : meters.failed).increment();
+            metrics.stop(delivered ? meters.sendSucceeded : meters.sendFailed, sendStart);
+            metrics.stop("critical".equals(lane) ? meters.criticalLatency : meters.digestLatency, oldestNanos);
+        }
+    }
+    
+    private Notification single(String lane, Pending pending) {
+        CorrelatedEvent correlation = pending.correlation;
+        StringBuilder message = new StringBuilder(buildNotificationMessage(correlation));
+        if (pending.suppressedBefore > 0) {
+            message.append("\n").append(pending.suppressedBefore)
+                    .append(" similar correlations were suppressed since the previous notification.\n");
+        }
+        return Notification.builder()
+                .id(UUID.randomUUID().toString())
+                .lane(lane)
+                .subject(headline(correlation))
+                .message(message.toString())
+                .correlationCount(1)
+                .suppressedCount(pending.suppressedBefore)
+                .createdAt(Instant.now())
+                .build();
+    }
     
-    public void sendNotification(CorrelatedEvent correlation) {
-        try {
-            String message = buildNotificationMessage(correlation);
-            
-            log.info("📧 Notification sent for correlation: {} (Confidence: {}%)", 
-                    correlation.getDescription(), 
-                    String.format("%.1f", correlation.getConfidenceScore() * 100));
-            
-            log.debug("Notification message:\n{}", message);
-            
-        } catch (Exception e) {
-            log.error("Error sending notification", e);
+    private Notification digest(String lane, List<Pending> batch) {
+        StringBuilder message = new StringBuilder();
+        message.append("RATIP Correlation Digest\n\n");
+        TreeSet<String> services = new TreeSet<>();
+        long suppressed = 0;
+        for (Pending pending : batch) {
+            CorrelatedEvent correlation = pending.correlation;
+            if (correlation.getAlarm() != null) {
+                services.add(correlation.getAlarm().getServiceName());
+            }
+            suppressed += pending.suppressedBefore;
+            message.append("- ").append(headline(correlation))
+                    .append(" (Confidence: ").append(String.format("%.1f%%", correlation.getConfidenceScore() * 100)).append(')');
+            if (pending.suppressedBefore > 0) {
+                message.append(", +").append(pending.suppressedBefore).append(" suppressed");
+            }
+            message.append('\n');
         }
+        return Notification.builder()
+                .id(UUID.randomUUID().toString())
+                .lane(lane)
+                .subject(batch.size() + " correlations across " + services.size() + " services"
+                        + (suppressed > 0 ? " (+" + suppressed + " suppressed)" : ""))
+                .message(message.toString())
+                .correlationCount(batch.size())
+                .suppressedCount(suppressed)
+                .createdAt(Instant.now())
+                .build();
+    }
+    
+    private static String suppressionKey(CorrelatedEvent correlation) {
+        AlarmEvent alarm = correlation.getAlarm();
+        if (alarm == null) {
+            return String.valueOf(correlation.getCorrelationType());
+        }
+        return alarm.getServiceName() + "#" + alarm.getMetricType() + "#" + alarm.getSeverity();
+    }
+    
+    private static String headline(CorrelatedEvent correlation) {
+        AlarmEvent alarm = correlation.getAlarm();
+        if (alarm == null) {
+            return correlation.getDescription();
+        }
+        return "[" + alarm.getSeverity() + "] " + alarm.getServiceName() + " " + alarm.getMetricType()
+                + ": " + correlation.getDescription();
     }
     
     private String buildNotificationMessage(CorrelatedEvent correlation) {
@@ -50,4 +256,65 @@ public class NotificationService {
         
         return sb.toString();
     }
+    
+    private static final class SuppressionState {
+        
+        private final AtomicLong lastSentAt = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong suppressed = new AtomicLong();
+        
+        /**
+         * Claims the key's next notification if its suppression window has passed.
+         */
+        boolean tryOpen(long nowMillis, long windowMillis) {
+            while (true) {
+                long previous = lastSentAt.get();
+                if (previous != Long.MIN_VALUE && nowMillis - previous < windowMillis) {
+                    return false;
+                }
+                if (lastSentAt.compareAndSet(previous, nowMillis)) {
+                    return true;
+                }
+            }
+        }
+    }
+    
+    private record Pending(CorrelatedEvent correlation, long suppressedBefore, long enqueuedNanos) {
+    }
+    
+    private static final class SinkMeters {
+        
+        private final NotificationSink sink;
+        private final Counter delivered;
+        private final Counter failed;
+        private final Timer sendSucceeded;
+        private final Timer sendFailed;
+        private final Timer criticalLatency;
+        private final Timer digestLatency;
+        
+        SinkMeters(NotificationSink sink, RatipMetrics metrics) {
+            this.sink = sink;
+            this.delivered = deliveries(metrics, sink, "success");
+            this.failed = deliveries(metrics, sink, "failure");
+            this.sendSucceeded = send(metrics, sink, "success");
+            this.sendFailed = send(metrics, sink, "failure");
+            this.criticalLatency = latency(metrics, sink, "critical");
+            this.digestLatency = latency(metrics, sink, "digest");
+        }
+        
+        private static Counter deliveries(RatipMetrics metrics, NotificationSink sink, String outcome) {
+            return metrics.counter("ratip.notifications.delivered", "Notifications handed to a sink, by outcome",
+                    "sink", sink.name(), "outcome", outcome);
+        }
+        
+        private static Timer send(RatipMetrics metrics, NotificationSink sink, String outcome) {
+            return metrics.timer("ratip.notifications.send", "Time a sink takes to deliver one notification",
+                    "sink", sink.name(), "outcome", outcome);
+        }
+        
+        private static Timer latency(RatipMetrics metrics, NotificationSink sink, String lane) {
+            return metrics.timer("ratip.notifications.delivery.latency",
+                    "Time from a correlation being queued until a sink has its notification",
+                    "lane", lane, "sink", sink.name());
+        }
+    }
 }
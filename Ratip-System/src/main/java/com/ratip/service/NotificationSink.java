@@ -0,0 +1,16 @@
+package com.ratip.service;
+
+import com.ratip.model.Notification;
+
+import java.io.IOException;
+
+/**
+ * Destination for notifications leaving the {@link NotificationService}. Every sink bean in the
+ * context receives every notification, one at a time, on the dispatcher thread.
+ */
+public interface NotificationSink {
+    
+    String name();
+    
+    void deliver(Notification notification) throws IOException;
+}
@@ -0,0 +1,173 @@
+package com.ratip.service;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees: values are counted in logarithmic
+ * buckets of ratio {@code (1 + a) / (1 - a)}, so any reported quantile is within {@code a} of the
+ * true value. Because the state is just bucket counts, sketches can be added and subtracted, which
+ * is what lets sliding windows retire whole panes without rescanning.
+ * <p>
+ * Not thread-safe; callers guard access.
+ */
+public final class QuantileSketch {
+    
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+    
+    private final double gamma;
+    private final double logGamma;
+    
+    private final BucketStore positive = new BucketStore();
+    private final BucketStore negative = new BucketStore();
+    private long zeroCount;
+    
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+    
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+    
+    public void add(double value) {
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+    }
+    
+    public void merge(QuantileSketch other) {
+        checkCompatible(other);
+        positive.addAll(other.positive, 1);
+        negative.addAll(other.negative, 1);
+        zeroCount += other.zeroCount;
+    }
+    
+    /**
+     * Removes counts previously merged from {@code other}. Only valid if every value in
+     * {@code other} was also added to this sketch.
+     */
+    public void subtract(QuantileSketch other) {
+        checkCompatible(other);
+        positive.addAll(other.positive, -1);
+        negative.addAll(other.negative, -1);
+        zeroCount -= other.zeroCount;
+    }
+    
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+    }
+    
+    public long count() {
+        return positive.total + negative.total + zeroCount;
+    }
+    
+    /**
+     * @return the estimated {@code q}-quantile, or {@code NaN} if the sketch is empty
+     */
+    public double quantile(double q) {
+        long count = count();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, q)) * (count - 1));
+        
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -value(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return value(positive.offset + i);
+            }
+        }
+        return value(positive.offset + positive.counts.length - 1);
+    }
+    
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+    
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+    
+    private void checkCompatible(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot combine sketches with different accuracy");
+        }
+    }
+    
+    /**
+     * Dense counts for a contiguous range of bucket indexes, grown on demand.
+     */
+    private static final class BucketStore {
+        
+        private static final int[] EMPTY = new int[0];
+        
+        private int[] counts = EMPTY;
+        private int offset;
+        private long total;
+        
+        void add(int index, int delta) {
+            ensureCovers(index);
+            counts[index - offset] += delta;
+            total += delta;
+        }
+        
+        void addAll(BucketStore other, int sign) {
+            if (other.total == 0) {
+                return;
+            }
+            ensureCovers(other.offset);
+            ensureCovers(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += sign * other.counts[i];
+            }
+            total += sign * other.total;
+        }
+        
+        void clear() {
+            Arrays.fill(counts, 0);
+            total = 0;
+        }
+        
+        private void ensureCovers(int index) {
+            if (counts.length == 0) {
+                counts = new int[32];
+                offset = index - 16;
+                return;
+            }
+            if (index >= offset && index < offset + counts.length) {
+                return;
+            }
+            int newLow = Math.min(offset, index);
+            int newHigh = Math.max(offset + counts.length - 1, index);
+            int length = Math.max(newHigh - newLow + 1, counts.length * 2);
+            int newOffset = index < offset ? newHigh - length + 1 : newLow;
+            int[] grown = new int[length];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+            counts = grown;
+            offset = newOffset;
+        }
+    }
+}
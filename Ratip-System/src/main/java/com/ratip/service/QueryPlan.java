@@ -0,0 +1,52 @@
+package com.ratip.service;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Structured form of a natural-language question, produced by {@link QueryPlanner}. Empty
+ * {@code services}, {@code metrics} or {@code severities} match everything; the time range is
+ * {@code [from, to)} and {@code period} describes it for answers ("in the last 1 hour").
+ * <p>
+ * An open-ended plan has no {@code target}; its filters only narrow the context that is handed to
+ * the LLM.
+ */
+public record QueryPlan(Target target,
+                        Aggregate aggregate,
+                        GroupBy groupBy,
+                        int topK,
+                        boolean ascending,
+                        Instant from,
+                        Instant to,
+                        String period,
+                        Set<String> services,
+                        Set<String> metrics,
+                        Set<String> severities,
+                        boolean openEnded) {
+    
+    public enum Target { ALARMS, CORRELATIONS, TELEMETRY }
+    
+    public enum Aggregate {
+        COUNT(Double.NaN), MEAN(Double.NaN), MIN(Double.NaN), MAX(Double.NaN), P50(0.50), P95(0.95), P99(0.99);
+        
+        final double quantile;
+        
+        Aggregate(double quantile) {
+            this.quantile = quantile;
+        }
+    }
+    
+    public enum GroupBy { NONE, SERVICE, METRIC, SEVERITY }
+    
+    boolean admitsService(String serviceName) {
+        return services.isEmpty() || services.contains(serviceName);
+    }
+    
+    boolean admitsMetric(String metricType) {
+        return metrics.isEmpty() || metrics.contains(metricType);
+    }
+    
+    boolean admitsSeverity(String severity) {
+        return severities.isEmpty() || severities.contains(severity);
+    }
+}
@@ -0,0 +1,326 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.repository.MockDataRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Runs {@link QueryPlan}s against the store. Structured plans are answered outright; for
+ * open-ended plans this produces the pre-aggregated digest and the matching correlations that the
+ * LLM is given instead of raw events.
+ * <p>
+ * Every read goes through the per-series range lookups, so the cost follows the number of events
+ * in the plan's range and filters rather than everything retained. Telemetry statistics come from
+ * {@link TelemetryRollups}, which reads pre-aggregated buckets for all but the edges of a range.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryPlanExecutor {
+    
+    private static final int DIGEST_ROWS = 10;
+    
+    private final MockDataRepository repository;
+    private final TelemetryRollups rollups;
+    
+    /**
+     * @return a plain-text answer to a structured plan
+     */
+    public String answer(QueryPlan plan) {
+        Map<String, Stats> groups = switch (plan.target()) {
+            case ALARMS -> alarmGroups(plan, alarm -> group(plan.groupBy(), alarm));
+            case CORRELATIONS -> correlationGroups(plan);
+            case TELEMETRY -> telemetryGroups(plan, plan.aggregate().quantile >= 0,
+                    (service, metric) -> telemetryGroup(plan, service, metric));
+        };
+        return render(plan, groups);
+    }
+    
+    /**
+     * Alarm counts per service and severity and per-series telemetry statistics for the plan's
+     * range and filters, largest first and at most {@value #DIGEST_ROWS} rows each.
+     */
+    public String digest(QueryPlan plan) {
+        StringBuilder digest = new StringBuilder();
+        
+        Map<String, Map<String, Stats>> alarms = new TreeMap<>();
+        alarmGroups(plan, alarm -> alarm.getServiceName() + '\n' + alarm.getSeverity()).forEach((key, stats) -> {
+            int split = key.indexOf('\n');
+            alarms.computeIfAbsent(key.substring(0, split), service -> new TreeMap<>()).put(key.substring(split + 1), stats);
+        });
+        digest.append("Alarms ").append(plan.period()).append(" by service and severity:\n");
+        if (alarms.isEmpty()) {
+            digest.append("- none\n");
+        }
+        alarms.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Map<String, Stats>> entry) -> -total(entry.getValue()))
+                        .thenComparing(Map.Entry::getKey))
+                .limit(DIGEST_ROWS)
+                .forEach(entry -> {
+                    digest.append("- ").append(entry.getKey()).append(':');
+                    entry.getValue().forEach((severity, stats) -> digest.append(' ').append(severity).append(' ').append(stats.count));
+                    digest.append('\n');
+                });
+        
+        Map<String, Stats> series = telemetryGroups(plan, true, (service, metric) -> service + " " + metric);
+        digest.append("\nTelemetry ").append(plan.period()).append(" by series:\n");
+        if (series.isEmpty()) {
+            digest.append("- none\n");
+        }
+        rankedBy(series, QueryPlan.Aggregate.COUNT, false).stream()
+                .limit(DIGEST_ROWS)
+                .forEach(entry -> digest.append(String.format(Locale.ROOT, "- %s: %d points, mean %.2f, p95 %.2f, max %.2f\n",
+                        entry.getKey(), entry.getValue().count, entry.getValue().value(QueryPlan.Aggregate.MEAN),
+                        entry.getValue().value(QueryPlan.Aggregate.P95), entry.getValue().max)));
+        return digest.toString();
+    }
+    
+    /**
+     * Every correlation found in the plan's range that matches its service, metric and severity
+     * filters, for the prompt context to rank. The canned samples stand in only while the store
+     * holds no correlations at all; once it does, filters that match nothing give an empty list.
+     */
+    public List<CorrelatedEvent> correlations(QueryPlan plan) {
+        List<CorrelatedEvent> matching = new ArrayList<>();
+        for (String service : services(plan)) {
+            for (CorrelatedEvent correlation : repository.getCorrelationsByServiceAndTime(service, plan.from(), plan.to())) {
+                AlarmEvent alarm = correlation.getAlarm();
+                if (plan.admitsMetric(alarm.getMetricType()) && plan.admitsSeverity(alarm.getSeverity())) {
+                    matching.add(correlation);
+                }
+            }
+        }
+        return matching.isEmpty() && repository.correlationCount() == 0
+                ? repository.getCorrelations(plan.from(), plan.to())
+                : matching;
+    }
+    
+    private Map<String, Stats> alarmGroups(QueryPlan plan, Function<AlarmEvent, String> groupFn) {
+        Map<String, Stats> groups = new HashMap<>();
+        for (String service : services(plan)) {
+            String severity = plan.severities().size() == 1 ? plan.severities().iterator().next() : null;
+            for (AlarmEvent alarm : repository.getAlarmsByServiceAndTime(service, severity, plan.from(), plan.to())) {
+                if (plan.admitsMetric(alarm.getMetricType()) && plan.admitsSeverity(alarm.getSeverity())) {
+                    groups.computeIfAbsent(groupFn.apply(alarm), key -> new Stats(false)).add(0);
+                }
+            }
+        }
+        return groups;
+    }
+    
+    private Map<String, Stats> correlationGroups(QueryPlan plan) {
+        Map<String, Stats> groups = new HashMap<>();
+        for (String service : services(plan)) {
+            for (CorrelatedEvent correlation : repository.getCorrelationsByServiceAndTime(service, plan.from(), plan.to())) {
+                AlarmEvent alarm = correlation.getAlarm();
+                if (plan.admitsMetric(alarm.getMetricType()) && plan.admitsSeverity(alarm.getSeverity())) {
+                    groups.computeIfAbsent(group(plan.groupBy(), alarm), key -> new Stats(false)).add(0);
+                }
+            }
+        }
+        return groups;
+    }
+    
+    private Map<String, Stats> telemetryGroups(QueryPlan plan, boolean quantiles, SeriesGrouping grouping) {
+        Map<String, Stats> groups = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : rollups.metricsByService().entrySet()) {
+            if (!plan.admitsService(entry.getKey())) {
+                continue;
+            }
+            for (String metric : entry.getValue()) {
+                if (!plan.admitsMetric(metric)) {
+                    continue;
+                }
+                Stats stats = new Stats(quantiles);
+                rollups.aggregate(entry.getKey(), metric, plan.from(), plan.to(), stats);
+                if (stats.count > 0) {
+                    groups.merge(grouping.group(entry.getKey(), metric), stats, Stats::combine);
+                }
+            }
+        }
+        return groups;
+    }
+    
+    /**
+     * Services named by the plan, or every service known to the store or the rollups, which reach
+     * further back than raw telemetry.
+     */
+    private List<String> services(QueryPlan plan) {
+        if (!plan.services().isEmpty()) {
+            return new ArrayList<>(plan.services());
+        }
+        Set<String> services = new TreeSet<>(repository.metricsByService().keySet());
+        services.addAll(rollups.metricsByService().keySet());
+        return new ArrayList<>(services);
+    }
+    
+    private static String group(QueryPlan.GroupBy groupBy, AlarmEvent alarm) {
+        return switch (groupBy) {
+            case SERVICE -> alarm.getServiceName();
+            case METRIC -> alarm.getMetricType();
+            case SEVERITY -> alarm.getSeverity();
+            case NONE -> "";
+        };
+    }
+    
+    /**
+     * Averages and quantiles of different metrics are not comparable, so unless the plan names a
+     * single metric each metric stays its own group.
+     */
+    private static String telemetryGroup(QueryPlan plan, String service, String metric) {
+        boolean separateMetrics = plan.aggregate() != QueryPlan.Aggregate.COUNT && plan.metrics().size() != 1;
+        return switch (plan.groupBy()) {
+            case SERVICE -> separateMetrics ? service + " " + metric : service;
+            case METRIC -> metric;
+            case SEVERITY, NONE -> separateMetrics ? metric : "";
+        };
+    }
+    
+    private static String render(QueryPlan plan, Map<String, Stats> groups) {
+        String subject = subject(plan);
+        if (groups.isEmpty()) {
+            return "No " + subject + " " + plan.period() + ".";
+        }
+        boolean counting = plan.aggregate() == QueryPlan.Aggregate.COUNT;
+        if (groups.size() == 1 && groups.containsKey("")) {
+            Stats stats = groups.get("");
+            if (counting) {
+                return stats.count + " " + subject + " " + plan.period() + ".";
+            }
+            return String.format(Locale.ROOT, "%s %s: %.2f (over %d points).",
+                    capitalize(subject), plan.period(), stats.value(plan.aggregate()), stats.count);
+        }
+        
+        List<Map.Entry<String, Stats>> ranked = plan.groupBy() == QueryPlan.GroupBy.NONE && !counting
+                ? new ArrayList<>(new TreeMap<>(groups).entrySet())
+                : rankedBy(groups, plan.aggregate(), plan.ascending());
+        StringBuilder answer = new StringBuilder(capitalize(subject));
+        if (plan.groupBy() != QueryPlan.GroupBy.NONE) {
+            answer.append(" by ").append(plan.groupBy().name().toLowerCase(Locale.ROOT));
+        }
+        answer.append(" ").append(plan.period()).append(":\n");
+        int shown = Math.min(plan.topK(), ranked.size());
+        for (int i = 0; i < shown; i++) {
+            Stats stats = ranked.get(i).getValue();
+            answer.append(i + 1).append(". ").append(ranked.get(i).getKey()).append(": ");
+            answer.append(counting ? Long.toString(stats.count)
+                    : String.format(Locale.ROOT, "%.2f (%d points)", stats.value(plan.aggregate()), stats.count));
+            answer.append('\n');
+        }
+        if (ranked.size() > shown) {
+            answer.append("... and ").append(ranked.size() - shown).append(" more\n");
+        }
+        return answer.toString().trim();
+    }
+    
+    private static String subject(QueryPlan plan) {
+        StringBuilder subject = new StringBuilder();
+        switch (plan.target()) {
+            case ALARMS -> {
+                plan.severities().forEach(severity -> subject.append(severity).append(' '));
+                subject.append("alarms");
+            }
+            case CORRELATIONS -> {
+                plan.severities().forEach(severity -> subject.append(severity).append(' '));
+                subject.append("correlations");
+            }
+            case TELEMETRY -> {
+                if (plan.aggregate() == QueryPlan.Aggregate.COUNT) {
+                    subject.append("telemetry points");
+                } else {
+                    subject.append(plan.aggregate().name().toLowerCase(Locale.ROOT)).append(' ')
+                            .append(plan.metrics().isEmpty() ? "value" : String.join(", ", plan.metrics()));
+                }
+            }
+        }
+        if (!plan.services().isEmpty()) {
+            subject.append(" for ").append(String.join(", ", plan.services()));
+        }
+        if (!plan.metrics().isEmpty() && plan.aggregate() == QueryPlan.Aggregate.COUNT) {
+            subject.append(" on ").append(String.join(", ", plan.metrics()));
+        }
+        return subject.toString();
+    }
+    
+    private static List<Map.Entry<String, Stats>> rankedBy(Map<String, Stats> groups, QueryPlan.Aggregate aggregate, boolean ascending) {
+        Comparator<Map.Entry<String, Stats>> byValue = Comparator.comparingDouble(entry -> entry.getValue().value(aggregate));
+        List<Map.Entry<String, Stats>> ranked = new ArrayList<>(groups.entrySet());
+        ranked.sort((ascending ? byValue : byValue.reversed()).thenComparing(Map.Entry::getKey));
+        return ranked;
+    }
+    
+    private static long total(Map<String, Stats> bySeverity) {
+        return bySeverity.values().stream().mapToLong(stats -> stats.count).sum();
+    }
+    
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+    
+    @FunctionalInterface
+    private interface SeriesGrouping {
+        String group(String serviceName, String metricType);
+    }
+    
+    private static final class Stats implements TelemetryRollups.Accumulator {
+        
+        private final QuantileSketch sketch;
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        
+        Stats(boolean quantiles) {
+            this.sketch = quantiles ? new QuantileSketch() : null;
+        }
+        
+        @Override
+        public void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (sketch != null) {
+                sketch.add(value);
+            }
+        }
+        
+        @Override
+        public void merge(long count, double sum, double min, double max, QuantileSketch sketch) {
+            this.count += count;
+            this.sum += sum;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            if (this.sketch != null && sketch != null) {
+                this.sketch.merge(sketch);
+            }
+        }
+        
+        Stats combine(Stats other) {
+            merge(other.count, other.sum, other.min, other.max, other.sketch);
+            return this;
+        }
+        
+        double value(QueryPlan.Aggregate aggregate) {
+            return switch (aggregate) {
+                case COUNT -> count;
+                case MEAN -> sum / count;
+                case MIN -> min;
+                case MAX -> max;
+                case P50, P95, P99 -> sketch.quantile(aggregate.quantile);
+            };
+        }
+    }
+}
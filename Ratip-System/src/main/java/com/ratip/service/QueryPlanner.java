@@ -0,0 +1,214 @@
+package com.ratip.service;
+
+import com.ratip.repository.MockDataRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a dashboard question into a {@link QueryPlan}. Parsing is keyword based: the time range,
+ * target (alarms, correlations or telemetry), aggregate, grouping and top-k come from fixed
+ * phrases, while services, metrics and severities are recognised by matching the question against
+ * the names currently held in the store and the rollups, so no list has to be maintained here.
+ * <p>
+ * Questions asking for explanation or advice ("why", "root cause", "what should we do") and
+ * anything without a recognisable target and aggregate are marked open-ended.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryPlanner {
+    
+    static final int DEFAULT_TOP_K = 5;
+    private static final Duration DEFAULT_RANGE = Duration.ofHours(2);
+    
+    private static final Pattern LAST_PERIOD = Pattern.compile(
+            "\\b(?:last|past|previous)\\s+(?:(\\d+)\\s*)?(minute|min|hour|hr|day|week)s?\\b");
+    private static final Pattern PERIOD = Pattern.compile("\\b(\\d+)\\s*(minute|min|hour|hr|day|week)s?\\b");
+    private static final Pattern OPEN_ENDED = Pattern.compile(
+            "\\b(?:why|explain\\w*|caus\\w*|root|recommend\\w*|suggest\\w*|should|fix\\w*|investigat\\w*|summar\\w*"
+                    + "|insight\\w*|analy\\w*|happen\\w*|wrong|trend\\w*|impact\\w*|mitigat\\w*|remediat\\w*|how (?:do|can|to))\\b");
+    private static final Pattern COUNTING = Pattern.compile(
+            "\\b(?:how many|number of|count|most|top|fewest|least|busiest|noisiest)\\b");
+    private static final Pattern GROUP_BY = Pattern.compile(
+            "\\b(?:by|per|each|which|what|top(?:\\s+\\d+)?|most)\\s+(service|metric|severit)");
+    private static final Pattern TOP_K = Pattern.compile("\\btop\\s+(\\d+)\\b|\\b(\\d+)\\s+(?:most|busiest|noisiest|worst)\\b");
+    private static final Pattern ASCENDING = Pattern.compile("\\b(?:least|fewest|lowest)\\b");
+    
+    private final MockDataRepository repository;
+    private final TelemetryRollups rollups;
+    
+    public QueryPlan plan(String query) {
+        return plan(query, Instant.now());
+    }
+    
+    QueryPlan plan(String query, Instant now) {
+        String text = words(query);
+        
+        Map<String, Set<String>> metricsByService = repository.metricsByService();
+        rollups.metricsByService().forEach((service, metrics) ->
+                metricsByService.computeIfAbsent(service, name -> new TreeSet<>()).addAll(metrics));
+        Set<String> knownMetrics = new TreeSet<>();
+        metricsByService.values().forEach(knownMetrics::addAll);
+        Set<String> services = mentioned(text, metricsByService.keySet());
+        Set<String> metrics = mentioned(text, knownMetrics);
+        Set<String> severities = mentioned(text, repository.severities());
+        
+        Instant from;
+        Instant to = now;
+        String period;
+        // The matched period is cut out before the aggregate is read, so the "min" in "last 30 min"
+        // is taken as minutes rather than as a minimum.
+        String measured = text;
+        Matcher last = LAST_PERIOD.matcher(text);
+        Matcher span = PERIOD.matcher(text);
+        if (last.find()) {
+            Duration range = duration(last.group(1), last.group(2));
+            from = now.minus(range);
+            period = "in the last " + describe(range);
+            measured = text.substring(0, last.start()) + text.substring(last.end());
+        } else if (span.find()) {
+            Duration range = duration(span.group(1), span.group(2));
+            from = now.minus(range);
+            period = "in the last " + describe(range);
+            measured = text.substring(0, span.start()) + text.substring(span.end());
+        } else if (text.contains(" yesterday ")) {
+            to = now.truncatedTo(ChronoUnit.DAYS);
+            from = to.minus(Duration.ofDays(1));
+            period = "yesterday (UTC)";
+        } else if (text.contains(" today ")) {
+            from = now.truncatedTo(ChronoUnit.DAYS);
+            period = "today (UTC)";
+        } else {
+            from = now.minus(DEFAULT_RANGE);
+            period = "in the last " + describe(DEFAULT_RANGE);
+        }
+        
+        QueryPlan.Aggregate aggregate = aggregate(measured);
+        QueryPlan.Target target = target(text, aggregate, metrics);
+        if (target != QueryPlan.Target.TELEMETRY) {
+            aggregate = QueryPlan.Aggregate.COUNT;
+        }
+        QueryPlan.GroupBy groupBy = groupBy(text);
+        boolean structured = target != null
+                && (COUNTING.matcher(text).find() || groupBy != QueryPlan.GroupBy.NONE
+                        || target == QueryPlan.Target.TELEMETRY && aggregate != QueryPlan.Aggregate.COUNT);
+        boolean openEnded = !structured || OPEN_ENDED.matcher(text).find();
+        
+        return new QueryPlan(openEnded ? null : target, aggregate, groupBy, topK(text), ASCENDING.matcher(text).find()
+                && aggregate != QueryPlan.Aggregate.MIN, from, to, period, services, metrics, severities, openEnded);
+    }
+    
+    private static QueryPlan.Target target(String text, QueryPlan.Aggregate aggregate, Set<String> metrics) {
+        if (text.contains(" correlat")) {
+            return QueryPlan.Target.CORRELATIONS;
+        }
+        if (text.matches(".* (?:alarm|alert|incident)s? .*")) {
+            return QueryPlan.Target.ALARMS;
+        }
+        if (aggregate != QueryPlan.Aggregate.COUNT || !metrics.isEmpty()
+                || text.matches(".* (?:telemetry|datapoints?|data points?|samples?|readings?) .*")) {
+            return QueryPlan.Target.TELEMETRY;
+        }
+        return null;
+    }
+    
+    private static QueryPlan.Aggregate aggregate(String text) {
+        if (text.contains(" p99 ")) {
+            return QueryPlan.Aggregate.P99;
+        }
+        if (text.contains(" p95 ")) {
+            return QueryPlan.Aggregate.P95;
+        }
+        if (text.matches(".* (?:p50|median) .*")) {
+            return QueryPlan.Aggregate.P50;
+        }
+        if (text.matches(".* (?:avg|average|mean) .*")) {
+            return QueryPlan.Aggregate.MEAN;
+        }
+        if (text.matches(".* (?:max|maximum|peak|highest) .*")) {
+            return QueryPlan.Aggregate.MAX;
+        }
+        if (text.matches(".* (?:min|minimum|lowest) .*")) {
+            return QueryPlan.Aggregate.MIN;
+        }
+        return QueryPlan.Aggregate.COUNT;
+    }
+    
+    private static QueryPlan.GroupBy groupBy(String text) {
+        Matcher matcher = GROUP_BY.matcher(text);
+        if (!matcher.find()) {
+            return QueryPlan.GroupBy.NONE;
+        }
+        return switch (matcher.group(1)) {
+            case "service" -> QueryPlan.GroupBy.SERVICE;
+            case "metric" -> QueryPlan.GroupBy.METRIC;
+            default -> QueryPlan.GroupBy.SEVERITY;
+        };
+    }
+    
+    private static int topK(String text) {
+        Matcher matcher = TOP_K.matcher(text);
+        if (!matcher.find()) {
+            return DEFAULT_TOP_K;
+        }
+        int k = Integer.parseInt(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        return Math.max(1, k);
+    }
+    
+    private static Duration duration(String amount, String unit) {
+        long n = amount == null ? 1 : Long.parseLong(amount);
+        return switch (unit) {
+            case "minute", "min" -> Duration.ofMinutes(n);
+            case "hour", "hr" -> Duration.ofHours(n);
+            case "day" -> Duration.ofDays(n);
+            default -> Duration.ofDays(7 * n);
+        };
+    }
+    
+    static String describe(Duration range) {
+        if (range.toDays() >= 2 && range.toHours() % 24 == 0) {
+            return plural(range.toDays(), "day");
+        }
+        if (range.toHours() >= 1 && range.toMinutes() % 60 == 0) {
+            return plural(range.toHours(), "hour");
+        }
+        return plural(range.toMinutes(), "minute");
+    }
+    
+    private static String plural(long n, String unit) {
+        return n + " " + unit + (n == 1 ? "" : "s");
+    }
+    
+    /**
+     * Names whose word form occurs in {@code text} as whole words, so "api gateway" finds
+     * {@code api-gateway}, "api latency" finds {@code API_Latency} and short names such as
+     * {@code db} or {@code sqs} match without "db" matching inside "dynamodb".
+     */
+    private static Set<String> mentioned(String text, Collection<String> names) {
+        Set<String> found = new TreeSet<>();
+        for (String name : names) {
+            String form = words(name);
+            if (!form.isBlank() && text.contains(form)) {
+                found.add(name);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Lower-cased words separated and surrounded by single spaces.
+     */
+    private static String words(String text) {
+        return " " + text.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim() + " ";
+    }
+}
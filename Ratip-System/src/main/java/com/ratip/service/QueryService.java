@@ -1,57 +1,87 @@
 package com.ratip.service;
 
 import com.ratip.ai.ChatGptClient;
-import com.ratip.model.CorrelatedEvent;
-import com.ratip.repository.MockDataRepository;
-import lombok.RequiredArgsConstructor;
+import com.ratip.config.RatipMetrics;
+import io.micrometer.core.instrument.Counter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+/**
+ * Answers dashboard questions. Each question is planned first: aggregate lookups are answered
+ * from the store directly, and only open-ended questions go to the LLM, with pre-aggregated
+ * statistics and the matching correlations as context.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class QueryService {
     
-    private final MockDataRepository repository;
-    private final EventCorrelator correlator;
+    private final QueryPlanner planner;
+    private final QueryPlanExecutor executor;
     private final ChatGptClient chatGptClient;
+    private final Counter llmRoute;
+    private final Counter storeRoute;
     
-    public String processQuery(String userQuery) {
+    public QueryService(QueryPlanner planner, QueryPlanExecutor executor, ChatGptClient chatGptClient,
+                        RatipMetrics metrics) {
+        this.planner = planner;
+        this.executor = executor;
+        this.chatGptClient = chatGptClient;
+        this.llmRoute = routeCounter(metrics, "llm");
+        this.storeRoute = routeCounter(metrics, "store");
+    }
+    
+    public CompletableFuture<String> processQuery(String userQuery) {
         try {
             log.info("Processing query: {}", userQuery);
             
-            Duration timeRange = extractTimeRange(userQuery);
-            Instant endTime = Instant.now();
-            Instant startTime = endTime.minus(timeRange);
-            
-            List<CorrelatedEvent> correlations = repository.getCorrelations(startTime, endTime);
+            QueryPlan plan = planner.plan(userQuery);
+            if (!plan.openEnded()) {
+                return CompletableFuture.completedFuture(answerFromStore(plan));
+            }
             
-            String response = chatGptClient.summarizeEvents(correlations, userQuery);
-            
-            log.info("Query processed successfully");
-            return response;
+            llmRoute.increment();
+            return chatGptClient.summarizeEvents(executor.digest(plan), executor.correlations(plan), userQuery)
+                    .thenApply(response -> {
+                        log.info("Query processed successfully");
+                        return response;
+                    });
             
         } catch (Exception e) {
             log.error("Error processing query", e);
-            return "Error processing your query: " + e.getMessage();
+            return CompletableFuture.completedFuture("Error processing your query: " + e.getMessage());
         }
     }
     
-    private Duration extractTimeRange(String query) {
-        String lowerQuery = query.toLowerCase();
+    /**
+     * Streaming variant of {@link #processQuery}; see {@link ChatGptClient#streamSummary}. Answers
+     * from the store arrive as a single chunk.
+     */
+    public CompletableFuture<String> streamQuery(String userQuery, Consumer<String> onDelta) {
+        log.info("Streaming query: {}", userQuery);
         
-        if (lowerQuery.contains("hour") || lowerQuery.contains("last hour")) {
-            return Duration.ofHours(1);
-        } else if (lowerQuery.contains("24 hours") || lowerQuery.contains("day")) {
-            return Duration.ofDays(1);
-        } else if (lowerQuery.contains("week")) {
-            return Duration.ofDays(7);
-        } else {
-            return Duration.ofHours(2);
+        QueryPlan plan = planner.plan(userQuery);
+        if (!plan.openEnded()) {
+            String answer = answerFromStore(plan);
+            onDelta.accept(answer);
+            return CompletableFuture.completedFuture(answer);
         }
+        
+        llmRoute.increment();
+        return chatGptClient.streamSummary(executor.digest(plan), executor.correlations(plan), userQuery, onDelta);
+    }
+    
+    private String answerFromStore(QueryPlan plan) {
+        storeRoute.increment();
+        String answer = executor.answer(plan);
+        log.info("Answered {} {} query from the store", plan.target(), plan.aggregate());
+        return answer;
+    }
+    
+    private static Counter routeCounter(RatipMetrics metrics, String route) {
+        return metrics.counter("ratip.query.routed", "Questions answered from the store or sent to the LLM",
+                "route", route);
     }
 }
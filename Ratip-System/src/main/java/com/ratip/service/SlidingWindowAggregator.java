@@ -1,41 +1,334 @@
 package com.ratip.service;
 
 import com.ratip.model.TelemetryEvent;
+import com.ratip.model.WindowStats;
+import com.ratip.repository.StringDictionary;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * 15-minute sliding window of telemetry, sharded per service. Each shard is a ring of one-minute
+ * buckets; a bucket is recycled as a whole once it falls out of the window, so expiry never scans
+ * individual events. Appends are lock-free apart from a shared per-ring read lock and allocate
+ * only when a bucket chunk fills up; chunks hold points as primitive, dictionary-encoded columns
+ * and hand out {@link TelemetryEvent} views.
+ * <p>
+ * Alongside the raw events each shard maintains a {@link MetricWindow} per metric, so count, sum,
+ * mean, min, max and quantiles are available without copying the window.
+ * <p>
+ * A bucket otherwise only expires when its slot is reused, so a periodic sweep clears expired
+ * buckets, drops metric windows that have emptied and removes the rings of services that have
+ * stopped reporting.
+ */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SlidingWindowAggregator {
     
-    private final ConcurrentLinkedQueue<TelemetryEvent> eventWindow = new ConcurrentLinkedQueue<>();
-    private static final Duration WINDOW_SIZE = Duration.ofMinutes(15);
+    static final Duration WINDOW_SIZE = Duration.ofMinutes(15);
+    private static final long BUCKET_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final int SLOTS = (int) (WINDOW_SIZE.toMillis() / BUCKET_MILLIS) + 1;
+    private static final int CHUNK_SIZE = 256;
     
+    private final StringDictionary dictionary;
+    private final Map<String, ServiceRing> shards = new ConcurrentHashMap<>();
+    
+    /**
+     * Adds a point to its service's ring. A point stamped more than one bucket ahead of the local
+     * clock is dropped: it would take over its slot and push every current point that maps there
+     * out as too old until the clock catches up.
+     */
     public void addEvent(TelemetryEvent event) {
-        eventWindow.offer(event);
-        cleanOldEvents();
+        if (bucketOf(event.getTimestamp()) > bucketOf(Instant.now()) + 1) {
+            log.debug("Dropped telemetry {} stamped ahead of the sliding window", event.getId());
+            return;
+        }
+        while (true) {
+            ServiceRing ring = shards.computeIfAbsent(event.getServiceName(), k -> new ServiceRing(k, dictionary));
+            Lock appending = ring.lock.readLock();
+            appending.lock();
+            try {
+                if (ring.retired) {
+                    continue;
+                }
+                ring.add(event);
+                if (event.getValue() != null) {
+                    ring.metricWindow(event.getMetricType())
+                            .add(event.getTimestamp().toEpochMilli(), event.getValue(), System.currentTimeMillis());
+                }
+                return;
+            } finally {
+                appending.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Clears buckets that have left the window, drops metric windows with nothing left in them and
+     * retires rings that end up empty. A ring is only swept while no append holds it, so appends
+     * never land in a ring that has just been removed.
+     */
+    @Scheduled(fixedDelayString = "${ratip.window.idle-sweep-interval:PT1M}")
+    public void evictIdle() {
+        long oldestLive = bucketOf(Instant.now().minus(WINDOW_SIZE));
+        int retired = 0;
+        for (ServiceRing ring : shards.values()) {
+            Lock sweeping = ring.lock.writeLock();
+            if (!sweeping.tryLock()) {
+                continue;
+            }
+            try {
+                if (ring.sweep(oldestLive)) {
+                    ring.retired = true;
+                    shards.remove(ring.serviceName, ring);
+                    retired++;
+                }
+            } finally {
+                sweeping.unlock();
+            }
+        }
+        if (retired > 0) {
+            log.debug("Retired {} idle service windows", retired);
+        }
     }
     
     public List<TelemetryEvent> getEventsInWindow() {
-        cleanOldEvents();
-        return new ArrayList<>(eventWindow);
+        Instant cutoffTime = Instant.now().minus(WINDOW_SIZE);
+        List<TelemetryEvent> events = new ArrayList<>();
+        for (ServiceRing ring : shards.values()) {
+            ring.collect(cutoffTime, events);
+        }
+        return events;
     }
     
     public List<TelemetryEvent> getEventsByService(String serviceName) {
-        cleanOldEvents();
-        return eventWindow.stream()
-                .filter(event -> event.getServiceName().equals(serviceName))
-                .toList();
+        ServiceRing ring = shards.get(serviceName);
+        if (ring == null) {
+            return List.of();
+        }
+        List<TelemetryEvent> events = new ArrayList<>();
+        ring.collect(Instant.now().minus(WINDOW_SIZE), events);
+        return events;
     }
     
-    private void cleanOldEvents() {
-        Instant cutoffTime = Instant.now().minus(WINDOW_SIZE);
-        eventWindow.removeIf(event -> event.getTimestamp().isBefore(cutoffTime));
+    /**
+     * Live aggregates for one series; reads on the returned window are O(1) and allocation-free.
+     *
+     * @return the series window, or {@code null} if the series has never been seen
+     */
+    public MetricWindow getMetricWindow(String serviceName, String metricType) {
+        ServiceRing ring = shards.get(serviceName);
+        return ring == null ? null : ring.metrics.get(metricType);
+    }
+    
+    public List<WindowStats> getStatsByService(String serviceName) {
+        ServiceRing ring = shards.get(serviceName);
+        if (ring == null) {
+            return List.of();
+        }
+        List<WindowStats> stats = new ArrayList<>();
+        for (MetricWindow window : ring.metrics.values()) {
+            WindowStats snapshot = window.snapshot();
+            if (snapshot.getCount() > 0) {
+                stats.add(snapshot);
+            }
+        }
+        return stats;
+    }
+    
+    /**
+     * Telemetry points with a value currently inside the window, across all series.
+     */
+    public long windowSize() {
+        long size = 0;
+        for (ServiceRing ring : shards.values()) {
+            for (MetricWindow window : ring.metrics.values()) {
+                size += window.count();
+            }
+        }
+        return size;
+    }
+    
+    public List<WindowStats> getStatsInWindow() {
+        List<WindowStats> stats = new ArrayList<>();
+        for (String serviceName : shards.keySet()) {
+            stats.addAll(getStatsByService(serviceName));
+        }
+        return stats;
+    }
+    
+    private static long bucketOf(Instant timestamp) {
+        return Math.floorDiv(timestamp.toEpochMilli(), BUCKET_MILLIS);
+    }
+    
+    private static final class ServiceRing {
+        
+        private final String serviceName;
+        private final StringDictionary dictionary;
+        private final AtomicReferenceArray<Bucket> slots = new AtomicReferenceArray<>(SLOTS);
+        private final Map<String, MetricWindow> metrics = new ConcurrentHashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean retired;
+        
+        ServiceRing(String serviceName, StringDictionary dictionary) {
+            this.serviceName = serviceName;
+            this.dictionary = dictionary;
+        }
+        
+        MetricWindow metricWindow(String metricType) {
+            return metrics.computeIfAbsent(metricType,
+                    k -> new MetricWindow(serviceName, metricType, WINDOW_SIZE.toMillis(), BUCKET_MILLIS));
+        }
+        
+        void add(TelemetryEvent event) {
+            long bucketId = bucketOf(event.getTimestamp());
+            int slot = (int) Math.floorMod(bucketId, (long) SLOTS);
+            while (true) {
+                Bucket current = slots.get(slot);
+                if (current != null && current.id == bucketId) {
+                    current.append(event, dictionary);
+                    return;
+                }
+                if (current != null && current.id > bucketId) {
+                    log.debug("Dropped telemetry {} older than the sliding window", event.getId());
+                    return;
+                }
+                Bucket fresh = new Bucket(bucketId);
+                if (slots.compareAndSet(slot, current, fresh)) {
+                    fresh.append(event, dictionary);
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Caller holds the write lock.
+         *
+         * @return true if the ring holds nothing inside the window any more
+         */
+        boolean sweep(long oldestLive) {
+            boolean empty = true;
+            for (int i = 0; i < SLOTS; i++) {
+                Bucket bucket = slots.get(i);
+                if (bucket != null && bucket.id < oldestLive) {
+                    slots.set(i, null);
+                } else if (bucket != null) {
+                    empty = false;
+                }
+            }
+            metrics.values().removeIf(window -> window.count() == 0);
+            return empty && metrics.isEmpty();
+        }
+        
+        void collect(Instant cutoffTime, List<TelemetryEvent> out) {
+            long oldestLive = bucketOf(cutoffTime);
+            for (int i = 0; i < SLOTS; i++) {
+                Bucket bucket = slots.get(i);
+                if (bucket == null || bucket.id < oldestLive) {
+                    continue;
+                }
+                bucket.collect(bucket.id == oldestLive ? cutoffTime.toEpochMilli() : Long.MIN_VALUE,
+                        serviceName, dictionary, out);
+            }
+        }
+    }
+    
+    /**
+     * Append-only list of fixed-size chunks. Writers reserve a row with an atomic increment, fill
+     * the primitive columns and then publish the row by setting its id; readers skip rows whose id
+     * is not yet visible.
+     */
+    private static final class Bucket {
+        
+        private final long id;
+        private final AtomicReference<Chunk> head = new AtomicReference<>(new Chunk(null));
+        
+        Bucket(long id) {
+            this.id = id;
+        }
+        
+        void append(TelemetryEvent event, StringDictionary dictionary) {
+            while (true) {
+                Chunk chunk = head.get();
+                int index = chunk.reserved.getAndIncrement();
+                if (index < CHUNK_SIZE) {
+                    chunk.write(index, event, dictionary);
+                    return;
+                }
+                head.compareAndSet(chunk, new Chunk(chunk));
+            }
+        }
+        
+        void collect(long cutoffMillis, String serviceName, StringDictionary dictionary, List<TelemetryEvent> out) {
+            List<Chunk> chunks = new ArrayList<>();
+            for (Chunk chunk = head.get(); chunk != null; chunk = chunk.previous) {
+                chunks.add(chunk);
+            }
+            for (int c = chunks.size() - 1; c >= 0; c--) {
+                Chunk chunk = chunks.get(c);
+                int filled = Math.min(chunk.reserved.get(), CHUNK_SIZE);
+                for (int i = 0; i < filled; i++) {
+                    String eventId = chunk.ids.get(i);
+                    if (eventId != null && chunk.timestamps[i] >= cutoffMillis) {
+                        out.add(chunk.view(i, eventId, serviceName, dictionary));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static final class Chunk {
+        
+        private static final String MISSING_ID = new String();
+        
+        private final Chunk previous;
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final long[] timestamps = new long[CHUNK_SIZE];
+        private final double[] values = new double[CHUNK_SIZE];
+        private final int[] metrics = new int[CHUNK_SIZE];
+        private final int[] regions = new int[CHUNK_SIZE];
+        private final int[] environments = new int[CHUNK_SIZE];
+        private final AtomicReferenceArray<String> ids = new AtomicReferenceArray<>(CHUNK_SIZE);
+        
+        Chunk(Chunk previous) {
+            this.previous = previous;
+        }
+        
+        void write(int index, TelemetryEvent event, StringDictionary dictionary) {
+            timestamps[index] = event.getTimestamp().toEpochMilli();
+            values[index] = event.getValue() == null ? Double.NaN : event.getValue();
+            metrics[index] = dictionary.encode(event.getMetricType());
+            regions[index] = dictionary.encode(event.getRegion());
+            environments[index] = dictionary.encode(event.getEnvironment());
+            ids.set(index, event.getId() == null ? MISSING_ID : event.getId());
+        }
+        
+        TelemetryEvent view(int index, String eventId, String serviceName, StringDictionary dictionary) {
+            double value = values[index];
+            return TelemetryEvent.builder()
+                    .id(eventId == MISSING_ID ? null : eventId)
+                    .serviceName(serviceName)
+                    .metricType(dictionary.decode(metrics[index]))
+                    .value(Double.isNaN(value) ? null : value)
+                    .timestamp(Instant.ofEpochMilli(timestamps[index]))
+                    .region(dictionary.decode(regions[index]))
+                    .environment(dictionary.decode(environments[index]))
+                    .build();
+        }
     }
 }
@@ -0,0 +1,250 @@
+package com.ratip.service;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Incremental counterpart of {@link EventCorrelator#correlateEvents}. Each series
+ * ({@code serviceName}, {@code metricType}) keeps an open window of recent telemetry and alarms;
+ * a new event is matched against the opposite side only, so every pair is emitted exactly once,
+ * when its later member arrives.
+ */
+@Slf4j
+@Component
+public class StreamingCorrelator {
+    
+    private static final long BUCKET_SECONDS = 300;
+    private static final long REACH_SECONDS = 6 * 60 + 1;
+    
+    private final EventCorrelator correlator;
+    private final List<CorrelationListener> listeners;
+    private final long windowSeconds;
+    
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Map<String, Counter> correlationCounters = new ConcurrentHashMap<>();
+    
+    private final RatipMetrics metrics;
+    private final Timer telemetryJoinTimer;
+    private final Timer alarmJoinTimer;
+    private final Timer evictionTimer;
+    
+    public StreamingCorrelator(EventCorrelator correlator,
+                               List<CorrelationListener> listeners,
+                               RatipMetrics metrics,
+                               @Value("${ratip.correlation.stream-window:PT15M}") Duration window) {
+        this.correlator = correlator;
+        this.listeners = listeners;
+        this.windowSeconds = Math.max(window.toSeconds(), REACH_SECONDS);
+        
+        this.metrics = metrics;
+        this.telemetryJoinTimer = metrics.timer("ratip.correlation.join",
+                "Time to match an event against the open window of its series", "side", "telemetry");
+        this.alarmJoinTimer = metrics.timer("ratip.correlation.join",
+                "Time to match an event against the open window of its series", "side", "alarm");
+        this.evictionTimer = metrics.timer("ratip.eviction", "Time spent dropping expired data", "component", "correlation");
+    }
+    
+    public List<CorrelatedEvent> ingestTelemetry(TelemetryEvent telemetry) {
+        long start = metrics.start();
+        List<CorrelatedEvent> correlations = inSeries(telemetry.getServiceName(), telemetry.getMetricType(), target -> {
+            List<CorrelatedEvent> matched = new ArrayList<>();
+            if (target.telemetry.add(telemetry, telemetry.getId(), telemetry.getTimestamp(), windowSeconds)) {
+                for (AlarmEvent alarm : target.alarms.candidates(telemetry.getTimestamp())) {
+                    if (correlator.isCorrelated(alarm, telemetry)) {
+                        matched.add(correlator.buildCorrelation(alarm, telemetry));
+                    }
+                }
+            }
+            return matched;
+        });
+        metrics.stop(telemetryJoinTimer, start);
+        
+        publish(correlations);
+        return correlations;
+    }
+    
+    public List<CorrelatedEvent> ingestAlarm(AlarmEvent alarm) {
+        long start = metrics.start();
+        List<CorrelatedEvent> correlations = inSeries(alarm.getServiceName(), alarm.getMetricType(), target -> {
+            List<CorrelatedEvent> matched = new ArrayList<>();
+            if (target.alarms.add(alarm, alarm.getId(), alarm.getTimestamp(), windowSeconds)) {
+                for (TelemetryEvent telemetry : target.telemetry.candidates(alarm.getTimestamp())) {
+                    if (correlator.isCorrelated(alarm, telemetry)) {
+                        matched.add(correlator.buildCorrelation(alarm, telemetry));
+                    }
+                }
+            }
+            return matched;
+        });
+        metrics.stop(alarmJoinTimer, start);
+        
+        publish(correlations);
+        return correlations;
+    }
+    
+    /**
+     * Puts a recovered event back into its open window without correlating it, so pairs that
+     * were emitted before a restart are not emitted again while new events still find their
+     * partners. Events older than the window are ignored.
+     */
+    public void restoreTelemetry(TelemetryEvent telemetry) {
+        if (isRestorable(telemetry.getTimestamp())) {
+            inSeries(telemetry.getServiceName(), telemetry.getMetricType(),
+                    target -> target.telemetry.add(telemetry, telemetry.getId(), telemetry.getTimestamp(), windowSeconds));
+        }
+    }
+    
+    public void restoreAlarm(AlarmEvent alarm) {
+        if (isRestorable(alarm.getTimestamp())) {
+            inSeries(alarm.getServiceName(), alarm.getMetricType(),
+                    target -> target.alarms.add(alarm, alarm.getId(), alarm.getTimestamp(), windowSeconds));
+        }
+    }
+    
+    private boolean isRestorable(Instant timestamp) {
+        return timestamp.getEpochSecond() >= Instant.now().getEpochSecond() - windowSeconds;
+    }
+    
+    /**
+     * Drops series that have not seen an event for a full window, so idle services do not pin
+     * their last window in memory. A dropped series is retired under its monitor, so an ingest
+     * that fetched it just before the sweep retries against a fresh series instead of adding to
+     * the orphan.
+     */
+    @Scheduled(fixedDelayString = "${ratip.correlation.idle-sweep-interval:PT1M}")
+    public void evictIdleSeries() {
+        long start = metrics.start();
+        long cutoff = Instant.now().getEpochSecond() - windowSeconds;
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series idle = entry.getValue();
+            synchronized (idle) {
+                if (idle.watermark() < cutoff) {
+                    idle.retired = true;
+                    series.remove(entry.getKey(), idle);
+                }
+            }
+        }
+        metrics.stop(evictionTimer, start);
+    }
+    
+    /**
+     * Series with an open window, across all services.
+     */
+    public int openSeries() {
+        return series.size();
+    }
+    
+    /**
+     * Runs {@code action} holding the monitor of the live series for the key, retrying if the
+     * series it fetched was retired by {@link #evictIdleSeries} in the meantime.
+     */
+    private <R> R inSeries(String serviceName, String metricType, Function<Series, R> action) {
+        String key = serviceName + "#" + metricType;
+        while (true) {
+            Series target = series.computeIfAbsent(key, k -> new Series());
+            synchronized (target) {
+                if (!target.retired) {
+                    return action.apply(target);
+                }
+            }
+        }
+    }
+    
+    private void publish(List<CorrelatedEvent> correlations) {
+        for (CorrelatedEvent correlation : correlations) {
+            log.debug("Streamed correlation: {} (confidence: {})",
+                    correlation.getDescription(), correlation.getConfidenceScore());
+            if (metrics.isEnabled()) {
+                correlationCounter(correlation).increment();
+            }
+            for (CorrelationListener listener : listeners) {
+                try {
+                    listener.onCorrelation(correlation);
+                } catch (Exception e) {
+                    log.error("Correlation listener {} failed", listener.getClass().getSimpleName(), e);
+                }
+            }
+        }
+    }
+    
+    private Counter correlationCounter(CorrelatedEvent correlation) {
+        String type = correlation.getCorrelationType();
+        String severity = correlation.getAlarm().getSeverity();
+        return correlationCounters.computeIfAbsent(type + "#" + severity,
+                key -> metrics.counter("ratip.correlations", "Correlations emitted by the streaming correlator",
+                        "type", String.valueOf(type), "severity", String.valueOf(severity)));
+    }
+    
+    private static final class Series {
+        private final OpenWindow<TelemetryEvent> telemetry = new OpenWindow<>();
+        private final OpenWindow<AlarmEvent> alarms = new OpenWindow<>();
+        private boolean retired;
+        
+        long watermark() {
+            return Math.max(telemetry.watermark, alarms.watermark);
+        }
+    }
+    
+    /**
+     * Events of one type for one series, bucketed by 5 minutes of event time. Guarded by the
+     * owning {@link Series} monitor.
+     */
+    private static final class OpenWindow<T> {
+        private final TreeMap<Long, List<T>> buckets = new TreeMap<>();
+        private final TreeMap<Long, Set<String>> idsByBucket = new TreeMap<>();
+        private long watermark = Long.MIN_VALUE;
+        
+        /**
+         * @return false if an event with the same id is already in the window, or if the event is
+         *         older than the window; such an event is neither kept nor correlated, since its
+         *         id could not be tracked and every redelivery would be emitted again
+         */
+        boolean add(T event, String id, Instant timestamp, long windowSeconds) {
+            long second = timestamp.getEpochSecond();
+            long bucket = Math.floorDiv(second, BUCKET_SECONDS);
+            if (second > watermark) {
+                watermark = second;
+                long oldestKept = Math.floorDiv(watermark - windowSeconds, BUCKET_SECONDS);
+                buckets.headMap(oldestKept, false).clear();
+                idsByBucket.headMap(oldestKept, false).clear();
+            } else if (bucket < Math.floorDiv(watermark - windowSeconds, BUCKET_SECONDS)) {
+                return false;
+            }
+            
+            if (!idsByBucket.computeIfAbsent(bucket, k -> new HashSet<>()).add(id)) {
+                return false;
+            }
+            buckets.computeIfAbsent(bucket, k -> new ArrayList<>()).add(event);
+            return true;
+        }
+        
+        List<T> candidates(Instant timestamp) {
+            long second = timestamp.getEpochSecond();
+            List<T> result = new ArrayList<>();
+            for (List<T> bucket : buckets.subMap(Math.floorDiv(second - REACH_SECONDS, BUCKET_SECONDS), true,
+                    Math.floorDiv(second + REACH_SECONDS, BUCKET_SECONDS), true).values()) {
+                result.addAll(bucket);
+            }
+            return result;
+        }
+    }
+}
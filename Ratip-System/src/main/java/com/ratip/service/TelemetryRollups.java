@@ -0,0 +1,262 @@
+package com.ratip.service;
+
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.MockDataRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Pre-aggregated telemetry for ranges that outlive the raw store. Every stored point is also
+ * folded into a 1-minute and a 1-hour bucket of its {@code serviceName#metricType} series; a
+ * bucket holds count, sum, min, max and a {@link QuantileSketch}, so buckets merge into the same
+ * statistics a raw scan would give. Each tier keeps its buckets for its own retention
+ * ({@code ratip.rollup.minute-retention}, {@code ratip.rollup.hour-retention}); raw points follow
+ * {@code ratip.store.telemetry-retention}.
+ * <p>
+ * {@link #aggregate} answers a range from the coarsest tier that has it: whole hours from the
+ * hour tier, the minutes left at either end from the minute tier, and the remaining seconds from
+ * raw points. A week over one series is therefore about 170 hour buckets plus a few minutes,
+ * instead of every point. Each tier only answers the part of a range inside its own retention.
+ * <p>
+ * {@link #record} counts whatever it is given. The pipeline only passes points whose id the raw
+ * store had not seen yet, so redeliveries and retried stores are counted once; a redelivery with
+ * a changed value replaces the raw point but not its earlier contribution to the buckets.
+ * <p>
+ * The rollups live in memory only. On restart they are rebuilt from the {@code EventLog}, which
+ * keeps {@code ratip.store.retention}, so rollup history older than that does not survive a
+ * restart however long the tier retentions are.
+ */
+@Slf4j
+@Component
+public class TelemetryRollups {
+    
+    private final MockDataRepository repository;
+    private final Tier[] tiers;
+    private final Counter rawRows;
+    private final Timer evictionTimer;
+    
+    public TelemetryRollups(MockDataRepository repository,
+                            MeterRegistry meterRegistry,
+                            @Value("${ratip.rollup.minute-retention:P14D}") Duration minuteRetention,
+                            @Value("${ratip.rollup.hour-retention:P90D}") Duration hourRetention) {
+        this.repository = repository;
+        this.tiers = new Tier[] {
+                new Tier("1h", Duration.ofHours(1), hourRetention, meterRegistry),
+                new Tier("1m", Duration.ofMinutes(1), minuteRetention, meterRegistry)
+        };
+        this.rawRows = rowsCounter(meterRegistry, "raw");
+        this.evictionTimer = Timer.builder("ratip.eviction")
+                .description("Time spent dropping expired data")
+                .tag("component", "rollups")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Receives statistics for a range, either point by point or as whole pre-aggregated buckets.
+     */
+    public interface Accumulator {
+        
+        void add(double value);
+        
+        void merge(long count, double sum, double min, double max, QuantileSketch sketch);
+    }
+    
+    public void record(List<TelemetryEvent> events) {
+        long cutoffBase = System.currentTimeMillis();
+        for (TelemetryEvent event : events) {
+            if (event.getValue() == null) {
+                continue;
+            }
+            String key = MockDataRepository.telemetryKey(event.getServiceName(), event.getMetricType());
+            long timestamp = event.getTimestamp().toEpochMilli();
+            for (Tier tier : tiers) {
+                if (timestamp >= cutoffBase - tier.retentionMillis) {
+                    tier.add(key, timestamp, event.getValue());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Metric types per service for every series with a retained bucket in any tier. This reaches
+     * further back than the raw store, so range queries enumerate series from here.
+     */
+    public Map<String, Set<String>> metricsByService() {
+        Map<String, Set<String>> result = new TreeMap<>();
+        for (Tier tier : tiers) {
+            for (String key : tier.series.keySet()) {
+                int split = key.lastIndexOf('#');
+                result.computeIfAbsent(key.substring(0, split), service -> new TreeSet<>()).add(key.substring(split + 1));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Feeds the statistics of one series over {@code [from, to)} to {@code accumulator}. Where raw
+     * points have expired, the seconds at the edges of the range are approximated by the whole
+     * minute buckets that overlap them.
+     */
+    public void aggregate(String serviceName, String metricType, Instant from, Instant to, Accumulator accumulator) {
+        String key = MockDataRepository.telemetryKey(serviceName, metricType);
+        collect(0, key, serviceName, metricType, from.toEpochMilli(), to.toEpochMilli(), System.currentTimeMillis(), accumulator);
+    }
+    
+    @Scheduled(fixedDelayString = "${ratip.store.eviction-interval:PT1M}")
+    public void evictExpired() {
+        evictionTimer.record(() -> {
+            long now = System.currentTimeMillis();
+            for (Tier tier : tiers) {
+                int dropped = tier.evictBefore(now - tier.retentionMillis);
+                if (dropped > 0) {
+                    log.debug("Dropped {} expired {} rollup buckets", dropped, tier.name);
+                }
+            }
+        });
+    }
+    
+    private void collect(int level, String key, String serviceName, String metricType, long from, long to, long now,
+                         Accumulator accumulator) {
+        if (from >= to) {
+            return;
+        }
+        if (level == tiers.length) {
+            raw(key, serviceName, metricType, from, to, now, accumulator);
+            return;
+        }
+        Tier tier = tiers[level];
+        long retained = Math.max(from, now - tier.retentionMillis);
+        long start = Math.floorDiv(retained + tier.widthMillis - 1, tier.widthMillis) * tier.widthMillis;
+        long end = Math.floorDiv(to, tier.widthMillis) * tier.widthMillis;
+        if (start < end) {
+            tier.mergeInto(key, start, end, accumulator);
+            collect(level + 1, key, serviceName, metricType, from, start, now, accumulator);
+            collect(level + 1, key, serviceName, metricType, end, to, now, accumulator);
+        } else {
+            collect(level + 1, key, serviceName, metricType, from, to, now, accumulator);
+        }
+    }
+    
+    private void raw(String key, String serviceName, String metricType, long from, long to, long now, Accumulator accumulator) {
+        if (from < now - repository.telemetryRetention().toMillis()) {
+            Tier finest = tiers[tiers.length - 1];
+            finest.mergeInto(key, Math.floorDiv(from, finest.widthMillis) * finest.widthMillis, to, accumulator);
+            return;
+        }
+        long rows = 0;
+        for (TelemetryEvent event : repository.getTelemetryByServiceAndTime(serviceName, metricType,
+                Instant.ofEpochMilli(from), Instant.ofEpochMilli(to))) {
+            if (event.getValue() != null) {
+                accumulator.add(event.getValue());
+                rows++;
+            }
+        }
+        rawRows.increment(rows);
+    }
+    
+    private static Counter rowsCounter(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("ratip.rollup.rows.read")
+                .description("Raw points and rollup buckets read to answer telemetry aggregates")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+    
+    private static final class Tier {
+        
+        private final String name;
+        private final long widthMillis;
+        private final long retentionMillis;
+        private final Counter rowsRead;
+        private final Map<String, ConcurrentSkipListMap<Long, Bucket>> series = new ConcurrentHashMap<>();
+        
+        Tier(String name, Duration width, Duration retention, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.widthMillis = width.toMillis();
+            this.retentionMillis = retention.toMillis();
+            this.rowsRead = rowsCounter(meterRegistry, name);
+        }
+        
+        /**
+         * Runs inside {@code compute} on the series, so eviction cannot drop an emptied series
+         * between looking it up and adding to it.
+         */
+        void add(String key, long timestamp, double value) {
+            long start = Math.floorDiv(timestamp, widthMillis) * widthMillis;
+            series.compute(key, (k, buckets) -> {
+                ConcurrentSkipListMap<Long, Bucket> target = buckets != null ? buckets : new ConcurrentSkipListMap<>();
+                Bucket bucket = target.computeIfAbsent(start, b -> new Bucket());
+                synchronized (bucket) {
+                    bucket.add(value);
+                }
+                return target;
+            });
+        }
+        
+        /**
+         * Merges every bucket starting in {@code [from, to)}.
+         */
+        void mergeInto(String key, long from, long to, Accumulator accumulator) {
+            ConcurrentSkipListMap<Long, Bucket> buckets = series.get(key);
+            if (buckets == null || from >= to) {
+                return;
+            }
+            long rows = 0;
+            for (Bucket bucket : buckets.subMap(from, true, to, false).values()) {
+                synchronized (bucket) {
+                    accumulator.merge(bucket.count, bucket.sum, bucket.min, bucket.max, bucket.sketch);
+                }
+                rows++;
+            }
+            rowsRead.increment(rows);
+        }
+        
+        /**
+         * Drops expired buckets and the series left without any.
+         */
+        int evictBefore(long cutoff) {
+            int[] dropped = new int[1];
+            for (String key : series.keySet()) {
+                series.computeIfPresent(key, (k, buckets) -> {
+                    NavigableMap<Long, Bucket> expired = buckets.headMap(cutoff - widthMillis, true);
+                    dropped[0] += expired.size();
+                    expired.clear();
+                    return buckets.isEmpty() ? null : buckets;
+                });
+            }
+            return dropped[0];
+        }
+    }
+    
+    private static final class Bucket {
+        
+        private final QuantileSketch sketch = new QuantileSketch();
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        
+        void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sketch.add(value);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ratip.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiResponseCacheTest {
+    
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    
+    @Test
+    void servesARepeatFromTheCache() {
+        AiResponseCache cache = new AiResponseCache(registry, Duration.ofMinutes(5), 10);
+        
+        assertThat(cache.get("k", () -> load("answer")).join()).isEqualTo("answer");
+        assertThat(cache.get("k", () -> load("other")).join()).isEqualTo("answer");
+        
+        assertThat(loads).hasValue(1);
+        assertThat(requests("hit")).isEqualTo(1.0);
+        assertThat(requests("miss")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void coalescesConcurrentLoadsOfOneKey() {
+        AiResponseCache cache = new AiResponseCache(registry, Duration.ofMinutes(5), 10);
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        
+        CompletableFuture<String> first = cache.get("k", () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = cache.get("k", () -> load("unexpected"));
+        assertThat(second).isNotDone();
+        
+        upstream.complete("answer");
+        
+        assertThat(first.join()).isEqualTo("answer");
+        assertThat(second.join()).isEqualTo("answer");
+        assertThat(loads).hasValue(1);
+        assertThat(requests("coalesced")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void doesNotCacheAFailedLoad() {
+        AiResponseCache cache = new AiResponseCache(registry, Duration.ofMinutes(5), 10);
+        
+        CompletableFuture<String> failed = cache.get("k", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("upstream down"));
+        });
+        
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("k", () -> load("answer")).join()).isEqualTo("answer");
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void reloadsAnExpiredEntry() throws InterruptedException {
+        AiResponseCache cache = new AiResponseCache(registry, Duration.ofMillis(50), 10);
+        cache.get("k", () -> load("stale")).join();
+        
+        Thread.sleep(60);
+        
+        assertThat(cache.get("k", () -> load("fresh")).join()).isEqualTo("fresh");
+        assertThat(loads).hasValue(2);
+    }
+    
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        AiResponseCache cache = new AiResponseCache(registry, Duration.ofMinutes(5), 2);
+        cache.get("a", () -> load("a")).join();
+        cache.get("b", () -> load("b")).join();
+        cache.get("a", () -> load("a")).join();
+        
+        cache.get("c", () -> load("c")).join();
+        
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(loads).hasValue(3);
+        cache.get("a", () -> load("a")).join();
+        assertThat(loads).hasValue(3);
+        cache.get("b", () -> load("b")).join();
+        assertThat(loads).hasValue(4);
+    }
+    
+    @Test
+    void keysIgnoreCaseWhitespaceAndTrailingPunctuation() {
+        assertThat(AiResponseCache.normalize("  Why is   API latency HIGH?! ")).isEqualTo("why is api latency high");
+        assertThat(AiResponseCache.key("gpt", "Why is API latency high?", "ctx"))
+                .isEqualTo(AiResponseCache.key("gpt", "why is api  latency high", "ctx"))
+                .isNotEqualTo(AiResponseCache.key("gpt", "why is api latency high", "other ctx"))
+                .isNotEqualTo(AiResponseCache.key("other-model", "why is api latency high", "ctx"));
+    }
+    
+    private CompletableFuture<String> load(String value) {
+        loads.incrementAndGet();
+        return CompletableFuture.completedFuture(value);
+    }
+    
+    private double requests(String result) {
+        return registry.get("ratip.ai.cache.requests").tag("result", result).counter().count();
+    }
+}
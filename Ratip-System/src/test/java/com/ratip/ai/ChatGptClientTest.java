@@ -0,0 +1,236 @@
+package com.ratip.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratip.config.RatipMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the client against a local HTTP stub standing in for the chat completions API.
+ */
+class ChatGptClientTest {
+    
+    private static final String MOCK_PREFIX = "AI Analysis (Mock Mode";
+    private static final Duration OPEN = Duration.ofMillis(200);
+    
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService stubThreads = Executors.newCachedThreadPool();
+    private volatile Responder responder = exchange -> answer(exchange, "ok");
+    private HttpServer stub;
+    
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/chat/completions", exchange -> {
+            requests.incrementAndGet();
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                responder.respond(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stub.setExecutor(stubThreads);
+        stub.start();
+    }
+    
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+        stubThreads.shutdownNow();
+    }
+    
+    @Test
+    void returnsTheUpstreamAnswer() {
+        responder = exchange -> answer(exchange, "API latency follows the database alarms.");
+        
+        String answer = client(Duration.ofSeconds(5), 10, 5).summarizeEvents("", List.of(), "why is api slow").join();
+        
+        assertThat(answer).isEqualTo("API latency follows the database alarms.");
+        assertThat(outcomes("success")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void fallsBackToTheMockAnswerWithoutAnApiKey() {
+        ChatGptClient client = client(Duration.ofSeconds(5), 10, 5);
+        ReflectionTestUtils.setField(client, "apiKey", "your-api-key-here");
+        
+        String answer = client.summarizeEvents("", List.of(), "why is api slow").join();
+        
+        assertThat(answer).startsWith(MOCK_PREFIX);
+        assertThat(requests).hasValue(0);
+    }
+    
+    @Test
+    void fallsBackToTheMockAnswerOnAnUpstreamError() {
+        responder = exchange -> status(exchange, 500);
+        
+        String answer = client(Duration.ofSeconds(5), 10, 5).summarizeEvents("", List.of(), "why is api slow").join();
+        
+        assertThat(answer).startsWith(MOCK_PREFIX);
+        assertThat(outcomes("error")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void timesOutASlowUpstream() {
+        responder = exchange -> {
+            Thread.sleep(2_000);
+            answer(exchange, "too late");
+        };
+        
+        String answer = client(Duration.ofMillis(200), 10, 5).summarizeEvents("", List.of(), "why is api slow").join();
+        
+        assertThat(answer).startsWith(MOCK_PREFIX);
+        assertThat(outcomes("timeout")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void opensTheBreakerAfterRepeatedFailuresAndClosesItOnASuccessfulTrial() throws InterruptedException {
+        responder = exchange -> status(exchange, 500);
+        ChatGptClient client = client(Duration.ofSeconds(5), 10, 2);
+        client.summarizeEvents("", List.of(), "first").join();
+        client.summarizeEvents("", List.of(), "second").join();
+        
+        String refused = client.summarizeEvents("", List.of(), "third").join();
+        
+        assertThat(refused).startsWith(MOCK_PREFIX);
+        assertThat(requests).hasValue(2);
+        assertThat(outcomes("short_circuited")).isEqualTo(1.0);
+        assertThat(circuitOpen()).isEqualTo(1.0);
+        
+        Thread.sleep(OPEN.toMillis() + 50);
+        responder = exchange -> answer(exchange, "recovered");
+        
+        assertThat(client.summarizeEvents("", List.of(), "fourth").join()).isEqualTo("recovered");
+        assertThat(requests).hasValue(3);
+        assertThat(circuitOpen()).isZero();
+    }
+    
+    @Test
+    void reopensTheBreakerWhenTheHalfOpenTrialFails() throws InterruptedException {
+        responder = exchange -> status(exchange, 500);
+        ChatGptClient client = client(Duration.ofSeconds(5), 10, 1);
+        client.summarizeEvents("", List.of(), "first").join();
+        Thread.sleep(OPEN.toMillis() + 50);
+        
+        client.summarizeEvents("", List.of(), "trial").join();
+        client.summarizeEvents("", List.of(), "refused").join();
+        
+        assertThat(requests).hasValue(2);
+        assertThat(outcomes("short_circuited")).isEqualTo(1.0);
+        assertThat(circuitOpen()).isEqualTo(1.0);
+    }
+    
+    @Test
+    void answersFromTheMockOnceTheRateLimitIsReached() {
+        ChatGptClient client = client(Duration.ofSeconds(5), 1, 5);
+        
+        assertThat(client.summarizeEvents("", List.of(), "first").join()).isEqualTo("ok");
+        String limited = client.summarizeEvents("", List.of(), "second").join();
+        
+        assertThat(limited).startsWith(MOCK_PREFIX);
+        assertThat(requests).hasValue(1);
+        assertThat(outcomes("rate_limited")).isEqualTo(1.0);
+    }
+    
+    @Test
+    void streamsChunksAsTheyArrive() {
+        responder = exchange -> stream(exchange, List.of("API ", "latency ", "is fine."), true, 0);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        
+        String answer = client(Duration.ofSeconds(5), 10, 5)
+                .streamSummary("", List.of(), "why is api slow", deltas::add).join();
+        
+        assertThat(deltas).containsExactly("API ", "latency ", "is fine.");
+        assertThat(answer).isEqualTo("API latency is fine.");
+    }
+    
+    @Test
+    void failsAStreamThatStallsAfterTheFirstChunk() {
+        responder = exchange -> stream(exchange, List.of("API "), false, 3_000);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        
+        CompletableFuture<String> answer = client(Duration.ofSeconds(5), 10, 5)
+                .streamSummary("", List.of(), "why is api slow", deltas::add);
+        
+        assertThatThrownBy(() -> answer.get(2, TimeUnit.SECONDS)).hasRootCauseInstanceOf(HttpTimeoutException.class);
+        assertThat(deltas).containsExactly("API ");
+    }
+    
+    private ChatGptClient client(Duration requestTimeout, int burst, int failureThreshold) {
+        ChatGptClient client = new ChatGptClient(new ObjectMapper(),
+                new AiResponseCache(registry, Duration.ofMinutes(5), 100),
+                new PromptContextBuilder(1500, Duration.ofHours(1), 100),
+                new RatipMetrics(registry, true),
+                "http://127.0.0.1:" + stub.getAddress().getPort(),
+                Duration.ofSeconds(1), requestTimeout, Duration.ofMillis(300),
+                1, burst, failureThreshold, OPEN);
+        ReflectionTestUtils.setField(client, "apiKey", "test-key");
+        ReflectionTestUtils.setField(client, "model", "test-model");
+        return client;
+    }
+    
+    private double outcomes(String outcome) {
+        return registry.get("ratip.ai.upstream.requests").tag("outcome", outcome).counter().count();
+    }
+    
+    private double circuitOpen() {
+        return registry.get("ratip.ai.circuit.open").gauge().value();
+    }
+    
+    private static void answer(HttpExchange exchange, String content) throws IOException {
+        String json = "{\"choices\":[{\"message\":{\"content\":\"" + content + "\"}}]}";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+    
+    private static void status(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+    
+    private static void stream(HttpExchange exchange, List<String> chunks, boolean done, long stallMillis)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (String chunk : chunks) {
+            out.write(("data: {\"choices\":[{\"delta\":{\"content\":\"" + chunk + "\"}}]}\n\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        Thread.sleep(stallMillis);
+        if (done) {
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    @FunctionalInterface
+    private interface Responder {
+        void respond(HttpExchange exchange) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ratip.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+    
+    private static final Duration OPEN = Duration.ofMillis(100);
+    
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN);
+    
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        breaker.tryAcquire();
+        breaker.onSuccess();
+        fail(2);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        
+        fail(1);
+        
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+    
+    @Test
+    void letsOneTrialThroughOnceTheOpenPeriodEnds() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN.toMillis() + 20);
+        
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        
+        breaker.onSuccess();
+        
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+    
+    @Test
+    void aFailedTrialReopensTheCircuit() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN.toMillis() + 20);
+        
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+        
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+    
+    @Test
+    void aReleasedTrialPermitCanBeTakenAgain() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN.toMillis() + 20);
+        
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.release();
+        
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+    
+    @Test
+    void rejectsANonPositiveThreshold() {
+        assertThatThrownBy(() -> new CircuitBreaker(0, OPEN)).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+    }
+}
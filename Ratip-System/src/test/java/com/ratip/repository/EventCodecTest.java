@@ -0,0 +1,126 @@
+package com.ratip.repository;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTest {
+    
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00.123Z");
+    
+    @Test
+    void roundTripsEveryRecordType() {
+        TelemetryEvent telemetry = telemetry("t-1", 42.5);
+        AlarmEvent alarm = alarm("a-1");
+        CorrelatedEvent correlation = CorrelatedEvent.builder()
+                .id("c-1")
+                .correlationType("Metric-Alarm Correlation")
+                .confidenceScore(0.87)
+                .description("Latency spike before the alarm")
+                .correlationTimestamp(NOW.plusSeconds(5))
+                .alarm(alarm)
+                .telemetry(telemetry)
+                .rootCause("Cold starts")
+                .recommendedAction("Raise provisioned concurrency")
+                .build();
+        
+        assertThat(roundTrip(List.of(telemetry, alarm, correlation)))
+                .containsExactly(telemetry, alarm, correlation);
+    }
+    
+    @Test
+    void keepsNullsAndRepeatedSymbols() {
+        TelemetryEvent noValue = telemetry("t-1", null);
+        noValue.setRegion(null);
+        TelemetryEvent repeated = telemetry("t-2", 1.0);
+        AlarmEvent bare = AlarmEvent.builder().id("a-1").timestamp(NOW).build();
+        CorrelatedEvent partial = CorrelatedEvent.builder().id("c-1").correlationTimestamp(NOW).alarm(bare).build();
+        
+        assertThat(roundTrip(List.of(noValue, repeated, repeated, bare, partial)))
+                .containsExactly(noValue, repeated, repeated, bare, partial);
+    }
+    
+    @Test
+    void encodesRepeatedSymbolsAsReferences() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        EventCodec.Writer writer = new EventCodec.Writer();
+        writer.encode(telemetry("00000000-0000-0000-0000-000000000001", 1.0), buffer);
+        int first = buffer.position();
+        writer.encode(telemetry("00000000-0000-0000-0000-000000000002", 1.0), buffer);
+        
+        assertThat(buffer.position() - first).isLessThan(first);
+    }
+    
+    @Test
+    void rejectsUnknownEventsAndRecordTypes() {
+        assertThatThrownBy(() -> new EventCodec.Writer().encode("not an event", ByteBuffer.allocate(64)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new EventCodec.Reader().decode(ByteBuffer.wrap(new byte[] {9})))
+                .isInstanceOf(IllegalStateException.class);
+    }
+    
+    @Test
+    void varLongsRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        long[] values = {0, 1, 127, 128, 300, NOW.toEpochMilli(), Long.MAX_VALUE, -1};
+        for (long value : values) {
+            EventCodec.putVarLong(buffer, value);
+        }
+        buffer.flip();
+        for (long value : values) {
+            assertThat(EventCodec.getVarLong(buffer)).isEqualTo(value);
+        }
+    }
+    
+    private static List<Object> roundTrip(List<Object> events) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        EventCodec.Writer writer = new EventCodec.Writer();
+        for (Object event : events) {
+            writer.encode(event, buffer);
+        }
+        buffer.flip();
+        EventCodec.Reader reader = new EventCodec.Reader();
+        List<Object> decoded = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            decoded.add(reader.decode(buffer));
+        }
+        return decoded;
+    }
+    
+    static TelemetryEvent telemetry(String id, Double value) {
+        return TelemetryEvent.builder()
+                .id(id)
+                .serviceName("api-gateway")
+                .metricType("API_Latency")
+                .value(value)
+                .timestamp(NOW)
+                .region("us-east-1")
+                .environment("production")
+                .build();
+    }
+    
+    static AlarmEvent alarm(String id) {
+        return AlarmEvent.builder()
+                .id(id)
+                .alarmName("High Latency Alarm")
+                .serviceName("api-gateway")
+                .metricType("API_Latency")
+                .severity("CRITICAL")
+                .state("ALARM")
+                .threshold(200.0)
+                .value(250.0)
+                .timestamp(NOW.plusSeconds(1))
+                .description("API latency exceeded threshold")
+                .region("us-east-1")
+                .build();
+    }
+}
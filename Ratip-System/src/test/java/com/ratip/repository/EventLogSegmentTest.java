@@ -0,0 +1,127 @@
+package com.ratip.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ratip.repository.EventCodecTest.alarm;
+import static com.ratip.repository.EventCodecTest.telemetry;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventLogSegmentTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void readsBackWhatWasAppended() throws IOException {
+        List<Object> events = List.of(telemetry("t-1", 1.0), alarm("a-1"), telemetry("t-2", 2.0));
+        Path path = write(events, true);
+        
+        List<Object> read = new ArrayList<>();
+        EventLogSegment.Recovered recovered = EventLogSegment.read(path, read::add);
+        
+        assertThat(read).containsExactlyElementsOf(events);
+        assertThat(recovered.events()).isEqualTo(3);
+        assertThat(recovered.validBytes()).isEqualTo((int) Files.size(path));
+        assertThat(recovered.maxTimestamp()).isEqualTo(EventLogSegment.timestampOf(alarm("a-1")));
+    }
+    
+    @Test
+    void stopsAtTheZeroPaddingOfAnUnsealedSegment() throws IOException {
+        Path path = write(List.of(telemetry("t-1", 1.0), telemetry("t-2", 2.0)), false);
+        int written = sealedSize(List.of(telemetry("t-1", 1.0), telemetry("t-2", 2.0)));
+        
+        List<Object> read = new ArrayList<>();
+        EventLogSegment.Recovered recovered = EventLogSegment.read(path, read::add);
+        
+        assertThat(read).hasSize(2);
+        assertThat(recovered.validBytes()).isEqualTo(written);
+        assertThat(Files.size(path)).isGreaterThan(written);
+    }
+    
+    @Test
+    void dropsARecordTornMidWrite() throws IOException {
+        List<Object> events = List.of(telemetry("t-1", 1.0), telemetry("t-2", 2.0));
+        Path path = write(events, true);
+        int firstRecord = sealedSize(events.subList(0, 1));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 3);
+        }
+        
+        List<Object> read = new ArrayList<>();
+        EventLogSegment.Recovered recovered = EventLogSegment.read(path, read::add);
+        
+        assertThat(read).containsExactly(events.get(0));
+        assertThat(recovered.validBytes()).isEqualTo(firstRecord);
+    }
+    
+    @Test
+    void dropsARecordThatFailsItsChecksum() throws IOException {
+        List<Object> events = List.of(telemetry("t-1", 1.0), telemetry("t-2", 2.0));
+        Path path = write(events, true);
+        int firstRecord = sealedSize(events.subList(0, 1));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), channel.size() - 1);
+        }
+        
+        List<Object> read = new ArrayList<>();
+        EventLogSegment.Recovered recovered = EventLogSegment.read(path, read::add);
+        
+        assertThat(read).containsExactly(events.get(0));
+        assertThat(recovered.validBytes()).isEqualTo(firstRecord);
+    }
+    
+    @Test
+    void refusesAnEventThatDoesNotFit() throws IOException {
+        EventLogSegment segment = EventLogSegment.create(directory, 1, 16);
+        try {
+            assertThat(segment.append(alarm("a-1"))).isFalse();
+            assertThat(segment.size()).isZero();
+        } finally {
+            segment.seal();
+        }
+    }
+    
+    @Test
+    void aFailedEncodeLeavesNoGapBeforeTheNextRecord() throws IOException {
+        Path segmentDirectory = Files.createTempDirectory(directory, "segment");
+        EventLogSegment segment = EventLogSegment.create(segmentDirectory, 1, 4096);
+        assertThat(segment.append(telemetry("t-1", 1.0))).isTrue();
+        assertThatThrownBy(() -> segment.append("not an event")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(segment.append(telemetry("t-2", 2.0))).isTrue();
+        segment.seal();
+        
+        List<Object> read = new ArrayList<>();
+        EventLogSegment.read(segment.path(), read::add);
+        
+        assertThat(read).containsExactly(telemetry("t-1", 1.0), telemetry("t-2", 2.0));
+    }
+    
+    private Path write(List<Object> events, boolean seal) throws IOException {
+        Path segmentDirectory = Files.createTempDirectory(directory, "segment");
+        EventLogSegment segment = EventLogSegment.create(segmentDirectory, 1, 4096);
+        for (Object event : events) {
+            assertThat(segment.append(event)).isTrue();
+        }
+        if (seal) {
+            segment.seal();
+        } else {
+            segment.force();
+        }
+        return segment.path();
+    }
+    
+    private int sealedSize(List<Object> events) throws IOException {
+        return (int) Files.size(write(events, true));
+    }
+}
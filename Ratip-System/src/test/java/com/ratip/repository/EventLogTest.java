@@ -0,0 +1,108 @@
+package com.ratip.repository;
+
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventLogTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void replaysTelemetryAlarmsAndCorrelations() throws IOException {
+        TelemetryEvent telemetry = recent("t-1");
+        CorrelatedEvent correlation = CorrelatedEvent.builder()
+                .id("c-1")
+                .correlationType("Metric-Alarm Correlation")
+                .confidenceScore(0.9)
+                .correlationTimestamp(telemetry.getTimestamp())
+                .telemetry(telemetry)
+                .build();
+        EventLog log = open();
+        log.append(List.of(telemetry));
+        log.append(List.of(correlation));
+        log.close();
+        
+        Queue<Object> replayed = new ConcurrentLinkedQueue<>();
+        open(replayed).close();
+        
+        assertThat(replayed).containsExactlyInAnyOrder(telemetry, correlation);
+    }
+    
+    @Test
+    void truncatesOnlyTheNewestSegment() throws IOException {
+        EventLog log = open();
+        List<TelemetryEvent> appended = new ArrayList<>();
+        while (segments().size() < 2) {
+            TelemetryEvent event = recent("t-" + appended.size());
+            log.append(List.of(event));
+            appended.add(event);
+        }
+        TelemetryEvent lastOfOlder = appended.get(appended.size() - 2);
+        TelemetryEvent last = recent("last");
+        log.append(List.of(last));
+        log.close();
+        
+        Path older = segments().get(0);
+        Path newest = segments().get(1);
+        try (FileChannel channel = FileChannel.open(older, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), channel.size() - 1);
+        }
+        long olderSize = Files.size(older);
+        long newestSize = Files.size(newest);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 42, 1, 2}));
+        }
+        
+        Queue<Object> replayed = new ConcurrentLinkedQueue<>();
+        open(replayed).close();
+        
+        assertThat(Files.size(older)).isEqualTo(olderSize);
+        assertThat(Files.size(newest)).isEqualTo(newestSize);
+        assertThat(replayed).contains(appended.get(0), last).doesNotContain(lastOfOlder);
+    }
+    
+    private EventLog open() throws IOException {
+        return open(new ConcurrentLinkedQueue<>());
+    }
+    
+    private EventLog open(Queue<Object> sink) throws IOException {
+        EventLog log = new EventLog(new SimpleMeterRegistry(), true, directory.toString(), DataSize.ofKilobytes(1),
+                EventLog.FsyncPolicy.NEVER, Duration.ofDays(7));
+        log.replay(sink::addAll);
+        return log;
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+    
+    private static TelemetryEvent recent(String id) {
+        TelemetryEvent event = EventCodecTest.telemetry(id, 1.0);
+        event.setTimestamp(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        return event;
+    }
+}
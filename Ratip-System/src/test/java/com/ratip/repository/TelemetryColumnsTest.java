@@ -0,0 +1,95 @@
+package com.ratip.repository;
+
+import com.ratip.model.TelemetryEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelemetryColumnsTest {
+    
+    private static final Instant BASE = Instant.parse("2024-05-01T12:00:00Z");
+    
+    private final StringDictionary dictionary = new StringDictionary();
+    private final TelemetryColumns columns = new TelemetryColumns(dictionary,
+            dictionary.encode("api"), dictionary.encode("latency"));
+    
+    @Test
+    void returnsLatePointsInTimestampOrder() {
+        for (int i = 0; i < 10; i++) {
+            columns.add(point("in-" + i, 100 + i, i));
+        }
+        columns.add(point("late-1", 103, -1));
+        columns.add(point("late-2", 50, -2));
+        
+        assertThat(range(0, 200))
+                .extracting(TelemetryEvent::getId)
+                .startsWith("late-2", "in-0", "in-1", "in-2", "in-3", "late-1", "in-4");
+        assertThat(columns.size()).isEqualTo(12);
+    }
+    
+    @Test
+    void readdingAnIdReplacesItsPoint() {
+        String uuid = UUID.randomUUID().toString();
+        assertThat(columns.add(point(uuid, 10, 1))).isTrue();
+        assertThat(columns.add(point("raw-id", 20, 2))).isTrue();
+        assertThat(columns.add(point(uuid, 5, 3))).isFalse();
+        assertThat(columns.add(point("raw-id", 20, 4))).isFalse();
+        
+        List<TelemetryEvent> events = range(0, 100);
+        assertThat(events).extracting(TelemetryEvent::getId).containsExactly(uuid, "raw-id");
+        assertThat(events).extracting(TelemetryEvent::getValue).containsExactly(3.0, 4.0);
+        assertThat(columns.size()).isEqualTo(2);
+    }
+    
+    @Test
+    void matchesAReferenceModelUnderShuffledRedeliveries() {
+        Random random = new Random(42);
+        Map<String, TelemetryEvent> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            int n = random.nextInt(5_000);
+            String id = n % 2 == 0 ? new UUID(n, n).toString() : "id-" + n;
+            long second = i / 4 - random.nextInt(n % 7 == 0 ? 600 : 5);
+            TelemetryEvent event = point(id, second, i);
+            columns.add(event);
+            expected.put(id, event);
+            if (i % 997 == 0) {
+                assertThat(range(Long.MIN_VALUE / 2_000, Long.MAX_VALUE / 2_000)).hasSize(expected.size());
+            }
+        }
+        
+        List<TelemetryEvent> sorted = new ArrayList<>(expected.values());
+        sorted.sort(Comparator.comparing(TelemetryEvent::getTimestamp));
+        List<TelemetryEvent> actual = range(Long.MIN_VALUE / 2_000, Long.MAX_VALUE / 2_000);
+        assertThat(actual).extracting(TelemetryEvent::getTimestamp)
+                .containsExactlyElementsOf(sorted.stream().map(TelemetryEvent::getTimestamp).toList());
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(expected.values());
+        assertThat(columns.size()).isEqualTo(expected.size());
+    }
+    
+    private List<TelemetryEvent> range(long fromSecond, long toSecond) {
+        List<TelemetryEvent> out = new ArrayList<>();
+        columns.collectRange(BASE.plusSeconds(fromSecond), BASE.plusSeconds(toSecond), out);
+        return out;
+    }
+    
+    private static TelemetryEvent point(String id, long second, double value) {
+        return TelemetryEvent.builder()
+                .id(id)
+                .serviceName("api")
+                .metricType("latency")
+                .value(value)
+                .timestamp(BASE.plusSeconds(second))
+                .region("eu-west-1")
+                .environment("prod")
+                .build();
+    }
+}
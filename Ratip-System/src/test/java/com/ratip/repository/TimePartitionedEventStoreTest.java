@@ -0,0 +1,92 @@
+package com.ratip.repository;
+
+import com.ratip.model.TelemetryEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimePartitionedEventStoreTest {
+    
+    private static final Instant BASE = Instant.parse("2024-05-01T12:00:00Z");
+    
+    private final TimePartitionedEventStore<TelemetryEvent> store = new TimePartitionedEventStore<>(
+            TelemetryEvent::getId,
+            event -> event.getServiceName() + "#" + event.getMetricType(),
+            TelemetryEvent::getTimestamp,
+            Duration.ofMinutes(1));
+    
+    @Test
+    void rangeReturnsTheKeysEventsInTimestampOrder() {
+        store.put(telemetry("b", "api", BASE.plusSeconds(90)));
+        store.put(telemetry("a", "api", BASE.plusSeconds(10)));
+        store.put(telemetry("c", "db", BASE.plusSeconds(20)));
+        
+        assertThat(store.range("api#latency", BASE, BASE.plusSeconds(120)))
+                .extracting(TelemetryEvent::getId)
+                .containsExactly("a", "b");
+        assertThat(store.keys()).containsExactly("api#latency", "db#latency");
+    }
+    
+    @Test
+    void replacingAnEventMovesItToItsNewPosition() {
+        store.put(telemetry("a", "api", BASE.plusSeconds(10)));
+        store.put(telemetry("a", "api", BASE.plusSeconds(100)));
+        
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.range("api#latency", BASE, BASE.plusSeconds(60))).isEmpty();
+        assertThat(store.range("api#latency", BASE, BASE.plusSeconds(120))).hasSize(1);
+    }
+    
+    @Test
+    void concurrentWritersKeepTheKeyIndexExact() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    String service = "svc-" + (i % 4);
+                    store.put(telemetry(thread + "-" + i, service, BASE.plusSeconds(i % 600)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        
+        assertThat(store.size()).isEqualTo(threads * perThread);
+        assertThat(store.keys()).hasSize(4);
+        
+        store.evictBefore(BASE.plus(Duration.ofHours(1)));
+        
+        assertThat(store.size()).isZero();
+        assertThat(store.keys()).isEmpty();
+    }
+    
+    private static TelemetryEvent telemetry(String id, String service, Instant timestamp) {
+        return TelemetryEvent.builder()
+                .id(id)
+                .serviceName(service)
+                .metricType("latency")
+                .value(1.0)
+                .timestamp(timestamp)
+                .build();
+    }
+}
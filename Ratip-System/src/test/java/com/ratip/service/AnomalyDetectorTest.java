@@ -0,0 +1,74 @@
+package com.ratip.service;
+
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.StringDictionary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AnomalyDetectorTest {
+    
+    private static final Instant T = Instant.parse("2024-05-01T12:00:00Z");
+    
+    private final AnomalyDetector detector = detector(0.01, 0.01);
+    private int sequence;
+    
+    @Test
+    void toleratesWobbleOnASeriesFlatAtZero() {
+        warmUp(0.0);
+        
+        assertThat(observe(0.02)).isNull();
+        assertThat(observe(-0.03)).isNull();
+    }
+    
+    @Test
+    void flagsACounterLeavingZero() {
+        warmUp(0.0);
+        
+        AlarmEvent alarm = observe(1.0);
+        assertThat(alarm).isNotNull();
+        assertThat(alarm.getSeverity()).isEqualTo("CRITICAL");
+    }
+    
+    @Test
+    void scalesTheFloorWithTheMean() {
+        warmUp(200.0);
+        
+        assertThat(observe(205.0)).isNull();
+        assertThat(observe(240.0)).isNotNull();
+    }
+    
+    @Test
+    void rejectsANonPositiveAbsoluteFloor() {
+        assertThatThrownBy(() -> detector(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private void warmUp(double value) {
+        for (int i = 0; i < 50; i++) {
+            assertThat(observe(value)).isNull();
+        }
+    }
+    
+    private AlarmEvent observe(double value) {
+        int n = sequence++;
+        return detector.observe(TelemetryEvent.builder()
+                .id("t-" + n)
+                .serviceName("api")
+                .metricType("errors")
+                .value(value)
+                .timestamp(T.plusSeconds(n))
+                .build());
+    }
+    
+    private static AnomalyDetector detector(double minStd, double minRelativeStd) {
+        return new AnomalyDetector(new StringDictionary(), List.of(), new SimpleMeterRegistry(), true,
+                0.05, 4.0, 6.0, 30, Duration.ZERO, Duration.ofHours(1), minStd, minRelativeStd);
+    }
+}
@@ -0,0 +1,107 @@
+package com.ratip.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DedupFilterTest {
+    
+    private static final long NEVER = Long.MAX_VALUE;
+    
+    @Test
+    void reportsARepeatAsADuplicate() {
+        DedupFilter filter = new DedupFilter(1_000, 0.01, 2, NEVER);
+        
+        assertThat(filter.checkAndAdd("evt-1")).isFalse();
+        assertThat(filter.checkAndAdd("evt-1")).isTrue();
+        assertThat(filter.checkAndAdd("evt-2")).isFalse();
+    }
+    
+    @Test
+    void remembersAnIdForGenerationsMinusOneRotations() {
+        DedupFilter filter = new DedupFilter(100, 1e-6, 3, NEVER);
+        filter.checkAndAdd("evt-1");
+        addDistinct(filter, "a", 99);
+        addDistinct(filter, "b", 100);
+        
+        assertThat(filter.checkAndAdd("evt-1")).isTrue();
+        
+        addDistinct(filter, "c", 100);
+        
+        assertThat(filter.checkAndAdd("evt-1")).isFalse();
+    }
+    
+    @Test
+    void rotatesOnTheIntervalWhenInsertionsAreSlow() throws InterruptedException {
+        DedupFilter filter = new DedupFilter(1_000, 1e-6, 2, TimeUnit.MILLISECONDS.toNanos(50));
+        filter.checkAndAdd("evt-1");
+        Thread.sleep(60);
+        filter.checkAndAdd("evt-2");
+        
+        assertThat(filter.checkAndAdd("evt-1")).isTrue();
+        
+        Thread.sleep(60);
+        filter.checkAndAdd("evt-3");
+        
+        assertThat(filter.checkAndAdd("evt-1")).isFalse();
+    }
+    
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        int insertions = 20_000;
+        DedupFilter filter = new DedupFilter(insertions, 0.01, 2, NEVER);
+        
+        int falsePositives = 0;
+        for (int i = 0; i < insertions - 1; i++) {
+            if (filter.checkAndAdd("evt-" + i)) {
+                falsePositives++;
+            }
+        }
+        
+        assertThat(falsePositives).isLessThan(insertions / 50);
+    }
+    
+    @Test
+    void neverMissesADuplicateUnderConcurrentInserts() throws InterruptedException {
+        int perThread = 2_000;
+        DedupFilter filter = new DedupFilter(8 * perThread, 0.01, 2, NEVER);
+        AtomicInteger missed = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            String prefix = "t" + t + "-";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    filter.checkAndAdd(prefix + i);
+                }
+                for (int i = 0; i < perThread; i++) {
+                    if (!filter.checkAndAdd(prefix + i)) {
+                        missed.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(missed).hasValue(0);
+    }
+    
+    @Test
+    void rejectsAnInvalidConfiguration() {
+        assertThatThrownBy(() -> new DedupFilter(0, 0.01, 2, NEVER)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DedupFilter(100, 1.0, 2, NEVER)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DedupFilter(100, 0.01, 1, NEVER)).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static void addDistinct(DedupFilter filter, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            assertThat(filter.checkAndAdd(prefix + i)).as("first sighting of %s%d", prefix, i).isFalse();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ratip.service;
+
+import com.ratip.model.TelemetryEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventValidationTest {
+    
+    @Test
+    void acceptsAFiniteOrMissingValue() {
+        assertThat(EventValidation.validate(telemetry(12.5))).isNull();
+        assertThat(EventValidation.validate(telemetry(null))).isNull();
+    }
+    
+    @Test
+    void rejectsNonFiniteValues() {
+        assertThat(EventValidation.validate(telemetry(Double.NaN))).isEqualTo("value must be a finite number");
+        assertThat(EventValidation.validate(telemetry(Double.NEGATIVE_INFINITY))).isEqualTo("value must be a finite number");
+    }
+    
+    private static TelemetryEvent telemetry(Double value) {
+        return TelemetryEvent.builder()
+                .id("t-1")
+                .serviceName("api")
+                .metricType("latency")
+                .value(value)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.ratip.service;
+
+import com.ratip.model.WindowStats;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricWindowTest {
+    
+    private static final long PANE = 60_000;
+    private static final long WINDOW = 15 * PANE;
+    
+    private final MetricWindow window = new MetricWindow("api", "latency", WINDOW, PANE);
+    
+    @Test
+    void aggregatesPointsInsideTheWindow() {
+        long now = System.currentTimeMillis();
+        window.add(now - 2 * PANE, 10, now);
+        window.add(now - PANE, 30, now);
+        window.add(now, 20, now);
+        
+        WindowStats stats = window.snapshot();
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getSum()).isEqualTo(60.0);
+        assertThat(stats.getMean()).isEqualTo(20.0);
+        assertThat(stats.getMin()).isEqualTo(10.0);
+        assertThat(stats.getMax()).isEqualTo(30.0);
+    }
+    
+    @Test
+    void ignoresPointsAheadOfTheClock() {
+        long now = System.currentTimeMillis();
+        window.add(now, 5, now);
+        window.add(now + 60 * PANE, 1000, now);
+        window.add(now, 7, now);
+        
+        assertThat(window.count()).isEqualTo(2);
+        assertThat(window.sum()).isEqualTo(12.0);
+        assertThat(window.max()).isEqualTo(7.0);
+    }
+    
+    @Test
+    void ignoresNonFiniteValues() {
+        long now = System.currentTimeMillis();
+        window.add(now, Double.NaN, now);
+        window.add(now, Double.POSITIVE_INFINITY, now);
+        window.add(now, 4, now);
+        
+        assertThat(window.count()).isEqualTo(1);
+        assertThat(window.sum()).isEqualTo(4.0);
+        assertThat(window.min()).isEqualTo(4.0);
+        assertThat(window.max()).isEqualTo(4.0);
+    }
+    
+    @Test
+    void dropsPointsOlderThanTheWindow() {
+        long now = System.currentTimeMillis();
+        window.add(now - 2 * WINDOW, 100, now);
+        window.add(now, 1, now);
+        
+        assertThat(window.count()).isEqualTo(1);
+        assertThat(window.max()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ratip.service;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.MockDataRepository;
+import com.ratip.repository.StringDictionary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryPlannerTest {
+    
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:00Z");
+    
+    private QueryPlanner planner;
+    
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MockDataRepository repository = new MockDataRepository(new StringDictionary(), new RatipMetrics(registry, false),
+                Duration.ofHours(1), Duration.ofDays(7), Duration.ofDays(7));
+        repository.saveTelemetry(TelemetryEvent.builder()
+                .id("t-1")
+                .serviceName("api-gateway")
+                .metricType("latency")
+                .value(120.0)
+                .timestamp(NOW.minusSeconds(60))
+                .build());
+        repository.saveAlarm(AlarmEvent.builder()
+                .id("a-1")
+                .serviceName("api-gateway")
+                .metricType("latency")
+                .severity("CRITICAL")
+                .timestamp(NOW.minusSeconds(60))
+                .build());
+        planner = new QueryPlanner(repository,
+                new TelemetryRollups(repository, registry, Duration.ofDays(14), Duration.ofDays(90)));
+    }
+    
+    @ParameterizedTest
+    @CsvSource(nullValues = "null", delimiter = '|', textBlock = """
+            how many data points in the last 30 min          | TELEMETRY | COUNT | NONE    | in the last 30 minutes | false
+            how many samples over 15 min                     | TELEMETRY | COUNT | NONE    | in the last 15 minutes | false
+            min latency in the last hour                     | TELEMETRY | MIN   | NONE    | in the last 1 hour     | false
+            lowest latency over 10 min                       | TELEMETRY | MIN   | NONE    | in the last 10 minutes | false
+            average latency of api gateway past 2 days       | TELEMETRY | MEAN  | NONE    | in the last 2 days     | false
+            p99 latency last 15 minutes                      | TELEMETRY | P99   | NONE    | in the last 15 minutes | false
+            peak latency per service in the last min         | TELEMETRY | MAX   | SERVICE | in the last 1 minute   | false
+            how many alarms yesterday                        | ALARMS    | COUNT | NONE    | yesterday (UTC)        | false
+            top 3 services by alarms today                   | ALARMS    | COUNT | SERVICE | today (UTC)            | false
+            number of correlations per severity last week    | CORRELATIONS | COUNT | SEVERITY | in the last 7 days | false
+            why is latency so high                           | null      | COUNT | NONE    | in the last 2 hours    | true
+            """)
+    void plansTheQuestion(String query, QueryPlan.Target target, QueryPlan.Aggregate aggregate,
+                          QueryPlan.GroupBy groupBy, String period, boolean openEnded) {
+        QueryPlan plan = planner.plan(query, NOW);
+        
+        assertThat(plan.target()).isEqualTo(target);
+        assertThat(plan.aggregate()).isEqualTo(aggregate);
+        assertThat(plan.groupBy()).isEqualTo(groupBy);
+        assertThat(plan.period()).isEqualTo(period);
+        assertThat(plan.openEnded()).isEqualTo(openEnded);
+    }
+    
+    @Test
+    void recognisesKnownNamesAndTheRange() {
+        QueryPlan plan = planner.plan("how many critical alarms for api gateway in the last 30 min", NOW);
+        
+        assertThat(plan.services()).containsExactly("api-gateway");
+        assertThat(plan.severities()).containsExactly("CRITICAL");
+        assertThat(plan.from()).isEqualTo(NOW.minus(Duration.ofMinutes(30)));
+        assertThat(plan.to()).isEqualTo(NOW);
+    }
+    
+    @Test
+    void readsTopKAndOrder() {
+        QueryPlan plan = planner.plan("top 3 services with the fewest alarms", NOW);
+        
+        assertThat(plan.topK()).isEqualTo(3);
+        assertThat(plan.ascending()).isTrue();
+        assertThat(planner.plan("top 10 services by alarms", NOW).topK()).isEqualTo(10);
+    }
+}
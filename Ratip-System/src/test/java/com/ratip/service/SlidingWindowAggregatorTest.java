@@ -0,0 +1,80 @@
+package com.ratip.service;
+
+import com.ratip.model.TelemetryEvent;
+import com.ratip.repository.StringDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowAggregatorTest {
+    
+    private final SlidingWindowAggregator aggregator = new SlidingWindowAggregator(new StringDictionary());
+    
+    @Test
+    void futurePointDoesNotDisplaceTheCurrentBucket() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        TelemetryEvent before = point("before", now, 1.0);
+        TelemetryEvent after = point("after", now, 2.0);
+        
+        aggregator.addEvent(before);
+        aggregator.addEvent(point("skewed", now.plus(Duration.ofHours(1)), 1000.0));
+        aggregator.addEvent(after);
+        
+        assertThat(aggregator.getEventsByService("api")).containsExactlyInAnyOrder(before, after);
+        assertThat(aggregator.getMetricWindow("api", "latency").count()).isEqualTo(2);
+        assertThat(aggregator.getMetricWindow("api", "latency").max()).isEqualTo(2.0);
+    }
+    
+    @Test
+    void acceptsPointsWithinOneBucketOfTheClock() {
+        TelemetryEvent early = point("early", Instant.now().plusSeconds(30).truncatedTo(ChronoUnit.MILLIS), 1.0);
+        
+        aggregator.addEvent(early);
+        
+        assertThat(aggregator.getEventsByService("api")).containsExactly(early);
+    }
+    
+    @Test
+    void sweepRetiresServicesWithNothingLeftInTheWindow() {
+        aggregator.addEvent(point("stale", Instant.now().minus(Duration.ofMinutes(20)), 1.0));
+        aggregator.addEvent(point("live", Instant.now(), 1.0, "web"));
+        
+        aggregator.evictIdle();
+        
+        assertThat(aggregator.getMetricWindow("api", "latency")).isNull();
+        assertThat(aggregator.getEventsByService("api")).isEmpty();
+        assertThat(aggregator.getEventsByService("web")).hasSize(1);
+        assertThat(aggregator.windowSize()).isEqualTo(1);
+    }
+    
+    @Test
+    void appendsAfterARetiredRingLandInAFreshOne() {
+        aggregator.addEvent(point("stale", Instant.now().minus(Duration.ofMinutes(20)), 1.0));
+        aggregator.evictIdle();
+        
+        aggregator.addEvent(point("live", Instant.now(), 3.0));
+        
+        assertThat(aggregator.getEventsByService("api")).hasSize(1);
+        assertThat(aggregator.getMetricWindow("api", "latency").count()).isEqualTo(1);
+    }
+    
+    private static TelemetryEvent point(String id, Instant timestamp, double value) {
+        return point(id, timestamp, value, "api");
+    }
+    
+    private static TelemetryEvent point(String id, Instant timestamp, double value, String service) {
+        return TelemetryEvent.builder()
+                .id(id)
+                .serviceName(service)
+                .metricType("latency")
+                .value(value)
+                .timestamp(timestamp.truncatedTo(ChronoUnit.MILLIS))
+                .region("us-east-1")
+                .environment("production")
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ratip.service;
+
+import com.ratip.config.RatipMetrics;
+import com.ratip.model.AlarmEvent;
+import com.ratip.model.CorrelatedEvent;
+import com.ratip.model.TelemetryEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingCorrelatorTest {
+    
+    private static final Instant T = Instant.parse("2024-05-01T12:00:00Z");
+    
+    private final List<CorrelatedEvent> published = new ArrayList<>();
+    private final StreamingCorrelator correlator = new StreamingCorrelator(new EventCorrelator(),
+            List.of(published::add), new RatipMetrics(new SimpleMeterRegistry(), false), Duration.ofMinutes(15));
+    
+    @Test
+    void emitsEachPairOnceWhenItsLaterMemberArrives() {
+        assertThat(correlator.ingestTelemetry(telemetry("t-1", T.minusSeconds(60)))).isEmpty();
+        
+        assertThat(correlator.ingestAlarm(alarm("a-1", T))).hasSize(1);
+        assertThat(correlator.ingestAlarm(alarm("a-1", T))).isEmpty();
+        assertThat(correlator.ingestTelemetry(telemetry("t-1", T.minusSeconds(60)))).isEmpty();
+        assertThat(published).hasSize(1);
+    }
+    
+    @Test
+    void ignoresEventsOlderThanTheWindow() {
+        correlator.ingestAlarm(alarm("a-0", T));
+        correlator.ingestTelemetry(telemetry("t-1", T.minus(Duration.ofMinutes(13))));
+        published.clear();
+        
+        AlarmEvent late = alarm("a-late", T.minus(Duration.ofMinutes(17)));
+        assertThat(correlator.ingestAlarm(late)).isEmpty();
+        assertThat(correlator.ingestAlarm(late)).isEmpty();
+        assertThat(published).isEmpty();
+    }
+    
+    private static TelemetryEvent telemetry(String id, Instant timestamp) {
+        return TelemetryEvent.builder()
+                .id(id)
+                .serviceName("api")
+                .metricType("latency")
+                .value(900.0)
+                .timestamp(timestamp)
+                .build();
+    }
+    
+    private static AlarmEvent alarm(String id, Instant timestamp) {
+        return AlarmEvent.builder()
+                .id(id)
+                .alarmName("HighLatency")
+                .serviceName("api")
+                .metricType("latency")
+                .severity("CRITICAL")
+                .threshold(500.0)
+                .value(900.0)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { LineChart, Line, BarChart, Bar, XAxis, YAxis, CartesianGrid, Tooltip, Legend, ResponsiveContainer } from 'recharts';
 import { AlertCircle, Activity, TrendingUp, Clock, Search, Bell, Zap, Database, Server, CheckCircle } from 'lucide-react';
 
@@ -11,8 +11,102 @@ const RATIP = () => {
   const [telemetryData, setTelemetryData] = useState([]);
   const [alarms, setAlarms] = useState([]);
   const [correlations, setCorrelations] = useState([]);
+  const alarmsWatermark = useRef(null);
+  const correlationsWatermark = useRef(null);
   
   const API_BASE_URL = 'http://localhost:8080/api/v1';
+  const INITIAL_LOOKBACK_MS = 60 * 60 * 1000;
+  const MAX_ROWS = 1000;
+  const PAGE_LIMIT = 5000;
+  const MAX_POINTS = 60;
+  const CHART_METRICS = {
+    API_Latency: 'apiLatency',
+    Lambda_Duration: 'lambdaDuration',
+    DynamoDB_Reads: 'dynamoRead',
+    Error_Rate: 'errors',
+  };
+
+  // Same token as EventCursor.encode() on the backend: base64url("<epochMillis>:<id>"), unpadded.
+  const encodeCursor = (millis, id) => btoa(String.fromCharCode(...new TextEncoder().encode(`${millis}:${id}`)))
+    .replace(/\+/g, '-').replace(/\//g, '_').replace(/=+$/, '');
+
+  const decodeCursor = token => {
+    const binary = atob(token.replace(/-/g, '+').replace(/_/g, '/'));
+    const decoded = new TextDecoder().decode(Uint8Array.from(binary, c => c.charCodeAt(0)));
+    const separator = decoded.indexOf(':');
+    return { millis: Number(decoded.slice(0, separator)), id: decoded.slice(separator + 1) };
+  };
+
+  // Watermarks only move forward, whether a poll or a pushed event got there first.
+  const advanceWatermark = (watermarkRef, token) => {
+    if (!watermarkRef.current) {
+      watermarkRef.current = token;
+      return;
+    }
+    const current = decodeCursor(watermarkRef.current);
+    const candidate = decodeCursor(token);
+    if (candidate.millis > current.millis || (candidate.millis === current.millis && candidate.id > current.id)) {
+      watermarkRef.current = token;
+    }
+  };
+
+  const advanceWatermarkTo = (watermarkRef, timestamp, id) =>
+    advanceWatermark(watermarkRef, encodeCursor(new Date(timestamp).getTime(), id));
+
+  // One chart point per aggregates push: count-weighted mean of each charted metric over all services.
+  const toChartPoint = stats => {
+    const point = { time: new Date().toLocaleTimeString() };
+    const totals = {};
+    for (const window of stats) {
+      const key = CHART_METRICS[window.metricType];
+      if (key && window.count > 0) {
+        totals[key] = totals[key] || { sum: 0, count: 0 };
+        totals[key].sum += window.sum;
+        totals[key].count += window.count;
+      }
+    }
+    for (const [key, total] of Object.entries(totals)) {
+      point[key] = Math.round((total.sum / total.count) * 100) / 100;
+    }
+    return point;
+  };
+
+  // Polls only what arrived after the last watermark; the first poll starts an hour back. Pages
+  // come back oldest first, so X-Next-Cursor is followed until the backlog is drained; otherwise a
+  // busy stream would only ever move forward one page per poll and never catch up.
+  const fetchDelta = async (path, watermarkRef) => {
+    let params = watermarkRef.current
+      ? `since=${encodeURIComponent(watermarkRef.current)}`
+      : `from=${new Date(Date.now() - INITIAL_LOOKBACK_MS).toISOString()}`;
+    let rows = null;
+    for (;;) {
+      const response = await fetch(`${API_BASE_URL}${path}?${params}&limit=${PAGE_LIMIT}`, {
+        method: 'GET',
+        headers: {
+          'Content-Type': 'application/json',
+        },
+      });
+      if (!response.ok) {
+        return rows;
+      }
+      const data = await response.json();
+      rows = [...(rows || []), ...data].slice(-MAX_ROWS);
+      const watermark = response.headers.get('X-Watermark');
+      if (watermark) {
+        advanceWatermark(watermarkRef, watermark);
+      }
+      const next = response.headers.get('X-Next-Cursor');
+      if (!next) {
+        return rows;
+      }
+      params = `since=${encodeURIComponent(next)}`;
+    }
+  };
+
+  const appendRows = (previous, rows) => {
+    const seen = new Set(previous.map(row => row.id));
+    return [...previous, ...rows.filter(row => !seen.has(row.id))].slice(-MAX_ROWS);
+  };
 
   useEffect(() => {
     checkBackendHealth();
@@ -41,45 +135,13 @@ const RATIP = () => {
     }
   };
 
-  useEffect(() => {
-    const fetchTelemetryData = async () => {
-      try {
-        const response = await fetch(`${API_BASE_URL}/telemetry`, {
-          method: 'GET',
-          headers: {
-            'Content-Type': 'application/json',
-          },
-        });
-        
-        if (response.ok) {
-          const data = await response.json();
-          setTelemetryData(data);
-        } else {
-          console.error('Failed to fetch telemetry data');
-        }
-      } catch (error) {
-        console.error('Error fetching telemetry data:', error);
-      }
-    };
-
-    fetchTelemetryData();
-    const interval = setInterval(fetchTelemetryData, 5000);
-    return () => clearInterval(interval);
-  }, []);
-
   useEffect(() => {
     const fetchAlarms = async () => {
       try {
-        const response = await fetch(`${API_BASE_URL}/alarms`, {
-          method: 'GET',
-          headers: {
-            'Content-Type': 'application/json',
-          },
-        });
+        const data = await fetchDelta('/alarms', alarmsWatermark);
         
-        if (response.ok) {
-          const data = await response.json();
-          setAlarms(data);
+        if (data) {
+          setAlarms(previous => appendRows(previous, data));
         } else {
           console.error('Failed to fetch alarms');
         }
@@ -88,24 +150,12 @@ const RATIP = () => {
       }
     };
 
-    fetchAlarms();
-    const interval = setInterval(fetchAlarms, 10000);
-    return () => clearInterval(interval);
-  }, []);
-
-  useEffect(() => {
     const fetchCorrelations = async () => {
       try {
-        const response = await fetch(`${API_BASE_URL}/correlations`, {
-          method: 'GET',
-          headers: {
-            'Content-Type': 'application/json',
-          },
-        });
+        const data = await fetchDelta('/correlations', correlationsWatermark);
         
-        if (response.ok) {
-          const data = await response.json();
-          setCorrelations(data);
+        if (data) {
+          setCorrelations(previous => appendRows(previous, data));
         } else {
           console.error('Failed to fetch correlations');
         }
@@ -114,7 +164,28 @@ const RATIP = () => {
       }
     };
 
-    fetchCorrelations();
+    // Alarms, correlations and window aggregates are pushed; every (re)connect backfills the
+    // alarms and correlations missed meanwhile, starting from the last pushed or polled one.
+    const source = new EventSource(`${API_BASE_URL}/stream`);
+    source.onopen = () => {
+      fetchAlarms();
+      fetchCorrelations();
+    };
+    source.addEventListener('alarm', event => {
+      const alarm = JSON.parse(event.data);
+      advanceWatermarkTo(alarmsWatermark, alarm.timestamp, alarm.id);
+      setAlarms(previous => appendRows(previous, [alarm]));
+    });
+    source.addEventListener('correlation', event => {
+      const correlation = JSON.parse(event.data);
+      advanceWatermarkTo(correlationsWatermark, correlation.correlationTimestamp, correlation.id);
+      setCorrelations(previous => appendRows(previous, [correlation]));
+    });
+    source.addEventListener('aggregates', event => {
+      const point = toChartPoint(JSON.parse(event.data));
+      setTelemetryData(previous => [...previous, point].slice(-MAX_POINTS));
+    });
+    return () => source.close();
   }, []);
 
   const handleAIQuery = async () => {
@@ -124,10 +195,11 @@ const RATIP = () => {
     setAiResponse('');
 
     try {
-      const response = await fetch(`${API_BASE_URL}/query`, {
+      const response = await fetch(`${API_BASE_URL}/query/stream`, {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
+          'Accept': 'text/event-stream',
         },
         body: JSON.stringify({
           query: query
@@ -135,8 +207,25 @@ const RATIP = () => {
       });
 
       if (response.ok) {
-        const data = await response.json();
-        setAiResponse(data.response);
+        // Render tokens as they arrive instead of waiting for the whole answer.
+        const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+        let buffer = '';
+        for (;;) {
+          const { value, done } = await reader.read();
+          if (done) break;
+          buffer += value;
+          const events = buffer.split('\n\n');
+          buffer = events.pop();
+          for (const event of events) {
+            const name = event.match(/^event:(.*)$/m)?.[1];
+            const data = event.match(/^data:(.*)$/m)?.[1];
+            if (name === 'token') {
+              setAiResponse(previous => previous + JSON.parse(data).text);
+            } else if (name === 'error') {
+              setAiResponse(`Error: ${JSON.parse(data).error}`);
+            }
+          }
+        }
       } else {
         const errorData = await response.json();
         setAiResponse(`Error: ${errorData.error || 'Failed to process query'}`);